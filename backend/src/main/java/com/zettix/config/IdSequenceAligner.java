@@ -0,0 +1,64 @@
+package com.zettix.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.util.Map;
+
+/**
+ * Moves the id sequences of entities that switched from auto-increment to pooled ids past the ids
+ * already in their tables. MySQL has no sequences, so Hibernate keeps each one in a single-row
+ * {@code <name>_seq} table created at value 1; without this the first inserts would reuse old ids.
+ * Databases with native sequences only ever start from an empty schema here and are left alone.
+ * A sequence that cannot be aligned stops the application from starting.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+@Slf4j
+public class IdSequenceAligner {
+
+    private static final Map<String, String> SEQUENCES = Map.of(
+            "transactions", "transactions_seq",
+            "user_purchases", "user_purchases_seq",
+            "wallet_ledger_entries", "wallet_ledger_entries_seq"
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void align() {
+        SEQUENCES.forEach((table, sequence) -> {
+            try {
+                if (!tableExists(sequence)) {
+                    return;
+                }
+                Long next = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM " + table, Long.class);
+                int updated = jdbcTemplate.update("UPDATE " + sequence + " SET next_val = ? WHERE next_val < ?", next, next);
+                if (updated > 0) {
+                    log.info("Moved id sequence {} past the existing rows of {} to {}", sequence, table, next);
+                }
+            } catch (DataAccessException e) {
+                // Starting anyway would hand out ids that already exist and fail inserts later
+                throw new IllegalStateException("Could not align id sequence " + sequence + " with " + table, e);
+            }
+        });
+    }
+
+    private boolean tableExists(String name) {
+        Boolean exists = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            try (ResultSet tables = connection.getMetaData()
+                    .getTables(connection.getCatalog(), null, name, new String[]{"TABLE"})) {
+                return tables.next();
+            }
+        });
+        return Boolean.TRUE.equals(exists);
+    }
+}
@@ -1,14 +1,56 @@
 package com.zettix.config;
 
+import com.zettix.scheduler.DepositStreamHeartbeatJob;
 import com.zettix.scheduler.EmailProcessingJob;
+import com.zettix.scheduler.EmailReconciliationJob;
+import com.zettix.scheduler.GmailTokenRefreshJob;
+import com.zettix.scheduler.GmailWatchRenewalJob;
+import com.zettix.scheduler.InventoryRefillJob;
+import com.zettix.scheduler.ProductStockFlushJob;
+import com.zettix.scheduler.ProductStockReconcileJob;
 import com.zettix.scheduler.TransactionCleanupJob;
+import com.zettix.scheduler.WalletSnapshotJob;
 import org.quartz.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class QuartzConfig {
 
+    @Value("${gmail.token-refresh-interval-minutes:10}")
+    private int gmailTokenRefreshIntervalMinutes;
+
+    @Value("${gmail.poll-interval-minutes:2}")
+    private int emailPollIntervalMinutes;
+
+    @Value("${gmail.push.enabled:false}")
+    private boolean gmailPushEnabled;
+
+    @Value("${gmail.push.fallback-poll-interval-minutes:15}")
+    private int emailFallbackPollIntervalMinutes;
+
+    @Value("${gmail.push.watch-renewal-interval-hours:24}")
+    private int gmailWatchRenewalIntervalHours;
+
+    @Value("${reconciliation.interval-minutes:2}")
+    private int reconciliationIntervalMinutes;
+
+    @Value("${wallet.snapshot-interval-minutes:10}")
+    private int walletSnapshotIntervalMinutes;
+
+    @Value("${inventory.pool.refill-interval-seconds:5}")
+    private int inventoryRefillIntervalSeconds;
+
+    @Value("${inventory.counters.flush-interval-seconds:2}")
+    private int stockFlushIntervalSeconds;
+
+    @Value("${inventory.counters.reconcile-interval-minutes:10}")
+    private int stockReconcileIntervalMinutes;
+
+    @Value("${deposit.stream.heartbeat-seconds:15}")
+    private int depositStreamHeartbeatSeconds;
+
     @Bean
     public JobDetail emailProcessingJobDetail() {
         return JobBuilder.newJob(EmailProcessingJob.class)
@@ -25,7 +67,134 @@ public class QuartzConfig {
                 .withIdentity("emailProcessingTrigger")
                 .withDescription("Trigger for email processing job")
                 .withSchedule(SimpleScheduleBuilder.simpleSchedule()
-                        .withIntervalInMinutes(2) // Check every 2 minutes
+                        // With push enabled polling is only a safety net for missed notifications
+                        .withIntervalInMinutes(gmailPushEnabled ? emailFallbackPollIntervalMinutes : emailPollIntervalMinutes)
+                        .repeatForever())
+                .build();
+    }
+
+    @Bean
+    public JobDetail emailReconciliationJobDetail() {
+        return JobBuilder.newJob(EmailReconciliationJob.class)
+                .withIdentity("emailReconciliationJob")
+                .withDescription("Retry matching unprocessed emails against pending deposits")
+                .storeDurably()
+                .build();
+    }
+
+    @Bean
+    public Trigger emailReconciliationTrigger() {
+        return TriggerBuilder.newTrigger()
+                .forJob(emailReconciliationJobDetail())
+                .withIdentity("emailReconciliationTrigger")
+                .withDescription("Trigger for email reconciliation job")
+                .withSchedule(SimpleScheduleBuilder.simpleSchedule()
+                        .withIntervalInMinutes(reconciliationIntervalMinutes)
+                        .repeatForever())
+                .build();
+    }
+
+    @Bean
+    public JobDetail walletSnapshotJobDetail() {
+        return JobBuilder.newJob(WalletSnapshotJob.class)
+                .withIdentity("walletSnapshotJob")
+                .withDescription("Fold settled wallet ledger entries into balance snapshots")
+                .storeDurably()
+                .build();
+    }
+
+    @Bean
+    public Trigger walletSnapshotTrigger() {
+        return TriggerBuilder.newTrigger()
+                .forJob(walletSnapshotJobDetail())
+                .withIdentity("walletSnapshotTrigger")
+                .withDescription("Trigger for wallet snapshot job")
+                .withSchedule(SimpleScheduleBuilder.simpleSchedule()
+                        .withIntervalInMinutes(walletSnapshotIntervalMinutes)
+                        .repeatForever())
+                .build();
+    }
+
+    @Bean
+    public JobDetail inventoryRefillJobDetail() {
+        return JobBuilder.newJob(InventoryRefillJob.class)
+                .withIdentity("inventoryRefillJob")
+                .withDescription("Top up per-product pools of reserved accounts")
+                .storeDurably()
+                .build();
+    }
+
+    @Bean
+    public Trigger inventoryRefillTrigger() {
+        return TriggerBuilder.newTrigger()
+                .forJob(inventoryRefillJobDetail())
+                .withIdentity("inventoryRefillTrigger")
+                .withDescription("Trigger for inventory refill job")
+                .withSchedule(SimpleScheduleBuilder.simpleSchedule()
+                        .withIntervalInSeconds(inventoryRefillIntervalSeconds)
+                        .repeatForever())
+                .build();
+    }
+
+    @Bean
+    public JobDetail productStockFlushJobDetail() {
+        return JobBuilder.newJob(ProductStockFlushJob.class)
+                .withIdentity("productStockFlushJob")
+                .withDescription("Write pending sales to the product stock counters")
+                .storeDurably()
+                .build();
+    }
+
+    @Bean
+    public Trigger productStockFlushTrigger() {
+        return TriggerBuilder.newTrigger()
+                .forJob(productStockFlushJobDetail())
+                .withIdentity("productStockFlushTrigger")
+                .withDescription("Trigger for product stock flush job")
+                .withSchedule(SimpleScheduleBuilder.simpleSchedule()
+                        .withIntervalInSeconds(stockFlushIntervalSeconds)
+                        .repeatForever())
+                .build();
+    }
+
+    @Bean
+    public JobDetail productStockReconcileJobDetail() {
+        return JobBuilder.newJob(ProductStockReconcileJob.class)
+                .withIdentity("productStockReconcileJob")
+                .withDescription("Recount product stock from accounts and repair drifted counters")
+                .storeDurably()
+                .build();
+    }
+
+    @Bean
+    public Trigger productStockReconcileTrigger() {
+        return TriggerBuilder.newTrigger()
+                .forJob(productStockReconcileJobDetail())
+                .withIdentity("productStockReconcileTrigger")
+                .withDescription("Trigger for product stock reconcile job")
+                .withSchedule(SimpleScheduleBuilder.simpleSchedule()
+                        .withIntervalInMinutes(stockReconcileIntervalMinutes)
+                        .repeatForever())
+                .build();
+    }
+
+    @Bean
+    public JobDetail depositStreamHeartbeatJobDetail() {
+        return JobBuilder.newJob(DepositStreamHeartbeatJob.class)
+                .withIdentity("depositStreamHeartbeatJob")
+                .withDescription("Keep idle deposit status streams open")
+                .storeDurably()
+                .build();
+    }
+
+    @Bean
+    public Trigger depositStreamHeartbeatTrigger() {
+        return TriggerBuilder.newTrigger()
+                .forJob(depositStreamHeartbeatJobDetail())
+                .withIdentity("depositStreamHeartbeatTrigger")
+                .withDescription("Trigger for deposit stream heartbeat job")
+                .withSchedule(SimpleScheduleBuilder.simpleSchedule()
+                        .withIntervalInSeconds(depositStreamHeartbeatSeconds)
                         .repeatForever())
                 .build();
     }
@@ -50,4 +219,47 @@ public class QuartzConfig {
                         .repeatForever())
                 .build();
     }
+
+    @Bean
+    public JobDetail gmailTokenRefreshJobDetail() {
+        return JobBuilder.newJob(GmailTokenRefreshJob.class)
+                .withIdentity("gmailTokenRefreshJob")
+                .withDescription("Refresh the Gmail access token ahead of expiry")
+                .storeDurably()
+                .build();
+    }
+
+    @Bean
+    public Trigger gmailTokenRefreshTrigger() {
+        return TriggerBuilder.newTrigger()
+                .forJob(gmailTokenRefreshJobDetail())
+                .withIdentity("gmailTokenRefreshTrigger")
+                .withDescription("Trigger for Gmail token refresh job")
+                .withSchedule(SimpleScheduleBuilder.simpleSchedule()
+                        .withIntervalInMinutes(gmailTokenRefreshIntervalMinutes)
+                        .repeatForever())
+                .build();
+    }
+
+    @Bean
+    public JobDetail gmailWatchRenewalJobDetail() {
+        return JobBuilder.newJob(GmailWatchRenewalJob.class)
+                .withIdentity("gmailWatchRenewalJob")
+                .withDescription("Renew the Gmail push notification watch")
+                .storeDurably()
+                .build();
+    }
+
+    @Bean
+    public Trigger gmailWatchRenewalTrigger() {
+        return TriggerBuilder.newTrigger()
+                .forJob(gmailWatchRenewalJobDetail())
+                .withIdentity("gmailWatchRenewalTrigger")
+                .withDescription("Trigger for Gmail watch renewal job")
+                .startAt(DateBuilder.futureDate(gmailWatchRenewalIntervalHours, DateBuilder.IntervalUnit.HOUR))
+                .withSchedule(SimpleScheduleBuilder.simpleSchedule()
+                        .withIntervalInHours(gmailWatchRenewalIntervalHours)
+                        .repeatForever())
+                .build();
+    }
 }
@@ -2,10 +2,14 @@ package com.zettix.controller;
 
 import com.zettix.dto.request.CreateProductRequest;
 import com.zettix.dto.request.UpdateProductRequest;
+import com.zettix.dto.request.VerifyQrRequest;
 import com.zettix.entity.Product;
 import com.zettix.entity.User;
 import com.zettix.service.AdminService;
+import com.zettix.service.EmailBodyStore;
+import com.zettix.service.GmailService;
 import com.zettix.service.UserService;
+import com.zettix.service.WalletLedgerService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -16,6 +20,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
 import java.util.Map;
 
 @RestController
@@ -27,6 +32,9 @@ public class AdminController {
 
     private final AdminService adminService;
     private final UserService userService;
+    private final GmailService gmailService;
+    private final EmailBodyStore emailBodyStore;
+    private final WalletLedgerService walletLedgerService;
 
     // User Management
     @GetMapping("/users")
@@ -129,6 +137,17 @@ public class AdminController {
         }
     }
 
+    @PutMapping("/products/{id}/toggle-flash-sale")
+    public ResponseEntity<?> toggleFlashSale(@PathVariable Long id) {
+        try {
+            var product = adminService.toggleFlashSale(id);
+            return ResponseEntity.ok(product);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Failed to toggle flash sale: " + e.getMessage()));
+        }
+    }
+
     // Account Management
     @GetMapping("/accounts")
     public ResponseEntity<?> getAllAccounts() {
@@ -186,4 +205,67 @@ public class AdminController {
                     .body(Map.of("error", "Failed to get transaction: " + e.getMessage()));
         }
     }
+
+    @PostMapping("/qr/verify")
+    @Operation(summary = "Verify a VietQR payload",
+            description = "Checks the payload layout and CRC, decodes amount and memo and compares them with the deposit")
+    public ResponseEntity<?> verifyQrPayload(@Valid @RequestBody VerifyQrRequest request) {
+        try {
+            return ResponseEntity.ok(adminService.verifyQrPayload(request.getPayload()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Failed to verify QR payload: " + e.getMessage()));
+        }
+    }
+
+    // Email Processing
+    @PostMapping("/emails/catch-up")
+    public ResponseEntity<?> catchUpEmails() {
+        try {
+            int scanned = gmailService.catchUp();
+            return ResponseEntity.ok(Map.of("message", "Email catch-up completed", "scannedCount", scanned));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Failed to run email catch-up: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/emails/{id}/raw")
+    public ResponseEntity<?> getRawEmail(@PathVariable Long id) {
+        try {
+            var email = emailBodyStore.getWithBody(id);
+            return ResponseEntity.ok(Map.of(
+                    "id", email.getId(),
+                    "emailId", email.getEmailId(),
+                    "senderEmail", String.valueOf(email.getSenderEmail()),
+                    "subject", String.valueOf(email.getSubject()),
+                    "body", email.getBody()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Failed to get raw email: " + e.getMessage()));
+        }
+    }
+
+    // Wallet Ledger
+    @PostMapping("/users/{id}/wallet-adjustments")
+    public ResponseEntity<?> adjustWallet(@PathVariable Long id, @RequestBody Map<String, BigDecimal> request) {
+        try {
+            adminService.getUserById(id);
+            BigDecimal balance = walletLedgerService.adjust(id, request.get("amount"));
+            return ResponseEntity.ok(Map.of("userId", id, "balance", balance));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Failed to adjust wallet: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/wallet/verify")
+    public ResponseEntity<?> verifyWalletLedger() {
+        try {
+            return ResponseEntity.ok(walletLedgerService.verify());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Failed to verify wallet ledger: " + e.getMessage()));
+        }
+    }
 }
@@ -0,0 +1,45 @@
+package com.zettix.controller;
+
+import com.zettix.dto.request.PubSubPushRequest;
+import com.zettix.service.GmailPushService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/public/webhooks")
+@RequiredArgsConstructor
+@Tag(name = "Webhooks", description = "Inbound notifications from external services")
+public class GmailPushController {
+
+    private final GmailPushService gmailPushService;
+
+    @Operation(summary = "Gmail push notification", description = "Pub/Sub push endpoint for Gmail watch notifications")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Notification accepted"),
+            @ApiResponse(responseCode = "403", description = "Invalid verification token"),
+            @ApiResponse(responseCode = "404", description = "Push mode is disabled")
+    })
+    @PostMapping("/gmail")
+    public ResponseEntity<?> receiveGmailPush(@RequestParam(value = "token", required = false) String token,
+                                              @RequestBody PubSubPushRequest request) {
+        if (!gmailPushService.isPushEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Gmail push mode is disabled"));
+        }
+        if (!gmailPushService.isValidToken(token)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Invalid verification token"));
+        }
+        // Malformed messages are still acknowledged, otherwise Pub/Sub keeps redelivering them
+        gmailPushService.handlePush(request);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -2,6 +2,7 @@ package com.zettix.controller;
 
 import com.zettix.entity.Product;
 import com.zettix.repository.ProductRepository;
+import com.zettix.service.ProductStockCounters;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -19,6 +20,7 @@ import java.util.List;
 public class PublicController {
 
     private final ProductRepository productRepository;
+    private final ProductStockCounters productStockCounters;
 
     @Operation(summary = "Get all available products", description = "Get list of all active and available products")
     @ApiResponses(value = {
@@ -26,7 +28,7 @@ public class PublicController {
     })
     @GetMapping("/products")
     public ResponseEntity<List<Product>> getAllProducts() {
-        List<Product> products = productRepository.findAvailableProducts();
+        List<Product> products = productStockCounters.viewInStock(productRepository.findAvailableProducts());
         return ResponseEntity.ok(products);
     }
 
@@ -38,6 +40,7 @@ public class PublicController {
     @GetMapping("/products/{id}")
     public ResponseEntity<Product> getProductById(@PathVariable Long id) {
         return productRepository.findById(id)
+                .map(productStockCounters::view)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -1,11 +1,19 @@
 package com.zettix.controller;
 
+import com.zettix.dto.request.BatchPurchaseRequest;
 import com.zettix.dto.request.DepositRequest;
 import com.zettix.dto.request.PurchaseRequest;
 import com.zettix.entity.User;
+import com.zettix.security.JwtUtil;
+import com.zettix.service.BatchPurchaseService;
+import com.zettix.service.DepositStatusStream;
+import com.zettix.service.FlashSaleGate;
+import com.zettix.service.IdempotencyService;
+import com.zettix.service.ReferenceIdGenerator;
 import com.zettix.service.TransactionService;
 import com.zettix.service.UserService;
 import com.zettix.service.VietQRService;
+import com.zettix.service.WalletLedgerService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -13,11 +21,22 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @RestController
 @RequestMapping("/api/user")
@@ -26,14 +45,24 @@ import java.util.Map;
 @SecurityRequirement(name = "Bearer Authentication")
 public class UserController {
 
+    private static final MediaType SVG = MediaType.valueOf("image/svg+xml");
+
     private final UserService userService;
     private final TransactionService transactionService;
     private final VietQRService vietQRService;
+    private final WalletLedgerService walletLedgerService;
+    private final BatchPurchaseService batchPurchaseService;
+    private final IdempotencyService idempotencyService;
+    private final FlashSaleGate flashSaleGate;
+    private final DepositStatusStream depositStatusStream;
+    private final ReferenceIdGenerator referenceIdGenerator;
+    private final JwtUtil jwtUtil;
 
     @GetMapping("/profile")
     public ResponseEntity<?> getProfile(Authentication authentication) {
         try {
             User user = (User) authentication.getPrincipal();
+            user.setWalletBalance(walletLedgerService.getBalance(user.getId()));
             return ResponseEntity.ok(user);
         } catch (Exception e) {
             return ResponseEntity.badRequest()
@@ -58,31 +87,177 @@ public class UserController {
     }
 
     @PostMapping("/deposit")
-    public ResponseEntity<?> createDeposit(@Valid @RequestBody DepositRequest request, Authentication authentication) {
+    public ResponseEntity<?> createDeposit(@Valid @RequestBody DepositRequest request, Authentication authentication,
+                                           @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        User user = (User) authentication.getPrincipal();
+        return idempotencyService.execute(user.getId(), "deposit", idempotencyKey, request, () -> {
+            try {
+                String referenceId = referenceIdGenerator.next();
+
+                Map<String, Object> result = new LinkedHashMap<>(
+                        transactionService.createDepositTransaction(user, request.getAmount(), referenceId));
+                // The image is rendered only when a client fetches it
+                result.put("qrImageUrl", ServletUriComponentsBuilder.fromCurrentContextPath()
+                        .path("/api/user/deposits/{referenceId}/qr.png").buildAndExpand(referenceId).toUriString());
+                return ResponseEntity.ok(result);
+            } catch (Exception e) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Failed to create deposit: " + e.getMessage()));
+            }
+        });
+    }
+
+    @GetMapping("/deposits/{referenceId}/qr.png")
+    @Operation(summary = "Deposit QR code as PNG")
+    public ResponseEntity<?> getDepositQrPng(@PathVariable String referenceId, Authentication authentication,
+                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return depositQrImage(referenceId, authentication, ifNoneMatch, "png");
+    }
+
+    @GetMapping("/deposits/{referenceId}/qr.svg")
+    @Operation(summary = "Deposit QR code as SVG")
+    public ResponseEntity<?> getDepositQrSvg(@PathVariable String referenceId, Authentication authentication,
+                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return depositQrImage(referenceId, authentication, ifNoneMatch, "svg");
+    }
+
+    private ResponseEntity<?> depositQrImage(String referenceId, Authentication authentication, String ifNoneMatch,
+                                             String format) {
         try {
             User user = (User) authentication.getPrincipal();
-            String referenceId = vietQRService.generateReferenceId();
-            
-            var result = transactionService.createDepositTransaction(user, request.getAmount(), referenceId);
-            return ResponseEntity.ok(result);
+            String payload = transactionService.getDepositQrData(user, referenceId);
+            String etag = vietQRService.imageTag(payload, format);
+            // Only the owner may fetch it, so shared caches must not keep it
+            CacheControl cacheControl = CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable();
+            if (ifNoneMatch != null && ifNoneMatch.contains(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+            }
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag).cacheControl(cacheControl);
+            if ("svg".equals(format)) {
+                return response.contentType(SVG).body(vietQRService.renderSvg(payload));
+            }
+            return response.contentType(MediaType.IMAGE_PNG).body(vietQRService.renderPng(payload));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Failed to create deposit: " + e.getMessage()));
+                    .body(Map.of("error", "Failed to get deposit QR code: " + e.getMessage()));
         }
     }
 
-    @PostMapping("/purchase")
-    public ResponseEntity<?> purchaseProduct(@Valid @RequestBody PurchaseRequest request, Authentication authentication) {
+    @PostMapping("/deposits/{referenceId}/events/ticket")
+    @Operation(summary = "Issue a deposit stream ticket",
+            description = "Short-lived token for the deposit's event stream only, passed as ?ticket= since EventSource cannot send headers")
+    public ResponseEntity<?> issueDepositStreamTicket(@PathVariable String referenceId, Authentication authentication) {
         try {
             User user = (User) authentication.getPrincipal();
-            var result = transactionService.createPurchaseTransaction(user, request.getProductId());
-            return ResponseEntity.ok(result);
+            depositStatusStream.findDeposit(user, referenceId);
+            return ResponseEntity.ok(Map.of(
+                    "ticket", jwtUtil.generateStreamTicket(user, referenceId),
+                    "expiresInSeconds", TimeUnit.MILLISECONDS.toSeconds(jwtUtil.getStreamTicketExpiration())
+            ));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Failed to purchase product: " + e.getMessage()));
+                    .body(Map.of("error", "Failed to issue stream ticket: " + e.getMessage()));
         }
     }
 
+    @GetMapping("/deposits/{referenceId}/events")
+    @Operation(summary = "Stream deposit status",
+            description = "Server-sent events: the deposit's current status on connect and again when it completes or expires")
+    public SseEmitter streamDepositStatus(@PathVariable String referenceId, Authentication authentication) {
+        try {
+            User user = (User) authentication.getPrincipal();
+            return depositStatusStream.subscribe(user, referenceId);
+        } catch (Exception e) {
+            // Not a ResponseEntity: the emitter is handled as an async response, so errors go out as a status
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @PostMapping("/purchase")
+    public ResponseEntity<?> purchaseProduct(@Valid @RequestBody PurchaseRequest request, Authentication authentication,
+                                             @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        User user = (User) authentication.getPrincipal();
+        Long productId = request.getProductId();
+        boolean flashSale = flashSaleGate.isOpen(productId);
+        if (flashSale) {
+            // Queued buyers poll this endpoint, so they are answered from memory; the idempotency key
+            // is only claimed in the database once the buyer is admitted
+            Optional<ResponseEntity<?>> replay = idempotencyService.replayCached(user.getId(), "purchase", idempotencyKey, request);
+            if (replay.isPresent()) {
+                return replay.get();
+            }
+            FlashSaleGate.Decision admission = flashSaleGate.enter(productId, user.getId());
+            if (!admission.isAdmitted()) {
+                return flashSaleResponse(admission);
+            }
+        }
+        AtomicBoolean purchased = new AtomicBoolean();
+        try {
+            return idempotencyService.execute(user.getId(), "purchase", idempotencyKey, request, () -> {
+                try {
+                    var result = transactionService.createPurchaseTransaction(user, productId);
+                    purchased.set(true);
+                    return ResponseEntity.ok(result);
+                } catch (Exception e) {
+                    return ResponseEntity.badRequest()
+                            .body(Map.of("error", "Failed to purchase product: " + e.getMessage()));
+                }
+            });
+        } finally {
+            // Also ends the turn of an admitted buyer whose key was answered from an earlier purchase
+            if (flashSale) {
+                flashSaleGate.complete(productId, user.getId(), purchased.get());
+            }
+        }
+    }
+
+    @GetMapping("/flash-sales/{productId}")
+    public ResponseEntity<?> getFlashSaleStatus(@PathVariable Long productId, Authentication authentication) {
+        User user = (User) authentication.getPrincipal();
+        if (!flashSaleGate.isOpen(productId)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Product is not on flash sale"));
+        }
+        FlashSaleGate.Decision decision = flashSaleGate.status(productId, user.getId());
+        return ResponseEntity.ok(Map.of(
+                "status", decision.outcome(),
+                "position", decision.position(),
+                "unitsLeft", decision.unitsLeft()
+        ));
+    }
+
+    @PostMapping("/purchase/batch")
+    public ResponseEntity<?> purchaseBatch(@Valid @RequestBody BatchPurchaseRequest request, Authentication authentication,
+                                           @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        User user = (User) authentication.getPrincipal();
+        return idempotencyService.execute(user.getId(), "purchase/batch", idempotencyKey, request, () -> {
+            try {
+                var result = batchPurchaseService.purchase(user, request.getItems());
+                return ResponseEntity.ok(result);
+            } catch (Exception e) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Failed to purchase products: " + e.getMessage()));
+            }
+        });
+    }
+
+    /** Answers a buyer the flash-sale waiting room did not let through, without touching the database. */
+    private static ResponseEntity<?> flashSaleResponse(FlashSaleGate.Decision decision) {
+        return switch (decision.outcome()) {
+            case WAITING -> ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of(
+                            "status", decision.outcome(),
+                            "position", decision.position(),
+                            "unitsLeft", decision.unitsLeft()
+                    ));
+            case QUEUE_FULL -> ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(Map.of("error", "Flash sale waiting room is full, please try again shortly"));
+            default -> ResponseEntity.badRequest()
+                    .body(Map.of("error", "Failed to purchase product: Product is sold out"));
+        };
+    }
+
     @GetMapping("/transactions")
     public ResponseEntity<?> getTransactions(Authentication authentication) {
         try {
@@ -111,7 +286,7 @@ public class UserController {
     public ResponseEntity<?> getWalletBalance(Authentication authentication) {
         try {
             User user = (User) authentication.getPrincipal();
-            return ResponseEntity.ok(Map.of("balance", user.getWalletBalance()));
+            return ResponseEntity.ok(Map.of("balance", walletLedgerService.getBalance(user.getId())));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
                     .body(Map.of("error", "Failed to get wallet balance"));
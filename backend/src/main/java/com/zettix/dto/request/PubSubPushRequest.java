@@ -0,0 +1,29 @@
+package com.zettix.dto.request;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * Envelope Google Cloud Pub/Sub posts to push subscriptions.
+ * For Gmail watch notifications {@code message.data} is base64 JSON with emailAddress and historyId.
+ */
+@Data
+public class PubSubPushRequest {
+
+    private PushMessage message;
+
+    private String subscription;
+
+    @Data
+    public static class PushMessage {
+
+        private String data;
+
+        private String messageId;
+
+        private String publishTime;
+
+        private Map<String, String> attributes;
+    }
+}
@@ -0,0 +1,11 @@
+package com.zettix.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+@Data
+public class VerifyQrRequest {
+
+    @NotBlank(message = "Payload is required")
+    private String payload;
+}
@@ -8,7 +8,9 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "accounts")
+@Table(name = "accounts", indexes = {
+        @Index(name = "idx_accounts_allocation", columnList = "product_id, status, created_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
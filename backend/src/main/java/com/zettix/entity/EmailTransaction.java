@@ -9,7 +9,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "email_transactions")
+@Table(name = "email_transactions", indexes = {
+        @Index(name = "idx_email_transactions_reconcile", columnList = "is_processed, next_match_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -28,7 +30,8 @@ public class EmailTransaction {
     @Column(name = "subject")
     private String subject;
     
-    @Column(name = "body", columnDefinition = "TEXT")
+    // Stored compressed in email_transaction_bodies, see EmailBodyStore
+    @Transient
     private String body;
     
     @Column(name = "bank_account_number")
@@ -49,6 +52,13 @@ public class EmailTransaction {
     @Column(name = "processed_at")
     private LocalDateTime processedAt;
     
+    // Reconciliation retries of emails that matched no pending deposit
+    @Column(name = "match_attempts")
+    private Integer matchAttempts = 0;
+    
+    @Column(name = "next_match_at")
+    private LocalDateTime nextMatchAt;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "transaction_id")
     private Transaction transaction;
@@ -0,0 +1,34 @@
+package com.zettix.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Deflate-compressed raw body of an {@link EmailTransaction}, kept out of the hot
+ * {@code email_transactions} rows and only read when an admin opens the raw email.
+ */
+@Entity
+@Table(name = "email_transaction_bodies")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailTransactionBody {
+
+    @Id
+    @Column(name = "email_transaction_id")
+    private Long emailTransactionId;
+
+    @Lob
+    @Column(name = "compressed_body", columnDefinition = "MEDIUMBLOB", nullable = false)
+    private byte[] compressedBody;
+
+    @Column(name = "original_length", nullable = false)
+    private Integer originalLength;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
@@ -0,0 +1,34 @@
+package com.zettix.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "mail_sync_state")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MailSyncState {
+
+    @Id
+    @Column(name = "mailbox")
+    private String mailbox;
+
+    @Column(name = "history_id")
+    private String historyId;
+
+    @Column(name = "last_catch_up_at")
+    private LocalDateTime lastCatchUpAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    @PreUpdate
+    public void preUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+}
@@ -4,12 +4,15 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "products")
+// Saving an edited product only writes the edited columns, never the stock counters
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -35,6 +38,10 @@ public class Product {
     @Column(name = "is_active")
     private Boolean isActive = true;
     
+    // Purchases go through the flash-sale waiting room
+    @Column(name = "flash_sale")
+    private Boolean flashSale = false;
+    
     @Column(name = "total_quantity")
     private Integer totalQuantity = 0;
     
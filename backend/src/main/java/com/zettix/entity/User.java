@@ -39,7 +39,8 @@ public class User implements UserDetails {
     @Column(name = "phone_number")
     private String phoneNumber;
     
-    @Column(name = "wallet_balance", precision = 19, scale = 2)
+    // Materialized from the wallet ledger by WalletLedgerService snapshots; read live balances from the ledger
+    @Column(name = "wallet_balance", precision = 19, scale = 2, updatable = false)
     private BigDecimal walletBalance = BigDecimal.ZERO;
     
     @Enumerated(EnumType.STRING)
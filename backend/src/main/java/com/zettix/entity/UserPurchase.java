@@ -16,7 +16,8 @@ import java.time.LocalDateTime;
 public class UserPurchase {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_purchases_seq")
+    @SequenceGenerator(name = "user_purchases_seq", sequenceName = "user_purchases_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,36 @@
+package com.zettix.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A user's current wallet balance, kept next to the ledger so the database can refuse an overdraft:
+ * every debit is a conditional update of this row. It always equals the sum of the user's
+ * {@link WalletLedgerEntry} rows and is created from them the first time the wallet changes.
+ * {@code revision} counts the changes, so a cached copy can tell which of two balances is newer.
+ */
+@Entity
+@Table(name = "wallet_balances")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletBalance {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "balance", precision = 19, scale = 2, nullable = false)
+    private BigDecimal balance = BigDecimal.ZERO;
+
+    @Column(name = "revision", nullable = false)
+    private Long revision = 0L;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt = LocalDateTime.now();
+}
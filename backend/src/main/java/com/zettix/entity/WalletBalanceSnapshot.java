@@ -0,0 +1,34 @@
+package com.zettix.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A user's balance as the sum of their {@link WalletLedgerEntry} rows up to and including
+ * {@code revision}. The current balance is this plus the entries of later revisions.
+ */
+@Entity
+@Table(name = "wallet_balance_snapshots")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletBalanceSnapshot {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "balance", precision = 19, scale = 2, nullable = false)
+    private BigDecimal balance = BigDecimal.ZERO;
+
+    @Column(name = "revision", nullable = false)
+    private Long revision = 0L;
+
+    @Column(name = "taken_at")
+    private LocalDateTime takenAt = LocalDateTime.now();
+}
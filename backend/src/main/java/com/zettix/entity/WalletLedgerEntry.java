@@ -0,0 +1,50 @@
+package com.zettix.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One append-only change to a user's wallet: positive for deposits, refunds and credits by an admin,
+ * negative for purchases and debits by an admin. Rows are never updated; a balance is the sum of a
+ * user's entries. {@code revision} is the revision of the user's {@link WalletBalance} row the entry
+ * led to, so a user's entries commit in revision order even when their ids do not.
+ */
+@Entity
+@Table(name = "wallet_ledger_entries", indexes = {
+        @Index(name = "idx_wallet_ledger_user", columnList = "user_id, revision")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletLedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "wallet_ledger_entries_seq")
+    @SequenceGenerator(name = "wallet_ledger_entries_seq", sequenceName = "wallet_ledger_entries_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false, updatable = false)
+    private Long userId;
+
+    @Column(name = "entry_type", nullable = false, updatable = false)
+    @Enumerated(EnumType.STRING)
+    private Transaction.TransactionType entryType;
+
+    @Column(name = "amount", precision = 19, scale = 2, nullable = false, updatable = false)
+    private BigDecimal amount;
+
+    @Column(name = "transaction_id", updatable = false)
+    private Long transactionId;
+
+    // 0 for entries written before the user's balance row existed, which the row was created from
+    @Column(name = "revision", nullable = false, updatable = false)
+    private Long revision = 0L;
+
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
@@ -2,11 +2,17 @@ package com.zettix.repository;
 
 import com.zettix.entity.Account;
 import com.zettix.entity.Product;
+import com.zettix.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,6 +28,43 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
     @Query("SELECT a FROM Account a WHERE a.product = :product AND a.status = 'AVAILABLE' ORDER BY a.createdAt ASC")
     List<Account> findAvailableAccountsByProduct(@Param("product") Product product);
     
+    // Locks the oldest available accounts of a product in one statement along idx_accounts_allocation; rows
+    // other transactions hold are skipped, not waited on, and MySQL skips them before the limit applies
+    @Query(value = "SELECT * FROM accounts WHERE product_id = :productId AND status = 'AVAILABLE' " +
+                   "ORDER BY product_id, status, created_at, id LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<Account> lockOldestAvailable(@Param("productId") Long productId, @Param("limit") int limit);
+    
+    // Locks those of the given accounts that are still available; rows other transactions hold are skipped, not waited on
+    @Query(value = "SELECT * FROM accounts WHERE id IN (:ids) AND status = 'AVAILABLE' FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<Account> lockAvailable(@Param("ids") Collection<Long> ids);
+    
+    // Ordered by the full idx_accounts_allocation key so the ids are read from the index, oldest first
+    @Query("SELECT a.id FROM Account a WHERE a.product.id = :productId AND a.status = 'AVAILABLE' " +
+           "ORDER BY a.product.id, a.status, a.createdAt, a.id")
+    List<Long> findAvailableIdsByProduct(@Param("productId") Long productId, Pageable pageable);
+    
+    // Accounts not sold yet, including those held by open purchases or reserved in a pool; takes no locks
+    @Query("SELECT COUNT(a) FROM Account a WHERE a.product.id = :productId AND a.status IN ('AVAILABLE', 'RESERVED')")
+    long countUnsoldByProductId(@Param("productId") Long productId);
+    
+    // Moves the given accounts between states, skipping any that are no longer in the expected one
+    @Modifying
+    @Query("UPDATE Account a SET a.status = :to, a.updatedAt = :now WHERE a.id IN :ids AND a.status = :from")
+    int updateStatus(@Param("ids") Collection<Long> ids, @Param("from") Account.AccountStatus from,
+                     @Param("to") Account.AccountStatus to, @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Query("UPDATE Account a SET a.status = 'SOLD', a.soldToUser = :user, a.soldAt = :now, " +
+           "a.purchasePrice = :price, a.updatedAt = :now WHERE a.id IN :ids")
+    int markSold(@Param("ids") Collection<Long> ids, @Param("user") User user,
+                 @Param("price") BigDecimal price, @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Query("UPDATE Account a SET a.status = 'AVAILABLE', a.updatedAt = :now WHERE a.status = 'RESERVED'")
+    int releaseAllReserved(@Param("now") LocalDateTime now);
+    
     @Query("SELECT a FROM Account a WHERE a.status = 'AVAILABLE' ORDER BY a.createdAt ASC")
     List<Account> findAvailableAccounts();
     
@@ -31,6 +74,9 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
     @Query("SELECT COUNT(a) FROM Account a WHERE a.status = 'SOLD'")
     Long countSoldAccounts();
     
+    @Query("SELECT a.product.id, a.status, COUNT(a) FROM Account a GROUP BY a.product.id, a.status")
+    List<Object[]> countByProductAndStatus();
+    
     @Query("SELECT a FROM Account a WHERE a.soldToUser.id = :userId ORDER BY a.soldAt DESC")
     List<Account> findAccountsByUserId(@Param("userId") Long userId);
 }
@@ -0,0 +1,9 @@
+package com.zettix.repository;
+
+import com.zettix.entity.EmailTransactionBody;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface EmailTransactionBodyRepository extends JpaRepository<EmailTransactionBody, Long> {
+}
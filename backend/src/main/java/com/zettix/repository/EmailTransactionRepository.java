@@ -1,12 +1,16 @@
 package com.zettix.repository;
 
 import com.zettix.entity.EmailTransaction;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,6 +19,9 @@ public interface EmailTransactionRepository extends JpaRepository<EmailTransacti
     
     Optional<EmailTransaction> findByEmailId(String emailId);
     
+    @Query("SELECT et.emailId FROM EmailTransaction et WHERE et.emailId IN :emailIds")
+    List<String> findEmailIdsByEmailIdIn(@Param("emailIds") Collection<String> emailIds);
+    
     List<EmailTransaction> findByIsProcessedFalse();
     
     List<EmailTransaction> findByIsProcessedTrue();
@@ -22,6 +29,27 @@ public interface EmailTransactionRepository extends JpaRepository<EmailTransacti
     @Query("SELECT et FROM EmailTransaction et WHERE et.isProcessed = false ORDER BY et.createdAt ASC")
     List<EmailTransaction> findUnprocessedEmailTransactions();
     
+    // Keyset page of unprocessed emails that are due for another matching attempt
+    @Query("SELECT et FROM EmailTransaction et WHERE et.isProcessed = false AND et.id > :afterId " +
+           "AND et.createdAt >= :notBefore AND et.createdAt <= :settledBefore " +
+           "AND (et.nextMatchAt IS NULL OR et.nextMatchAt <= :now) ORDER BY et.id ASC")
+    List<EmailTransaction> findReconcilable(@Param("afterId") Long afterId,
+                                            @Param("notBefore") LocalDateTime notBefore,
+                                            @Param("settledBefore") LocalDateTime settledBefore,
+                                            @Param("now") LocalDateTime now,
+                                            Pageable pageable);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailTransaction et SET et.isProcessed = true, et.processedAt = :now, et.updatedAt = :now WHERE et.id IN :ids")
+    int markProcessed(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailTransaction et SET et.matchAttempts = :attempts, et.nextMatchAt = :nextMatchAt, et.updatedAt = :now WHERE et.id IN :ids")
+    int scheduleMatchRetry(@Param("ids") Collection<Long> ids, @Param("attempts") int attempts,
+                           @Param("nextMatchAt") LocalDateTime nextMatchAt, @Param("now") LocalDateTime now);
+    
     @Query("SELECT et FROM EmailTransaction et WHERE et.bankAccountNumber = :accountNumber AND et.amount = :amount AND et.referenceCode = :referenceCode")
     List<EmailTransaction> findMatchingTransactions(@Param("accountNumber") String accountNumber, 
                                                    @Param("amount") java.math.BigDecimal amount, 
@@ -29,4 +57,16 @@ public interface EmailTransactionRepository extends JpaRepository<EmailTransacti
     
     @Query("SELECT COUNT(et) FROM EmailTransaction et WHERE et.isProcessed = true AND et.createdAt >= :fromDate")
     Long countProcessedTransactionsSince(@Param("fromDate") LocalDateTime fromDate);
+    
+    // Bodies written before they moved to email_transaction_bodies; the column is no longer mapped
+    @Query(value = "SELECT id, body FROM email_transactions WHERE body IS NOT NULL ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<Object[]> findLegacyBodies(@Param("limit") int limit);
+    
+    @Modifying
+    @Query(value = "UPDATE email_transactions SET body = NULL WHERE id IN :ids", nativeQuery = true)
+    int clearLegacyBodies(@Param("ids") Collection<Long> ids);
+    
+    @Modifying
+    @Query(value = "ALTER TABLE email_transactions DROP COLUMN body", nativeQuery = true)
+    void dropLegacyBodyColumn();
 }
@@ -0,0 +1,28 @@
+package com.zettix.repository;
+
+import com.zettix.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
+
+    Optional<IdempotencyRecord> findByUserIdAndEndpointAndIdempotencyKey(Long userId, String endpoint, String idempotencyKey);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+
+    // Frees an expired key for reuse before its row is purged
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.userId = :userId AND r.endpoint = :endpoint " +
+           "AND r.idempotencyKey = :key AND r.expiresAt < :now")
+    int deleteExpiredKey(@Param("userId") Long userId, @Param("endpoint") String endpoint,
+                         @Param("key") String key, @Param("now") LocalDateTime now);
+}
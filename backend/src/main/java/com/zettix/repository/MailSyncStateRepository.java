@@ -0,0 +1,9 @@
+package com.zettix.repository;
+
+import com.zettix.entity.MailSyncState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MailSyncStateRepository extends JpaRepository<MailSyncState, String> {
+}
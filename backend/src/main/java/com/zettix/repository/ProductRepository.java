@@ -2,10 +2,12 @@ package com.zettix.repository;
 
 import com.zettix.entity.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -19,6 +21,8 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     
     List<Product> findByIsActiveTrueAndProductType(Product.ProductType productType);
     
+    List<Product> findByFlashSaleTrue();
+    
     @Query("SELECT p FROM Product p WHERE p.isActive = true AND p.availableQuantity > 0")
     List<Product> findAvailableProducts();
     
@@ -30,4 +34,17 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     
     @Query("SELECT SUM(p.soldQuantity) FROM Product p WHERE p.isActive = true")
     Long getTotalSoldQuantity();
+    
+    @Query("SELECT p.id, p.availableQuantity, p.soldQuantity FROM Product p")
+    List<Object[]> findStockCounters();
+    
+    // Relative update, so it cannot overwrite sales flushed concurrently by ProductStockCounters.
+    // Clears the persistence context: products loaded before would show the old counters
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Product p SET p.totalQuantity = p.totalQuantity + :totalDelta, " +
+           "p.availableQuantity = p.availableQuantity + :availableDelta, " +
+           "p.soldQuantity = p.soldQuantity + :soldDelta, p.updatedAt = :now WHERE p.id = :productId")
+    int adjustStock(@Param("productId") Long productId, @Param("totalDelta") int totalDelta,
+                    @Param("availableDelta") int availableDelta, @Param("soldDelta") int soldDelta,
+                    @Param("now") LocalDateTime now);
 }
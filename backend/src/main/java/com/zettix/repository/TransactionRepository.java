@@ -3,6 +3,7 @@ package com.zettix.repository;
 import com.zettix.entity.Transaction;
 import com.zettix.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -27,9 +28,26 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
     
     Optional<Transaction> findByReferenceId(String referenceId);
     
+    List<Transaction> findByTransactionTypeAndStatus(Transaction.TransactionType transactionType, Transaction.TransactionStatus status);
+    
     @Query("SELECT t FROM Transaction t WHERE t.user = :user AND t.transactionType = :type ORDER BY t.createdAt DESC")
     List<Transaction> findUserTransactionsByType(@Param("user") User user, @Param("type") Transaction.TransactionType type);
     
+    // Returns 1 for the caller that moved the deposit out of PENDING, 0 for everyone else
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Transaction t SET t.status = 'COMPLETED', t.completedAt = :now, t.updatedAt = :now " +
+           "WHERE t.id = :id AND t.status = 'PENDING'")
+    int completePending(@Param("id") Long id, @Param("now") LocalDateTime now);
+    
+    // Same claim for the cleanup job: 0 when a confirmation moved the deposit out of PENDING first
+    @Modifying
+    @Query("UPDATE Transaction t SET t.status = 'EXPIRED', t.updatedAt = :now WHERE t.id = :id AND t.status = 'PENDING'")
+    int expirePending(@Param("id") Long id, @Param("now") LocalDateTime now);
+    
+    @Query("SELECT t.qrCodeData FROM Transaction t WHERE t.referenceId = :referenceId " +
+           "AND t.user.id = :userId AND t.transactionType = 'DEPOSIT'")
+    Optional<String> findDepositQrCodeData(@Param("referenceId") String referenceId, @Param("userId") Long userId);
+    
     @Query("SELECT t FROM Transaction t WHERE t.status = 'PENDING' AND t.expiresAt < :now")
     List<Transaction> findExpiredTransactions(@Param("now") LocalDateTime now);
     
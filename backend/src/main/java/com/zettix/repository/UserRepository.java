@@ -2,10 +2,12 @@ package com.zettix.repository;
 
 import com.zettix.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,4 +34,18 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     @Query("SELECT SUM(u.walletBalance) FROM User u WHERE u.isActive = true")
     java.math.BigDecimal getTotalWalletBalance();
+    
+    // Materialized copy of the ledger balance, written by wallet snapshots only
+    @Modifying
+    @Query("UPDATE User u SET u.walletBalance = :balance WHERE u.id = :userId")
+    int updateWalletBalance(@Param("userId") Long userId, @Param("balance") BigDecimal balance);
+    
+    // Serializes the first change of a wallet across application instances; returns null for an unknown user
+    @Query(value = "SELECT id FROM users WHERE id = :userId FOR UPDATE", nativeQuery = true)
+    Long lockById(@Param("userId") Long userId);
+    
+    // [userId, walletBalance] of users whose balance predates the wallet ledger
+    @Query("SELECT u.id, u.walletBalance FROM User u WHERE u.walletBalance <> 0 " +
+           "AND NOT EXISTS (SELECT e.id FROM WalletLedgerEntry e WHERE e.userId = u.id)")
+    List<Object[]> findBalancesWithoutLedger();
 }
@@ -0,0 +1,46 @@
+package com.zettix.repository;
+
+import com.zettix.entity.WalletBalance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WalletBalanceRepository extends JpaRepository<WalletBalance, Long> {
+
+    // Matches no row when the balance does not cover the amount, so two debits can never both spend it
+    @Modifying
+    @Query("UPDATE WalletBalance b SET b.balance = b.balance - :amount, b.revision = b.revision + 1, b.updatedAt = :now " +
+           "WHERE b.userId = :userId AND b.balance >= :amount")
+    int debit(@Param("userId") Long userId, @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE WalletBalance b SET b.balance = b.balance + :amount, b.revision = b.revision + 1, b.updatedAt = :now WHERE b.userId = :userId")
+    int credit(@Param("userId") Long userId, @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+
+    // Read after debit or credit in the same transaction, while the update still holds the row lock
+    @Query("SELECT b.balance AS balance, b.revision AS revision FROM WalletBalance b WHERE b.userId = :userId")
+    Optional<Current> findCurrent(@Param("userId") Long userId);
+
+    // Locking read: sees a row another transaction committed after this one's snapshot was taken
+    @Query(value = "SELECT user_id FROM wallet_balances WHERE user_id = :userId FOR UPDATE", nativeQuery = true)
+    Long lockById(@Param("userId") Long userId);
+
+    // Rows without a snapshot or with changes committed after it
+    @Query("SELECT b FROM WalletBalance b LEFT JOIN WalletBalanceSnapshot s ON s.userId = b.userId " +
+           "WHERE s.userId IS NULL OR s.revision < b.revision")
+    List<WalletBalance> findChangedSinceSnapshot();
+
+    interface Current {
+        BigDecimal getBalance();
+
+        long getRevision();
+    }
+}
@@ -0,0 +1,30 @@
+package com.zettix.repository;
+
+import com.zettix.entity.WalletLedgerEntry;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Repository
+public interface WalletLedgerEntryRepository extends JpaRepository<WalletLedgerEntry, Long> {
+
+    @Query("SELECT COALESCE(SUM(e.amount), 0) FROM WalletLedgerEntry e WHERE e.userId = :userId AND e.revision > :afterRevision")
+    BigDecimal sumAfter(@Param("userId") Long userId, @Param("afterRevision") Long afterRevision);
+
+    @Query("SELECT COALESCE(SUM(e.amount), 0) FROM WalletLedgerEntry e " +
+           "WHERE e.userId IN (SELECT u.id FROM User u WHERE u.isActive = true)")
+    BigDecimal sumForActiveUsers();
+
+    // [userId, revision, amount] in ledger order; rows are scalars so nothing accumulates in the persistence context
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT e.userId, e.revision, e.amount FROM WalletLedgerEntry e ORDER BY e.userId, e.revision, e.id")
+    Stream<Object[]> streamAllInLedgerOrder();
+}
@@ -0,0 +1,30 @@
+package com.zettix.scheduler;
+
+import com.zettix.service.DepositStatusStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@DisallowConcurrentExecution
+public class DepositStreamHeartbeatJob implements Job {
+
+    private final DepositStatusStream depositStatusStream;
+
+    @Override
+    public void execute(JobExecutionContext context) throws JobExecutionException {
+        try {
+            int open = depositStatusStream.heartbeat();
+            log.debug("Sent heartbeat to {} deposit status streams", open);
+        } catch (Exception e) {
+            log.error("Error in deposit stream heartbeat job: {}", e.getMessage(), e);
+            throw new JobExecutionException("Deposit stream heartbeat job failed", e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.zettix.scheduler;
+
+import com.zettix.service.EmailReconciliationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EmailReconciliationJob implements Job {
+
+    private final EmailReconciliationService emailReconciliationService;
+
+    @Override
+    public void execute(JobExecutionContext context) throws JobExecutionException {
+        try {
+            log.debug("Starting email reconciliation job");
+            emailReconciliationService.reconcile();
+        } catch (Exception e) {
+            log.error("Error in email reconciliation job: {}", e.getMessage(), e);
+            throw new JobExecutionException("Email reconciliation job failed", e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.zettix.scheduler;
+
+import com.zettix.service.MailSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GmailTokenRefreshJob implements Job {
+
+    private final MailSource mailSource;
+
+    @Override
+    public void execute(JobExecutionContext context) throws JobExecutionException {
+        try {
+            mailSource.refreshCredentials();
+        } catch (Exception e) {
+            log.error("Error in Gmail token refresh job: {}", e.getMessage(), e);
+            throw new JobExecutionException("Gmail token refresh job failed", e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.zettix.scheduler;
+
+import com.zettix.service.GmailPushService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GmailWatchRenewalJob implements Job {
+
+    private final GmailPushService gmailPushService;
+
+    @Override
+    public void execute(JobExecutionContext context) throws JobExecutionException {
+        try {
+            gmailPushService.renewWatch();
+        } catch (Exception e) {
+            log.error("Error in Gmail watch renewal job: {}", e.getMessage(), e);
+            throw new JobExecutionException("Gmail watch renewal job failed", e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.zettix.scheduler;
+
+import com.zettix.service.InventoryPool;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@DisallowConcurrentExecution
+public class InventoryRefillJob implements Job {
+
+    private final InventoryPool inventoryPool;
+
+    @Override
+    public void execute(JobExecutionContext context) throws JobExecutionException {
+        try {
+            inventoryPool.refill();
+        } catch (Exception e) {
+            log.error("Error in inventory refill job: {}", e.getMessage(), e);
+            throw new JobExecutionException("Inventory refill job failed", e);
+        }
+    }
+}
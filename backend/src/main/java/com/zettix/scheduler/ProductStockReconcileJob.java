@@ -0,0 +1,30 @@
+package com.zettix.scheduler;
+
+import com.zettix.service.ProductStockCounters;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@DisallowConcurrentExecution
+public class ProductStockReconcileJob implements Job {
+
+    private final ProductStockCounters productStockCounters;
+
+    @Override
+    public void execute(JobExecutionContext context) throws JobExecutionException {
+        try {
+            int corrected = productStockCounters.reconcile();
+            log.info("Product stock reconcile job completed. Corrected {} products", corrected);
+        } catch (Exception e) {
+            log.error("Error in product stock reconcile job: {}", e.getMessage(), e);
+            throw new JobExecutionException("Product stock reconcile job failed", e);
+        }
+    }
+}
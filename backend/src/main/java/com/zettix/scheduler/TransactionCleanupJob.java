@@ -2,12 +2,17 @@ package com.zettix.scheduler;
 
 import com.zettix.entity.Transaction;
 import com.zettix.repository.TransactionRepository;
+import com.zettix.service.DepositStatusStream;
+import com.zettix.service.IdempotencyService;
+import com.zettix.service.PendingDepositIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.quartz.Job;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -18,6 +23,10 @@ import java.util.List;
 public class TransactionCleanupJob implements Job {
 
     private final TransactionRepository transactionRepository;
+    private final PendingDepositIndex pendingDepositIndex;
+    private final DepositStatusStream depositStatusStream;
+    private final IdempotencyService idempotencyService;
+    private final PlatformTransactionManager transactionManager;
 
     @Override
     public void execute(JobExecutionContext context) throws JobExecutionException {
@@ -25,15 +34,30 @@ public class TransactionCleanupJob implements Job {
             log.info("Starting transaction cleanup job");
             
             // Find expired pending transactions
-            List<Transaction> expiredTransactions = transactionRepository.findExpiredTransactions(LocalDateTime.now());
+            LocalDateTime now = LocalDateTime.now();
+            List<Transaction> expiredTransactions = transactionRepository.findExpiredTransactions(now);
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            int expired = 0;
             
             for (Transaction transaction : expiredTransactions) {
+                // A late confirmation may have credited the deposit since it was read above
+                Integer updated = transactionTemplate.execute(status -> transactionRepository.expirePending(transaction.getId(), now));
+                if (updated == null || updated == 0) {
+                    log.info("Transaction {} left pending before it could expire", transaction.getId());
+                    continue;
+                }
                 transaction.setStatus(Transaction.TransactionStatus.EXPIRED);
-                transactionRepository.save(transaction);
+                transaction.setUpdatedAt(now);
+                pendingDepositIndex.remove(transaction.getReferenceId());
+                depositStatusStream.publish(transaction);
+                expired++;
                 log.info("Marked transaction {} as expired", transaction.getId());
             }
             
-            log.info("Transaction cleanup job completed. Processed {} expired transactions", expiredTransactions.size());
+            int purgedKeys = idempotencyService.purgeExpired();
+            
+            log.info("Transaction cleanup job completed. Expired {} of {} transactions, purged {} idempotency keys",
+                    expired, expiredTransactions.size(), purgedKeys);
         } catch (Exception e) {
             log.error("Error in transaction cleanup job: {}", e.getMessage(), e);
             throw new JobExecutionException("Transaction cleanup job failed", e);
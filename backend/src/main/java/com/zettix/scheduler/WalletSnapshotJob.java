@@ -0,0 +1,28 @@
+package com.zettix.scheduler;
+
+import com.zettix.service.WalletLedgerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WalletSnapshotJob implements Job {
+
+    private final WalletLedgerService walletLedgerService;
+
+    @Override
+    public void execute(JobExecutionContext context) throws JobExecutionException {
+        try {
+            log.debug("Starting wallet snapshot job");
+            walletLedgerService.takeSnapshots();
+        } catch (Exception e) {
+            log.error("Error in wallet snapshot job: {}", e.getMessage(), e);
+            throw new JobExecutionException("Wallet snapshot job failed", e);
+        }
+    }
+}
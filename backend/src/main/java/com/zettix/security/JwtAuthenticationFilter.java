@@ -14,11 +14,16 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Component
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    private static final Pattern DEPOSIT_EVENTS = Pattern.compile("/api/user/deposits/([^/]+)/events");
+    private static final String TICKET_PARAMETER = "ticket";
+
     private final JwtUtil jwtUtil;
     private final UserService userService;
 
@@ -26,15 +31,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
                                   FilterChain filterChain) throws ServletException, IOException {
         
-        final String authorizationHeader = request.getHeader("Authorization");
+        final String jwt = resolveToken(request);
         
-        if (authorizationHeader == null || !authorizationHeader.startsWith("Bearer ")) {
+        if (jwt == null) {
             filterChain.doFilter(request, response);
             return;
         }
         
         try {
-            final String jwt = authorizationHeader.substring(7);
             final String username = jwtUtil.extractUsername(jwt);
             
             if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
@@ -57,4 +61,34 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * A bearer token from the Authorization header, or a stream ticket on the deposit events route.
+     * Browsers cannot set headers on an EventSource, so that route takes a ticket as a parameter; a
+     * ticket only counts for the deposit it was issued for and never as a bearer token.
+     */
+    private String resolveToken(HttpServletRequest request) {
+        String authorizationHeader = request.getHeader("Authorization");
+        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
+            String token = authorizationHeader.substring(7);
+            return isStreamTicket(token, null) ? null : token;
+        }
+        Matcher events = DEPOSIT_EVENTS.matcher(request.getRequestURI().substring(request.getContextPath().length()));
+        if (events.matches()) {
+            String ticket = request.getParameter(TICKET_PARAMETER);
+            return ticket != null && isStreamTicket(ticket, events.group(1)) ? ticket : null;
+        }
+        return null;
+    }
+
+    /** Whether the token is a stream ticket, for {@code referenceId} when one is given. */
+    private boolean isStreamTicket(String token, String referenceId) {
+        try {
+            String ticketReference = jwtUtil.extractStreamTicketReference(token);
+            return ticketReference != null && (referenceId == null || ticketReference.equals(referenceId));
+        } catch (Exception e) {
+            // Unreadable tokens are turned away by the signature check in doFilterInternal
+            return false;
+        }
+    }
 }
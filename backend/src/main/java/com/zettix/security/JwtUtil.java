@@ -23,6 +23,12 @@ public class JwtUtil {
     @Value("${jwt.expiration}")
     private Long expiration;
 
+    @Value("${jwt.stream-ticket-expiration:60000}")
+    private Long streamTicketExpiration;
+
+    // Claim of a stream ticket: the reference of the one deposit whose events it opens
+    private static final String STREAM_TICKET_CLAIM = "deposit_events";
+
     private SecretKey getSigningKey() {
         return Keys.hmacShaKeyFor(secret.getBytes());
     }
@@ -61,12 +67,33 @@ public class JwtUtil {
         return createToken(extraClaims, userDetails.getUsername());
     }
 
+    /**
+     * A short-lived token that only opens the event stream of one deposit. EventSource cannot send
+     * headers, so it travels in the URL, where it may end up in logs; it is useless elsewhere.
+     */
+    public String generateStreamTicket(UserDetails userDetails, String referenceId) {
+        return createToken(Map.of(STREAM_TICKET_CLAIM, referenceId), userDetails.getUsername(), streamTicketExpiration);
+    }
+
+    /** The deposit reference of a stream ticket, or null for a regular token. */
+    public String extractStreamTicketReference(String token) {
+        return extractClaim(token, claims -> claims.get(STREAM_TICKET_CLAIM, String.class));
+    }
+
+    public long getStreamTicketExpiration() {
+        return streamTicketExpiration;
+    }
+
     private String createToken(Map<String, Object> claims, String subject) {
+        return createToken(claims, subject, expiration);
+    }
+
+    private String createToken(Map<String, Object> claims, String subject, long validForMs) {
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + expiration))
+                .setExpiration(new Date(System.currentTimeMillis() + validForMs))
                 .signWith(getSigningKey(), SignatureAlgorithm.HS256)
                 .compact();
     }
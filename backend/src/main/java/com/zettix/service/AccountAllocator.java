@@ -0,0 +1,79 @@
+package com.zettix.service;
+
+import com.zettix.entity.Account;
+import com.zettix.entity.Product;
+import com.zettix.repository.AccountRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Hands out the stock of a product. A claim locks the oldest available accounts with a single
+ * {@code ORDER BY ... LIMIT n FOR UPDATE SKIP LOCKED} read along {@code idx_accounts_allocation}, so its
+ * cost does not grow with the stock and concurrent buyers of one product each get different accounts
+ * without waiting on each other.
+ * <p>
+ * Databases that apply the limit before skipping locked rows, such as H2, would hand a buyer nothing
+ * while another holds the oldest account. With {@code inventory.allocation.skip-locked-before-limit}
+ * off, a claim instead reads a window of candidate ids and locks the first free ones among them.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AccountAllocator {
+
+    private static final int CANDIDATE_WINDOW = 32;
+
+    private final AccountRepository accountRepository;
+
+    @Value("${inventory.allocation.skip-locked-before-limit:true}")
+    private boolean skipLockedBeforeLimit;
+
+    /**
+     * Locks the oldest available account of the product until the caller's transaction ends, or
+     * returns empty when no account is free to claim right now. The caller is expected to mark the
+     * account sold before committing.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<Account> claim(Product product) {
+        return claim(product, 1).stream().findFirst();
+    }
+
+    /**
+     * Locks up to {@code quantity} of the oldest available accounts of the product. Returns fewer when
+     * the stock runs out or the remaining accounts are held by other open transactions; those may
+     * still roll back, so a short result does not by itself mean the product is sold out.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Account> claim(Product product, int quantity) {
+        List<Account> claimed = skipLockedBeforeLimit
+                ? accountRepository.lockOldestAvailable(product.getId(), quantity)
+                : claimFromWindow(product.getId(), quantity);
+        if (claimed.isEmpty()) {
+            log.debug("No account of product {} free to claim", product.getId());
+        }
+        return claimed;
+    }
+
+    private List<Account> claimFromWindow(Long productId, int quantity) {
+        List<Long> candidates = accountRepository.findAvailableIdsByProduct(productId,
+                PageRequest.of(0, Math.max(quantity, CANDIDATE_WINDOW)));
+        List<Account> claimed = new ArrayList<>(quantity);
+        int next = 0;
+        while (next < candidates.size() && claimed.size() < quantity) {
+            int end = Math.min(candidates.size(), next + quantity - claimed.size());
+            // Candidates locked by other buyers, or sold since the read, are left out
+            claimed.addAll(accountRepository.lockAvailable(candidates.subList(next, end)));
+            next = end;
+        }
+        return claimed;
+    }
+}
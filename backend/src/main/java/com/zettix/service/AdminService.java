@@ -12,6 +12,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -25,6 +26,10 @@ public class AdminService {
     private final AccountRepository accountRepository;
     private final TransactionRepository transactionRepository;
     private final UserPurchaseRepository userPurchaseRepository;
+    private final WalletLedgerEntryRepository walletLedgerEntryRepository;
+    private final InventoryPool inventoryPool;
+    private final ProductStockCounters productStockCounters;
+    private final FlashSaleGate flashSaleGate;
 
     // User Management
     public List<User> getAllUsers() {
@@ -52,7 +57,7 @@ public class AdminService {
 
     // Product Management
     public List<Product> getAllProducts() {
-        return productRepository.findAll();
+        return productStockCounters.view(productRepository.findAll());
     }
 
     @Transactional
@@ -74,6 +79,14 @@ public class AdminService {
 
     @Transactional
     public Product updateProduct(Long id, UpdateProductRequest request) {
+        if (request.getTotalQuantity() != null) {
+            Product current = productRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("Product not found"));
+            int quantityDiff = request.getTotalQuantity() - current.getTotalQuantity();
+            productRepository.adjustStock(id, quantityDiff, quantityDiff, 0, LocalDateTime.now());
+        }
+
+        // Loaded after the stock change, which clears the persistence context
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found"));
 
@@ -92,16 +105,11 @@ public class AdminService {
         if (request.getCategory() != null) {
             product.setCategory(request.getCategory());
         }
-        if (request.getTotalQuantity() != null) {
-            int quantityDiff = request.getTotalQuantity() - product.getTotalQuantity();
-            product.setTotalQuantity(request.getTotalQuantity());
-            product.setAvailableQuantity(product.getAvailableQuantity() + quantityDiff);
-        }
         if (request.getIsActive() != null) {
             product.setIsActive(request.getIsActive());
         }
 
-        return productRepository.save(product);
+        return productStockCounters.view(productRepository.save(product));
     }
 
     @Transactional
@@ -110,7 +118,7 @@ public class AdminService {
                 .orElseThrow(() -> new RuntimeException("Product not found"));
 
         // Check if product has any sold accounts
-        if (product.getSoldQuantity() > 0) {
+        if (productStockCounters.sold(product) > 0) {
             throw new RuntimeException("Cannot delete product with sold accounts");
         }
 
@@ -125,6 +133,20 @@ public class AdminService {
         return productRepository.save(product);
     }
 
+    @Transactional
+    public Product toggleFlashSale(Long id) {
+        Product product = productRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Product not found"));
+        product.setFlashSale(!Boolean.TRUE.equals(product.getFlashSale()));
+        Product saved = productRepository.save(product);
+        if (saved.getFlashSale()) {
+            flashSaleGate.open(saved);
+        } else {
+            flashSaleGate.close(id);
+        }
+        return saved;
+    }
+
     // Account Management
     public List<Account> getAllAccounts() {
         return accountRepository.findAll();
@@ -154,10 +176,9 @@ public class AdminService {
                 importedCount++;
             }
 
-            // Update product quantities
-            product.setTotalQuantity(product.getTotalQuantity() + importedCount);
-            product.setAvailableQuantity(product.getAvailableQuantity() + importedCount);
-            productRepository.save(product);
+            // Update product quantities in place, next to sales being flushed
+            productRepository.adjustStock(productId, importedCount, importedCount, 0, LocalDateTime.now());
+            inventoryPool.markRestocked(productId);
 
             return Map.of(
                     "message", "Accounts imported successfully",
@@ -177,9 +198,11 @@ public class AdminService {
             Long totalUsers = userRepository.countActiveUsers();
             Long totalProducts = productRepository.countActiveProducts();
             Long totalSoldAccounts = accountRepository.countSoldAccounts();
-            Long totalSoldQuantity = productRepository.getTotalSoldQuantity();
+            Long storedSoldQuantity = productRepository.getTotalSoldQuantity();
+            Long totalSoldQuantity = (storedSoldQuantity == null ? 0 : storedSoldQuantity)
+                    + productStockCounters.totalPendingSales();
             BigDecimal totalRevenue = userPurchaseRepository.getTotalRevenue();
-            BigDecimal totalWalletBalance = userRepository.getTotalWalletBalance();
+            BigDecimal totalWalletBalance = walletLedgerEntryRepository.sumForActiveUsers();
             Long completedDeposits = transactionRepository.countCompletedDeposits();
             Long completedPurchases = transactionRepository.countCompletedPurchases();
 
@@ -209,4 +232,48 @@ public class AdminService {
         return transactionRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Transaction not found"));
     }
+
+    /**
+     * Decodes a VietQR payload, e.g. scanned from a customer's screenshot, and compares it with the
+     * deposit its memo refers to.
+     */
+    public Map<String, Object> verifyQrPayload(String payload) {
+        String problem = EmvTlvCodec.validate(payload);
+        long hundredths = EmvTlvCodec.amountInHundredths(payload);
+        BigDecimal amount = hundredths < 0 ? null : BigDecimal.valueOf(hundredths, 2).stripTrailingZeros();
+        CharSequence memo = EmvTlvCodec.memo(payload);
+
+        // Several fields are absent for foreign or broken payloads, which Map.of does not allow
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("valid", problem == null);
+        result.put("error", problem);
+        result.put("crcValid", EmvTlvCodec.isCrcValid(payload));
+        result.put("amount", amount);
+        result.put("memo", memo == null ? null : memo.toString());
+
+        String referenceId = memo == null ? null : referenceOf(memo);
+        result.put("referenceId", referenceId);
+        if (referenceId != null) {
+            transactionRepository.findByReferenceId(referenceId)
+                    .filter(transaction -> transaction.getTransactionType() == Transaction.TransactionType.DEPOSIT)
+                    .ifPresent(deposit -> {
+                        Map<String, Object> match = new LinkedHashMap<>();
+                        match.put("transactionId", deposit.getId());
+                        match.put("status", deposit.getStatus());
+                        match.put("amount", deposit.getAmount());
+                        match.put("amountMatches", amount != null && amount.compareTo(deposit.getAmount()) == 0);
+                        match.put("payloadMatches", payload.equals(deposit.getQrCodeData()));
+                        result.put("deposit", match);
+                    });
+        }
+        return result;
+    }
+
+    private static String referenceOf(CharSequence memo) {
+        String prefix = VietQRPayloadBuilder.MEMO_PREFIX;
+        if (memo.length() <= prefix.length() || !prefix.contentEquals(memo.subSequence(0, prefix.length()))) {
+            return null;
+        }
+        return memo.subSequence(prefix.length(), memo.length()).toString();
+    }
 }
@@ -0,0 +1,339 @@
+package com.zettix.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+
+/**
+ * Extracts account, amount, memo and time from Vietcombank notification bodies.
+ * <p>
+ * The label templates are compiled once into a first-character dispatch table and the body is
+ * scanned a single time; no regex {@code Pattern} or {@code Matcher} is created per email.
+ * For every field the template with the lowest priority wins, and within one priority the
+ * leftmost occurrence wins, which reproduces the order the old regex list was tried in.
+ * The scan stops early once every field has a priority-0 match.
+ */
+@Component
+@Slf4j
+public class BankNotificationParser {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+
+    private static final int ACCOUNT = 0;
+    private static final int AMOUNT = 1;
+    private static final int REFERENCE = 2;
+    private static final int DATE = 3;
+    private static final int FIELD_COUNT = 4;
+
+    private static final String NAP_TIEN_ZETTIX = "NAP TIEN ZETTIX";
+    private static final String ZETTIX = "ZETTIX";
+
+    private enum Kind {
+        /** {@code label : digits} */
+        DIGITS,
+        /** {@code label : [digits,]} with priority 0 when followed by VND, 1 otherwise */
+        AMOUNT_VND_OPTIONAL,
+        /** {@code label : [digits,]} */
+        AMOUNT,
+        /** {@code +[digits,] VND} or {@code -[digits,] VND}, no label */
+        SIGNED_AMOUNT,
+        /** {@code label : rest of line} */
+        LINE,
+        /** {@code NAP TIEN ZETTIX <A-Z0-9>}, no colon */
+        REFERENCE_TOKEN
+    }
+
+    private record Template(String label, int field, int priority, Kind kind) {
+    }
+
+    private static final Template[] TEMPLATES = {
+            new Template("Tài khoản", ACCOUNT, 0, Kind.DIGITS),
+            new Template("Số tài khoản", ACCOUNT, 1, Kind.DIGITS),
+            new Template("TK", ACCOUNT, 2, Kind.DIGITS),
+            new Template("Account", ACCOUNT, 3, Kind.DIGITS),
+
+            new Template("Số tiền", AMOUNT, 0, Kind.AMOUNT_VND_OPTIONAL),
+            new Template("Amount", AMOUNT, 2, Kind.AMOUNT),
+            new Template("+", AMOUNT, 3, Kind.SIGNED_AMOUNT),
+            new Template("-", AMOUNT, 3, Kind.SIGNED_AMOUNT),
+
+            new Template("Nội dung", REFERENCE, 0, Kind.LINE),
+            new Template("Diễn giải", REFERENCE, 1, Kind.LINE),
+            new Template("Memo", REFERENCE, 2, Kind.LINE),
+            new Template("Content", REFERENCE, 3, Kind.LINE),
+            new Template(NAP_TIEN_ZETTIX, REFERENCE, 4, Kind.REFERENCE_TOKEN),
+
+            new Template("Thời gian", DATE, 0, Kind.LINE),
+            new Template("Time", DATE, 1, Kind.LINE),
+            new Template("Ngày", DATE, 2, Kind.LINE)
+    };
+
+    // Every label starts with an ASCII character, so a 128-slot table is enough
+    private static final Template[][] BY_FIRST_CHAR = new Template[128][];
+
+    static {
+        for (Template template : TEMPLATES) {
+            int c = template.label().charAt(0);
+            Template[] existing = BY_FIRST_CHAR[c];
+            Template[] updated = existing == null ? new Template[1] : Arrays.copyOf(existing, existing.length + 1);
+            updated[updated.length - 1] = template;
+            BY_FIRST_CHAR[c] = updated;
+        }
+    }
+
+    /** Returns null when the account number or amount cannot be found. */
+    public ParsedNotification parse(String body) {
+        if (body == null) {
+            return null;
+        }
+        log.debug("Parsing notification body ({} chars)", body.length());
+
+        // Per field: best priority seen so far and the [start, end) of its value in the body
+        int[] priority = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE};
+        int[] valueStart = new int[FIELD_COUNT];
+        int[] valueEnd = new int[FIELD_COUNT];
+        Template[] matched = new Template[FIELD_COUNT];
+        int settled = 0;
+
+        int length = body.length();
+        for (int i = 0; i < length && settled < FIELD_COUNT; i++) {
+            char c = body.charAt(i);
+            if (c >= 128) {
+                continue;
+            }
+            Template[] candidates = BY_FIRST_CHAR[c];
+            if (candidates == null) {
+                continue;
+            }
+            for (Template template : candidates) {
+                int field = template.field();
+                if (template.priority() >= priority[field]) {
+                    continue;
+                }
+                if (!body.startsWith(template.label(), i)) {
+                    continue;
+                }
+                long value = matchValue(body, i + template.label().length(), template.kind());
+                if (value < 0) {
+                    continue;
+                }
+                int start = (int) (value >>> 32);
+                int end = (int) value & 0x7FFFFFFF;
+                int effectivePriority = template.priority();
+                if (template.kind() == Kind.AMOUNT_VND_OPTIONAL && !followedByVnd(body, end)) {
+                    effectivePriority = 1;
+                }
+                if (effectivePriority < priority[field]) {
+                    priority[field] = effectivePriority;
+                    valueStart[field] = start;
+                    valueEnd[field] = end;
+                    matched[field] = template;
+                    if (effectivePriority == 0) {
+                        settled++;
+                    }
+                }
+            }
+        }
+
+        if (matched[ACCOUNT] == null || matched[AMOUNT] == null) {
+            log.warn("Could not extract required fields - account found: {}, amount found: {}",
+                    matched[ACCOUNT] != null, matched[AMOUNT] != null);
+            return null;
+        }
+
+        ParsedNotification details = new ParsedNotification();
+        details.setAccountNumber(body.substring(valueStart[ACCOUNT], valueEnd[ACCOUNT]));
+        details.setAmount(parseAmount(body, valueStart[AMOUNT], valueEnd[AMOUNT]));
+        details.setReferenceCode(matched[REFERENCE] == null ? ""
+                : extractReference(body, valueStart[REFERENCE], valueEnd[REFERENCE]));
+        details.setTransactionDate(parseTransactionDate(matched[DATE] == null ? ""
+                : body.substring(valueStart[DATE], valueEnd[DATE]).trim()));
+
+        if (details.getAmount() == null) {
+            return null;
+        }
+        log.debug("Parsed notification - Account: {}, Amount: {}, Reference: {}",
+                details.getAccountNumber(), details.getAmount(), details.getReferenceCode());
+        return details;
+    }
+
+    /**
+     * Matches the part of a template after its label, starting at {@code pos}.
+     * Returns {@code start << 32 | end} of the captured value, or -1 when the template does not match here.
+     */
+    private static long matchValue(String body, int pos, Kind kind) {
+        int length = body.length();
+        switch (kind) {
+            case SIGNED_AMOUNT: {
+                int end = skipAmountChars(body, pos);
+                if (end == pos || !followedByVnd(body, end)) {
+                    return -1;
+                }
+                return pack(pos, end);
+            }
+            case REFERENCE_TOKEN: {
+                int start = skipWhitespace(body, pos);
+                if (start == pos) {
+                    return -1;
+                }
+                int end = start;
+                while (end < length && isUpperAlnum(body.charAt(end))) {
+                    end++;
+                }
+                return end == start ? -1 : pack(start, end);
+            }
+            default:
+                break;
+        }
+
+        int colon = skipWhitespace(body, pos);
+        if (colon >= length || body.charAt(colon) != ':') {
+            return -1;
+        }
+        int start = skipWhitespace(body, colon + 1);
+        int end = start;
+        switch (kind) {
+            case DIGITS:
+                while (end < length && isDigit(body.charAt(end))) {
+                    end++;
+                }
+                break;
+            case AMOUNT:
+            case AMOUNT_VND_OPTIONAL:
+                end = skipAmountChars(body, start);
+                break;
+            case LINE:
+                while (end < length && !isLineTerminator(body.charAt(end))) {
+                    end++;
+                }
+                break;
+            default:
+                return -1;
+        }
+        return end == start ? -1 : pack(start, end);
+    }
+
+    /** Applies the ZETTIX extraction to the memo text, falling back to the memo with punctuation removed. */
+    private static String extractReference(String body, int start, int end) {
+        // trim() semantics without creating the trimmed string
+        while (start < end && body.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && body.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        for (int i = start; i < end; i++) {
+            int afterPrefix = -1;
+            if (body.startsWith(NAP_TIEN_ZETTIX, i) && i + NAP_TIEN_ZETTIX.length() <= end) {
+                afterPrefix = i + NAP_TIEN_ZETTIX.length();
+            } else if (body.startsWith(ZETTIX, i) && i + ZETTIX.length() <= end) {
+                afterPrefix = i + ZETTIX.length();
+            }
+            if (afterPrefix < 0) {
+                continue;
+            }
+            int refStart = afterPrefix;
+            while (refStart < end && isWhitespace(body.charAt(refStart))) {
+                refStart++;
+            }
+            int refEnd = refStart;
+            while (refEnd < end && isUpperAlnum(body.charAt(refEnd))) {
+                refEnd++;
+            }
+            if (refEnd > refStart) {
+                return body.substring(refStart, refEnd);
+            }
+        }
+
+        StringBuilder cleaned = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = body.charAt(i);
+            if (isDigit(c) || (c >= 'A' && c <= 'Z')) {
+                cleaned.append(c);
+            } else if (c >= 'a' && c <= 'z') {
+                cleaned.append((char) (c - 'a' + 'A'));
+            }
+        }
+        return cleaned.toString();
+    }
+
+    private static BigDecimal parseAmount(String body, int start, int end) {
+        long value = 0;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            char c = body.charAt(i);
+            if (c == ',') {
+                continue;
+            }
+            if (++digits > 18) {
+                return new BigDecimal(body.substring(start, end).replace(",", ""));
+            }
+            value = value * 10 + (c - '0');
+        }
+        return digits == 0 ? null : BigDecimal.valueOf(value);
+    }
+
+    private LocalDateTime parseTransactionDate(String dateStr) {
+        try {
+            // Parse Vietcombank date format
+            return LocalDateTime.parse(dateStr, DATE_FORMAT);
+        } catch (DateTimeParseException e) {
+            log.warn("Could not parse transaction date: {}", dateStr);
+            return LocalDateTime.now();
+        }
+    }
+
+    private static boolean followedByVnd(String body, int pos) {
+        return body.startsWith("VND", skipWhitespace(body, pos));
+    }
+
+    private static int skipAmountChars(String body, int pos) {
+        while (pos < body.length() && (isDigit(body.charAt(pos)) || body.charAt(pos) == ',')) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipWhitespace(String body, int pos) {
+        while (pos < body.length() && isWhitespace(body.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static long pack(int start, int end) {
+        return ((long) start << 32) | end;
+    }
+
+    /** Same set as regex {@code \s}. */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    /** Same set as regex {@code .} excludes. */
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isUpperAlnum(char c) {
+        return (c >= 'A' && c <= 'Z') || isDigit(c);
+    }
+
+    @lombok.Data
+    public static class ParsedNotification {
+        private String accountNumber;
+        private BigDecimal amount;
+        private String referenceCode;
+        private LocalDateTime transactionDate;
+    }
+}
@@ -0,0 +1,218 @@
+package com.zettix.service;
+
+import com.zettix.dto.request.BatchPurchaseRequest;
+import com.zettix.entity.Account;
+import com.zettix.entity.Product;
+import com.zettix.entity.Transaction;
+import com.zettix.entity.User;
+import com.zettix.entity.UserPurchase;
+import com.zettix.repository.AccountRepository;
+import com.zettix.repository.ProductRepository;
+import com.zettix.repository.TransactionRepository;
+import com.zettix.repository.UserPurchaseRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Buys several units of several products in one database transaction: accounts are claimed per
+ * product in bulk, the wallet is debited once for the total and the {@code transactions} and
+ * {@code user_purchases} rows are written as Hibernate insert batches. Any failing line rolls back the
+ * whole order.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BatchPurchaseService {
+
+    private final ProductRepository productRepository;
+    private final AccountRepository accountRepository;
+    private final InventoryPool inventoryPool;
+    private final ProductStockCounters productStockCounters;
+    private final FlashSaleGate flashSaleGate;
+    private final WalletLedgerService walletLedgerService;
+    private final TransactionRepository transactionRepository;
+    private final UserPurchaseRepository userPurchaseRepository;
+
+    @Value("${purchase.batch.max-units:500}")
+    private int maxUnits;
+
+    @Transactional
+    public Map<String, Object> purchase(User user, List<BatchPurchaseRequest.Item> items) {
+        try {
+            // One line per product, in id order so concurrent orders claim stock in the same order
+            Map<Long, Integer> quantities = new TreeMap<>();
+            for (BatchPurchaseRequest.Item item : items) {
+                quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+            }
+            int units = quantities.values().stream().mapToInt(Integer::intValue).sum();
+            if (units > maxUnits) {
+                throw new RuntimeException("At most " + maxUnits + " units can be bought at once");
+            }
+            for (Long productId : quantities.keySet()) {
+                if (inventoryPool.isSoldOut(productId)) {
+                    throw new RuntimeException("Product " + productId + " is out of stock");
+                }
+                if (flashSaleGate.isOpen(productId)) {
+                    throw new RuntimeException("Product " + productId + " is on flash sale and must be bought on its own");
+                }
+            }
+
+            Map<Long, Product> products = new LinkedHashMap<>();
+            productRepository.findAllById(quantities.keySet()).forEach(product -> products.put(product.getId(), product));
+            BigDecimal total = BigDecimal.ZERO;
+            for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+                Product product = products.get(line.getKey());
+                if (product == null) {
+                    throw new RuntimeException("Product " + line.getKey() + " not found");
+                }
+                if (!product.getIsActive()) {
+                    throw new RuntimeException("Product " + product.getName() + " is not available");
+                }
+                if (productStockCounters.available(product) < line.getValue()) {
+                    throw new RuntimeException("Not enough stock for product " + product.getName());
+                }
+                total = total.add(product.getPrice().multiply(BigDecimal.valueOf(line.getValue())));
+            }
+
+            // Cheap early rejection from the cached balance; the ledger debit below is what decides
+            if (walletLedgerService.getBalance(user.getId()).compareTo(total) < 0) {
+                throw new RuntimeException("Insufficient wallet balance");
+            }
+
+            List<Sale> sales = new ArrayList<>(units);
+            for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+                Product product = products.get(line.getKey());
+                List<Account> accounts = inventoryPool.claim(product, line.getValue());
+                if (accounts.size() < line.getValue()) {
+                    throw new RuntimeException("Not enough stock for product " + product.getName());
+                }
+                accounts.forEach(account -> sales.add(new Sale(product, account)));
+            }
+
+            // Debit the order total; the ledger entry points at the order's first transaction. Ids come
+            // from the pooled sequences, so these rows go out as insert batches at the next flush
+            LocalDateTime now = LocalDateTime.now();
+            List<Transaction> transactions = new ArrayList<>(units);
+            BigDecimal orderTotal = total;
+            BigDecimal balanceAfter = walletLedgerService.debitAndRecord(user.getId(), orderTotal,
+                    Transaction.TransactionType.PURCHASE, balance -> {
+                        transactions.addAll(recordTransactions(user, sales, balance.add(orderTotal), now));
+                        return transactions.get(0).getId();
+                    });
+            recordUserPurchases(user, sales, transactions, now);
+            List<Long> transactionIds = transactions.stream().map(Transaction::getId).toList();
+
+            for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+                Product product = products.get(line.getKey());
+                List<Long> accountIds = sales.stream()
+                        .filter(sale -> sale.product() == product)
+                        .map(sale -> sale.account().getId())
+                        .toList();
+                accountRepository.markSold(accountIds, user, product.getPrice(), now);
+                productStockCounters.recordSale(product.getId(), line.getValue());
+            }
+            user.setWalletBalance(balanceAfter);
+
+            log.info("Batch purchase by {}: {} units for {} VND", user.getUsername(), units, total);
+            return Map.of(
+                    "transactionIds", transactionIds,
+                    "totalAmount", total,
+                    "balanceAfter", balanceAfter,
+                    "items", describe(quantities, products, sales)
+            );
+
+        } catch (Exception e) {
+            log.error("Error creating batch purchase: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to create batch purchase: " + e.getMessage());
+        }
+    }
+
+    /** Creates one PURCHASE transaction per unit, with balances running down in sale order. */
+    private List<Transaction> recordTransactions(User user, List<Sale> sales, BigDecimal balanceBefore,
+                                                 LocalDateTime now) {
+        List<Transaction> transactions = new ArrayList<>(sales.size());
+        BigDecimal balance = balanceBefore;
+        for (Sale sale : sales) {
+            Transaction transaction = new Transaction();
+            transaction.setUser(user);
+            transaction.setTransactionType(Transaction.TransactionType.PURCHASE);
+            transaction.setAmount(sale.product().getPrice());
+            transaction.setBalanceBefore(balance);
+            balance = balance.subtract(sale.product().getPrice());
+            transaction.setBalanceAfter(balance);
+            transaction.setStatus(Transaction.TransactionStatus.COMPLETED);
+            transaction.setDescription("Purchase: " + sale.product().getName());
+            transaction.setProduct(sale.product());
+            transaction.setAccount(sale.account());
+            transaction.setCreatedAt(now);
+            transaction.setUpdatedAt(now);
+            transaction.setCompletedAt(now);
+            transactions.add(transaction);
+        }
+        return transactionRepository.saveAll(transactions);
+    }
+
+    private void recordUserPurchases(User user, List<Sale> sales, List<Transaction> transactions, LocalDateTime now) {
+        List<UserPurchase> purchases = new ArrayList<>(sales.size());
+        for (int i = 0; i < sales.size(); i++) {
+            Sale sale = sales.get(i);
+            Account account = sale.account();
+            UserPurchase purchase = new UserPurchase();
+            purchase.setUser(user);
+            purchase.setProduct(sale.product());
+            purchase.setAccount(account);
+            purchase.setTransaction(transactions.get(i));
+            purchase.setPurchasePrice(sale.product().getPrice());
+            purchase.setAccountUsername(account.getUsername());
+            purchase.setAccountPassword(account.getPassword());
+            purchase.setAccountEmail(account.getEmail());
+            purchase.setAdditionalInfo(account.getAdditionalInfo());
+            purchase.setStatus(UserPurchase.PurchaseStatus.COMPLETED);
+            purchase.setCreatedAt(now);
+            purchase.setUpdatedAt(now);
+            purchases.add(purchase);
+        }
+        userPurchaseRepository.saveAll(purchases);
+    }
+
+    private static List<Map<String, Object>> describe(Map<Long, Integer> quantities, Map<Long, Product> products,
+                                                      List<Sale> sales) {
+        List<Map<String, Object>> items = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            Product product = products.get(line.getKey());
+            List<Map<String, Object>> accounts = new ArrayList<>(line.getValue());
+            for (Sale sale : sales) {
+                if (sale.product() == product) {
+                    // Email and additional info are optional, which Map.of does not allow
+                    Map<String, Object> account = new LinkedHashMap<>();
+                    account.put("username", sale.account().getUsername());
+                    account.put("password", sale.account().getPassword());
+                    account.put("email", sale.account().getEmail());
+                    account.put("additionalInfo", sale.account().getAdditionalInfo());
+                    accounts.add(account);
+                }
+            }
+            items.add(Map.of(
+                    "productId", product.getId(),
+                    "productName", product.getName(),
+                    "quantity", line.getValue(),
+                    "accounts", accounts
+            ));
+        }
+        return items;
+    }
+
+    private record Sale(Product product, Account account) {
+    }
+}
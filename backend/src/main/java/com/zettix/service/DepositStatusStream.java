@@ -0,0 +1,209 @@
+package com.zettix.service;
+
+import com.zettix.entity.Transaction;
+import com.zettix.entity.User;
+import com.zettix.repository.TransactionRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Server-sent event streams of deposit status, one per reference id, so a client waiting for a
+ * payment is told when it lands instead of polling balance and history. Each stream gets the current
+ * status on connect and one more event when the deposit leaves PENDING, after which it is closed.
+ * <p>
+ * Streams are async requests and hold no thread while idle; {@link #heartbeat()} writes a comment
+ * line to each so proxies keep them open and dead clients are noticed. Subscribers live in this
+ * process only, so with several instances a client only hears about changes made on its own.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DepositStatusStream {
+
+    static final String STATUS_EVENT = "status";
+
+    private final TransactionRepository transactionRepository;
+    private final PendingDepositIndex pendingDepositIndex;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${deposit.stream.max-per-reference:5}")
+    private int maxPerReference;
+
+    @Value("${deposit.stream.grace-seconds:360}")
+    private long graceSeconds;
+
+    private final Map<String, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("zettix.deposit.stream.connections", subscribers,
+                map -> map.values().stream().mapToInt(Set::size).sum()).register(meterRegistry);
+    }
+
+    /** The user's deposit with this reference, or "Deposit not found" for anyone else's. */
+    public Transaction findDeposit(User user, String referenceId) {
+        return transactionRepository.findByReferenceId(referenceId)
+                .filter(transaction -> transaction.getTransactionType() == Transaction.TransactionType.DEPOSIT)
+                .filter(transaction -> transaction.getUser().getId().equals(user.getId()))
+                .orElseThrow(() -> new RuntimeException("Deposit not found"));
+    }
+
+    /**
+     * Opens a stream for one of the user's deposits. A deposit that is no longer pending gets its
+     * final status and a closed stream; a pending one stays open until it changes or expires.
+     */
+    public SseEmitter subscribe(User user, String referenceId) {
+        Transaction deposit = findDeposit(user, referenceId);
+
+        if (deposit.getStatus() != Transaction.TransactionStatus.PENDING) {
+            SseEmitter emitter = new SseEmitter();
+            sendFinal(emitter, toEvent(deposit));
+            return emitter;
+        }
+
+        Set<SseEmitter> emitters = subscribers.computeIfAbsent(referenceId, id -> ConcurrentHashMap.newKeySet());
+        if (emitters.size() >= maxPerReference) {
+            throw new RuntimeException("Too many open streams for this deposit");
+        }
+        // Outlive the deposit a little so its expiry still reaches the client
+        LocalDateTime until = deposit.getExpiresAt() != null ? deposit.getExpiresAt() : LocalDateTime.now();
+        long timeoutMs = Math.max(0, Duration.between(LocalDateTime.now(), until).toMillis()) + graceSeconds * 1000;
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        emitter.onCompletion(() -> unsubscribe(referenceId, emitter));
+        emitter.onTimeout(() -> {
+            unsubscribe(referenceId, emitter);
+            emitter.complete();
+        });
+        emitter.onError(error -> unsubscribe(referenceId, emitter));
+        emitters.add(emitter);
+
+        if (!send(emitter, toEvent(deposit))) {
+            unsubscribe(referenceId, emitter);
+            return emitter;
+        }
+        // A change committed between the load above and the registration was published to nobody;
+        // the index drops a deposit before its change is published, so check it and reload if gone
+        if (!pendingDepositIndex.isWarm() || pendingDepositIndex.get(referenceId) == null) {
+            transactionRepository.findByReferenceId(referenceId)
+                    .filter(transaction -> transaction.getStatus() != Transaction.TransactionStatus.PENDING)
+                    .ifPresent(this::publish);
+        }
+        return emitter;
+    }
+
+    /**
+     * Pushes the deposit's new status to its streams and closes them once the caller's transaction
+     * commits, or right away outside a transaction.
+     */
+    public void publish(Transaction deposit) {
+        String referenceId = deposit.getReferenceId();
+        if (referenceId == null) {
+            return;
+        }
+        Map<String, Object> event = toEvent(deposit);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(referenceId, event);
+                }
+            });
+        } else {
+            publish(referenceId, event);
+        }
+    }
+
+    /** Writes a comment line to every open stream and drops those that fail. Returns the streams left. */
+    public int heartbeat() {
+        int open = 0;
+        for (Map.Entry<String, Set<SseEmitter>> entry : subscribers.entrySet()) {
+            for (SseEmitter emitter : entry.getValue()) {
+                try {
+                    emitter.send(SseEmitter.event().comment("keep-alive"));
+                    open++;
+                } catch (Exception e) {
+                    unsubscribe(entry.getKey(), emitter);
+                    emitter.completeWithError(e);
+                }
+            }
+        }
+        return open;
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        subscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+        subscribers.clear();
+    }
+
+    int subscriberCount(String referenceId) {
+        Set<SseEmitter> emitters = subscribers.get(referenceId);
+        return emitters == null ? 0 : emitters.size();
+    }
+
+    private void publish(String referenceId, Map<String, Object> event) {
+        Set<SseEmitter> emitters = subscribers.remove(referenceId);
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            sendFinal(emitter, event);
+        }
+        meterRegistry.counter("zettix.deposit.stream.pushed").increment(emitters.size());
+        log.debug("Pushed status {} of deposit {} to {} streams", event.get("status"), referenceId, emitters.size());
+    }
+
+    private void unsubscribe(String referenceId, SseEmitter emitter) {
+        subscribers.computeIfPresent(referenceId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    private static void sendFinal(SseEmitter emitter, Map<String, Object> event) {
+        if (send(emitter, event)) {
+            emitter.complete();
+        }
+    }
+
+    private static boolean send(SseEmitter emitter, Map<String, Object> event) {
+        try {
+            emitter.send(SseEmitter.event().name(STATUS_EVENT).data(event, MediaType.APPLICATION_JSON));
+            return true;
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    private static Map<String, Object> toEvent(Transaction deposit) {
+        // completedAt and balanceAfter are only set once the deposit completed, which Map.of does not allow
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("referenceId", deposit.getReferenceId());
+        event.put("status", deposit.getStatus());
+        event.put("amount", deposit.getAmount());
+        event.put("expiresAt", deposit.getExpiresAt());
+        event.put("completedAt", deposit.getCompletedAt());
+        if (deposit.getStatus() == Transaction.TransactionStatus.COMPLETED) {
+            event.put("balanceAfter", deposit.getBalanceAfter());
+        }
+        return event;
+    }
+}
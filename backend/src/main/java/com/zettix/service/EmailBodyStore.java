@@ -0,0 +1,207 @@
+package com.zettix.service;
+
+import com.zettix.entity.EmailTransaction;
+import com.zettix.entity.EmailTransactionBody;
+import com.zettix.repository.EmailTransactionBodyRepository;
+import com.zettix.repository.EmailTransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Keeps raw notification bodies deflate-compressed in {@code email_transaction_bodies} so the
+ * {@code email_transactions} rows scanned by matching and reporting stay narrow.
+ * Bodies are only decompressed when an admin opens the raw email.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmailBodyStore {
+
+    private final EmailTransactionRepository emailTransactionRepository;
+    private final EmailTransactionBodyRepository emailTransactionBodyRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final DataSource dataSource;
+
+    @Value("${gmail.body-store.migration-batch-size:500}")
+    private int migrationBatchSize;
+
+    /** Saves the transaction and its compressed body together. */
+    @Transactional
+    public EmailTransaction saveWithBody(EmailTransaction emailTransaction) {
+        EmailTransaction saved = emailTransactionRepository.save(emailTransaction);
+        String body = emailTransaction.getBody();
+        if (body != null && !body.isEmpty()) {
+            emailTransactionBodyRepository.save(toEntity(saved.getId(), body));
+        }
+        saved.setBody(body);
+        return saved;
+    }
+
+    @Transactional(readOnly = true)
+    public EmailTransaction getWithBody(Long emailTransactionId) {
+        EmailTransaction emailTransaction = emailTransactionRepository.findById(emailTransactionId)
+                .orElseThrow(() -> new RuntimeException("Email transaction not found"));
+        emailTransaction.setBody(emailTransactionBodyRepository.findById(emailTransactionId)
+                .map(stored -> decompress(stored.getCompressedBody(), stored.getOriginalLength()))
+                .orElse(""));
+        return emailTransaction;
+    }
+
+    /**
+     * Moves bodies still sitting in the old {@code email_transactions.body} column into the side table.
+     * Runs in small transactions at startup. Batches already moved stay moved when a later one fails,
+     * and the rest follow on the next start. The first start that finds nothing left to move drops
+     * the column, so later starts skip the scan; by then no instance still writes bodies there.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyBodies() {
+        try {
+            if (!hasLegacyBodyColumn()) {
+                log.debug("No legacy email body column, nothing to migrate");
+                return;
+            }
+        } catch (SQLException e) {
+            log.error("Could not inspect email_transactions for legacy bodies: {}", e.getMessage(), e);
+            return;
+        }
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int migrated = 0;
+        try {
+            Integer moved;
+            do {
+                moved = transactionTemplate.execute(status -> migrateLegacyBatch());
+                migrated += moved == null ? 0 : moved;
+            } while (moved != null && moved == migrationBatchSize);
+        } catch (Exception e) {
+            log.error("Legacy email body migration failed after {} bodies: {}", migrated, e.getMessage(), e);
+            return;
+        }
+        if (migrated > 0) {
+            log.info("Moved {} legacy email bodies to compressed storage", migrated);
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> emailTransactionRepository.dropLegacyBodyColumn());
+            log.info("Dropped the emptied legacy email body column");
+        } catch (Exception e) {
+            // Another instance starting at the same time may have dropped it first
+            log.warn("Could not drop the legacy email body column: {}", e.getMessage());
+        }
+    }
+
+    private boolean hasLegacyBodyColumn() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            // Unquoted identifiers are stored upper-case by some databases and lower-case by others
+            for (String table : new String[]{"email_transactions", "EMAIL_TRANSACTIONS"}) {
+                try (ResultSet columns = metaData.getColumns(connection.getCatalog(), null, table, null)) {
+                    while (columns.next()) {
+                        if ("body".equalsIgnoreCase(columns.getString("COLUMN_NAME"))) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private int migrateLegacyBatch() {
+        List<Object[]> rows = emailTransactionRepository.findLegacyBodies(migrationBatchSize);
+        List<Long> ids = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            Long id = ((Number) row[0]).longValue();
+            if (!emailTransactionBodyRepository.existsById(id)) {
+                emailTransactionBodyRepository.save(toEntity(id, legacyBody(row[1])));
+            }
+            ids.add(id);
+        }
+        if (!ids.isEmpty()) {
+            emailTransactionRepository.clearLegacyBodies(ids);
+        }
+        return rows.size();
+    }
+
+    // TEXT columns come back as strings, CLOB columns as java.sql.Clob
+    private static String legacyBody(Object value) {
+        if (value instanceof Clob clob) {
+            try {
+                return clob.getSubString(1, (int) clob.length());
+            } catch (SQLException e) {
+                throw new RuntimeException("Could not read legacy email body", e);
+            }
+        }
+        return (String) value;
+    }
+
+    private static EmailTransactionBody toEntity(Long emailTransactionId, String body) {
+        byte[] raw = body.getBytes(StandardCharsets.UTF_8);
+        EmailTransactionBody stored = new EmailTransactionBody();
+        stored.setEmailTransactionId(emailTransactionId);
+        stored.setCompressedBody(compress(raw));
+        stored.setOriginalLength(raw.length);
+        return stored;
+    }
+
+    static byte[] compress(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 3));
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static String decompress(byte[] compressed, int originalLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[originalLength];
+            int length = 0;
+            while (length < originalLength && !inflater.finished()) {
+                int read = inflater.inflate(raw, length, originalLength - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += read;
+            }
+            if (length != originalLength) {
+                throw new RuntimeException("Stored email body is truncated");
+            }
+            return new String(raw, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new RuntimeException("Stored email body is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.zettix.service;
+
+import com.zettix.entity.EmailTransaction;
+import com.zettix.service.MailSource.MailMessage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs email ingestion as four stages - fetch, parse, persist, confirm - each with its own worker
+ * threads, connected by bounded queues. A full queue blocks the stage feeding it, so a large backlog
+ * never holds more than the queue capacity in memory per stage.
+ * <p>
+ * Messages are released to the confirm stage in the order they were passed to {@link #ingest(List)},
+ * whatever order the parallel stages finish them in. The confirm stage is split into single-threaded
+ * lanes keyed by the cleaned reference code, so notifications for the same reference are confirmed
+ * one at a time and in arrival order.
+ */
+@Slf4j
+public class EmailIngestionPipeline {
+
+    @FunctionalInterface
+    public interface Fetcher {
+        /** Returns the messages that could be fetched; missing ones count as failed. */
+        List<MailMessage> fetch(List<String> messageIds) throws IOException;
+    }
+
+    private final int fetchBatchSize;
+    private final Fetcher fetcher;
+    private final Function<MailMessage, EmailTransaction> parser;
+    private final Consumer<EmailTransaction> persister;
+    private final Consumer<EmailTransaction> confirmer;
+
+    private final Stage<Work<List<String>>> fetchStage;
+    private final Stage<Work<MailMessage>> parseStage;
+    private final Stage<Work<EmailTransaction>> persistStage;
+    private final List<Stage<Work<EmailTransaction>>> confirmLanes = new ArrayList<>();
+
+    /**
+     * @param parser    builds the unsaved transaction, or returns null when the message is not a deposit for us
+     * @param persister saves the transaction; throwing marks the message as failed so it is retried
+     * @param confirmer matches the saved transaction against pending deposits
+     */
+    public EmailIngestionPipeline(int fetchThreads, int parseThreads, int persistThreads, int confirmLaneCount,
+                                  int queueCapacity, int fetchBatchSize, Fetcher fetcher,
+                                  Function<MailMessage, EmailTransaction> parser,
+                                  Consumer<EmailTransaction> persister, Consumer<EmailTransaction> confirmer,
+                                  MeterRegistry meterRegistry) {
+        this.fetchBatchSize = fetchBatchSize;
+        this.fetcher = fetcher;
+        this.parser = parser;
+        this.persister = persister;
+        this.confirmer = confirmer;
+
+        // Fetch work items are whole batches, so that queue only needs to cover a few of them
+        int fetchCapacity = Math.max(1, queueCapacity / Math.max(1, fetchBatchSize));
+        fetchStage = new Stage<>("email-fetch", fetchThreads, fetchCapacity, this::fetch);
+        parseStage = new Stage<>("email-parse", parseThreads, queueCapacity, this::parse);
+        persistStage = new Stage<>("email-persist", persistThreads, queueCapacity, this::persist);
+        for (int i = 0; i < confirmLaneCount; i++) {
+            confirmLanes.add(new Stage<>("email-confirm-" + i, 1, queueCapacity, this::confirm));
+        }
+
+        registerQueueGauge(meterRegistry, "fetch", fetchStage);
+        registerQueueGauge(meterRegistry, "parse", parseStage);
+        registerQueueGauge(meterRegistry, "persist", persistStage);
+        Gauge.builder("zettix.email.pipeline.queue", confirmLanes,
+                        lanes -> lanes.stream().mapToInt(Stage::depth).sum())
+                .tag("stage", "confirm")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Pushes the messages through every stage and waits until each one has either been confirmed,
+     * skipped or has failed. Returns false when any message failed and should be retried.
+     */
+    public boolean ingest(List<String> messageIds) {
+        if (messageIds.isEmpty()) {
+            return true;
+        }
+        Run run = new Run(messageIds.size());
+        try {
+            for (int i = 0; i < messageIds.size(); i += fetchBatchSize) {
+                List<String> batch = messageIds.subList(i, Math.min(i + fetchBatchSize, messageIds.size()));
+                fetchStage.submit(new Work<>(run, i, new ArrayList<>(batch)));
+            }
+            run.remaining.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Email ingestion interrupted with {} messages in flight", run.remaining.getCount());
+            return false;
+        }
+        return !run.failed.get();
+    }
+
+    public void shutdown() {
+        fetchStage.stop();
+        parseStage.stop();
+        persistStage.stop();
+        confirmLanes.forEach(Stage::stop);
+    }
+
+    /** A fetch work item carries the sequence number of the first id in its batch. */
+    private void fetch(Work<List<String>> work) throws InterruptedException {
+        List<String> ids = work.payload();
+        List<MailMessage> messages;
+        try {
+            messages = fetcher.fetch(ids);
+        } catch (Exception e) {
+            log.error("Error fetching {} emails: {}", ids.size(), e.getMessage(), e);
+            for (int i = 0; i < ids.size(); i++) {
+                work.run().fail(work.seq() + i);
+            }
+            return;
+        }
+
+        Map<String, Integer> seqById = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            seqById.put(ids.get(i), work.seq() + i);
+        }
+        for (MailMessage message : messages) {
+            Integer seq = seqById.remove(message.getId());
+            if (seq != null) {
+                parseStage.submit(new Work<>(work.run(), seq, message));
+            }
+        }
+        for (int seq : seqById.values()) {
+            work.run().fail(seq);
+        }
+    }
+
+    private void parse(Work<MailMessage> work) throws InterruptedException {
+        EmailTransaction transaction;
+        try {
+            transaction = parser.apply(work.payload());
+        } catch (Exception e) {
+            log.error("Error processing email {}: {}", work.payload().getId(), e.getMessage(), e);
+            work.run().fail(work.seq());
+            return;
+        }
+        if (transaction == null) {
+            work.run().release(work.seq(), null);
+            return;
+        }
+        persistStage.submit(new Work<>(work.run(), work.seq(), transaction));
+    }
+
+    private void persist(Work<EmailTransaction> work) throws InterruptedException {
+        try {
+            persister.accept(work.payload());
+        } catch (Exception e) {
+            log.error("Error saving email {}: {}", work.payload().getEmailId(), e.getMessage(), e);
+            work.run().fail(work.seq());
+            return;
+        }
+        work.run().release(work.seq(), work.payload());
+    }
+
+    private void confirm(Work<EmailTransaction> work) {
+        try {
+            confirmer.accept(work.payload());
+        } catch (Exception e) {
+            // The email is saved; an unmatched deposit is left for manual review as before
+            log.error("Error confirming email {}: {}", work.payload().getEmailId(), e.getMessage(), e);
+        } finally {
+            work.run().remaining.countDown();
+        }
+    }
+
+    private Stage<Work<EmailTransaction>> laneFor(String referenceCode) {
+        String key = referenceCode == null ? "" : referenceCode.replaceAll("[^A-Za-z0-9]", "").toUpperCase();
+        return confirmLanes.get(Math.floorMod(key.hashCode(), confirmLanes.size()));
+    }
+
+    private static void registerQueueGauge(MeterRegistry meterRegistry, String stageName, Stage<?> stage) {
+        Gauge.builder("zettix.email.pipeline.queue", stage, Stage::depth)
+                .tag("stage", stageName)
+                .register(meterRegistry);
+    }
+
+    /** {@code seq} is the position of the message in the list passed to {@link #ingest(List)}. */
+    private record Work<T>(Run run, int seq, T payload) {
+    }
+
+    /**
+     * Tracks one {@link #ingest(List)} call. Every message is released exactly once, and releases are
+     * forwarded to the confirm lanes strictly in sequence order; every message counts down the latch once.
+     */
+    private final class Run {
+        private final CountDownLatch remaining;
+        private final AtomicBoolean failed = new AtomicBoolean();
+        private final boolean[] released;
+        private final EmailTransaction[] toConfirm;
+        private int next;
+
+        private Run(int messageCount) {
+            this.remaining = new CountDownLatch(messageCount);
+            this.released = new boolean[messageCount];
+            this.toConfirm = new EmailTransaction[messageCount];
+        }
+
+        private void fail(int seq) throws InterruptedException {
+            failed.set(true);
+            release(seq, null);
+        }
+
+        /** Marks the message done up to the confirm stage; null means there is nothing to confirm. */
+        private synchronized void release(int seq, EmailTransaction transaction) throws InterruptedException {
+            released[seq] = true;
+            toConfirm[seq] = transaction;
+            while (next < released.length && released[next]) {
+                EmailTransaction ready = toConfirm[next];
+                toConfirm[next] = null;
+                if (ready == null) {
+                    remaining.countDown();
+                } else {
+                    laneFor(ready.getReferenceCode()).submit(new Work<>(this, next, ready));
+                }
+                next++;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler<T> {
+        void handle(T item) throws InterruptedException;
+    }
+
+    private static final class Stage<T> {
+        private final BlockingQueue<T> queue;
+        private final List<Thread> workers = new ArrayList<>();
+
+        private Stage(String name, int threads, int capacity, Handler<T> handler) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            for (int i = 0; i < threads; i++) {
+                Thread worker = new Thread(() -> {
+                    try {
+                        while (!Thread.currentThread().isInterrupted()) {
+                            handler.handle(queue.take());
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }, threads == 1 ? name : name + "-" + i);
+                worker.setDaemon(true);
+                worker.start();
+                workers.add(worker);
+            }
+        }
+
+        /** Blocks while the queue is full. */
+        private void submit(T item) throws InterruptedException {
+            queue.put(item);
+        }
+
+        private int depth() {
+            return queue.size();
+        }
+
+        private void stop() {
+            workers.forEach(Thread::interrupt);
+        }
+    }
+}
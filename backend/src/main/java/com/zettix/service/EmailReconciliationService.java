@@ -0,0 +1,137 @@
+package com.zettix.service;
+
+import com.zettix.entity.EmailTransaction;
+import com.zettix.repository.EmailTransactionRepository;
+import com.zettix.service.PendingDepositIndex.PendingDeposit;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Retries emails that matched no pending deposit when they arrived, typically because the email
+ * beat the deposit's commit. Unprocessed emails are read in keyset chunks and matched against
+ * {@link PendingDepositIndex} in memory; the database is only touched to confirm real hits and to
+ * record the outcome of each chunk with bulk updates. Misses back off exponentially per email and
+ * emails older than the configured age are no longer retried.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmailReconciliationService {
+
+    private final EmailTransactionRepository emailTransactionRepository;
+    private final TransactionService transactionService;
+    private final PendingDepositIndex pendingDepositIndex;
+    private final ReferenceMatcher referenceMatcher;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${reconciliation.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${reconciliation.settle-seconds:60}")
+    private long settleSeconds;
+
+    @Value("${reconciliation.base-backoff-seconds:60}")
+    private long baseBackoffSeconds;
+
+    @Value("${reconciliation.max-backoff-minutes:60}")
+    private long maxBackoffMinutes;
+
+    @Value("${reconciliation.max-age-hours:48}")
+    private long maxAgeHours;
+
+    /** Returns the number of emails matched to a deposit in this run. */
+    public int reconcile() {
+        if (!pendingDepositIndex.isWarm()) {
+            log.info("Pending deposit index is not ready, skipping reconciliation");
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime notBefore = now.minusHours(maxAgeHours);
+        // Leave freshly saved emails to the ingestion pipeline's own confirm stage
+        LocalDateTime settledBefore = now.minusSeconds(settleSeconds);
+
+        int scanned = 0;
+        int matched = 0;
+        long afterId = 0;
+        List<EmailTransaction> chunk;
+        do {
+            chunk = emailTransactionRepository.findReconcilable(afterId, notBefore, settledBefore, now,
+                    PageRequest.of(0, chunkSize));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            afterId = chunk.get(chunk.size() - 1).getId();
+            scanned += chunk.size();
+            matched += reconcileChunk(chunk, now);
+        } while (chunk.size() == chunkSize);
+
+        meterRegistry.counter("zettix.email.reconciliation", "outcome", "matched").increment(matched);
+        meterRegistry.counter("zettix.email.reconciliation", "outcome", "retried").increment(scanned - matched);
+        if (scanned > 0) {
+            log.info("Reconciliation matched {} of {} unprocessed emails", matched, scanned);
+        }
+        return matched;
+    }
+
+    private int reconcileChunk(List<EmailTransaction> chunk, LocalDateTime now) {
+        List<Long> processed = new ArrayList<>();
+        // Misses grouped by their new attempt count, so each group shares one backoff update
+        Map<Integer, List<Long>> retriesByAttempt = new TreeMap<>();
+
+        for (EmailTransaction email : chunk) {
+            String referenceId = resolvePendingReference(email);
+            if (referenceId != null && transactionService.processDepositConfirmation(referenceId, email.getAmount())) {
+                log.info("Reconciled email {} with deposit {}", email.getEmailId(), referenceId);
+                processed.add(email.getId());
+                continue;
+            }
+            int attempts = (email.getMatchAttempts() == null ? 0 : email.getMatchAttempts()) + 1;
+            retriesByAttempt.computeIfAbsent(attempts, key -> new ArrayList<>()).add(email.getId());
+        }
+
+        if (!processed.isEmpty()) {
+            emailTransactionRepository.markProcessed(processed, now);
+        }
+        retriesByAttempt.forEach((attempts, ids) ->
+                emailTransactionRepository.scheduleMatchRetry(ids, attempts, now.plusSeconds(backoffSeconds(attempts)), now));
+        return processed.size();
+    }
+
+    /** The reference of the pending deposit this email pays for, found without querying the database. */
+    private String resolvePendingReference(EmailTransaction email) {
+        String referenceId = email.getReferenceCode();
+        BigDecimal amount = email.getAmount();
+        if (referenceId == null || referenceId.isEmpty() || amount == null) {
+            return null;
+        }
+        String cleanRef = referenceId.replaceAll("[^A-Za-z0-9]", "").toUpperCase();
+        for (String candidate : cleanRef.equals(referenceId) ? List.of(cleanRef) : List.of(cleanRef, referenceId)) {
+            PendingDeposit pending = pendingDepositIndex.get(candidate);
+            if (pending != null && pending.amount().compareTo(amount) == 0) {
+                return pending.referenceId();
+            }
+        }
+        return referenceMatcher.match(referenceId, amount, email.getTransactionDate())
+                .filter(referenceMatcher::isAutoConfirmable)
+                .map(match -> match.deposit().referenceId())
+                .orElse(null);
+    }
+
+    long backoffSeconds(int attempts) {
+        long maxSeconds = maxBackoffMinutes * 60;
+        // 2^(attempts - 1) * base, capped before it can overflow
+        int shift = Math.min(attempts - 1, 30);
+        return Math.min(maxSeconds, baseBackoffSeconds << shift);
+    }
+}
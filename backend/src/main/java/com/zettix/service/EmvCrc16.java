@@ -0,0 +1,55 @@
+package com.zettix.service;
+
+/**
+ * The CRC-16 that closes EMVCo and VietQR payloads (tag 63): CRC-16/CCITT-FALSE, i.e. polynomial
+ * 0x1021 processed most significant bit first, initial value 0xFFFF, no reflection and no final
+ * XOR, over the low byte of each char. Computed a byte at a time from a 256-entry table. The running
+ * value can be kept between calls, so a fixed payload prefix is only hashed once.
+ */
+public final class EmvCrc16 {
+
+    public static final int INITIAL = 0xFFFF;
+
+    private static final int POLYNOMIAL = 0x1021;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final int[] TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ POLYNOMIAL : crc << 1;
+            }
+            TABLE[i] = crc & 0xFFFF;
+        }
+    }
+
+    private EmvCrc16() {
+    }
+
+    /** Continues {@code crc} over {@code data[from, to)}. */
+    public static int update(int crc, CharSequence data, int from, int to) {
+        for (int i = from; i < to; i++) {
+            crc = ((crc << 8) ^ TABLE[((crc >>> 8) ^ data.charAt(i)) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+
+    public static int update(int crc, CharSequence data) {
+        return update(crc, data, 0, data.length());
+    }
+
+    /** Appends the checksum as four upper-case hex digits. */
+    public static void appendHex(int crc, StringBuilder out) {
+        out.append(HEX[(crc >>> 12) & 0xF])
+                .append(HEX[(crc >>> 8) & 0xF])
+                .append(HEX[(crc >>> 4) & 0xF])
+                .append(HEX[crc & 0xF]);
+    }
+
+    public static String checksum(CharSequence data) {
+        StringBuilder out = new StringBuilder(4);
+        appendHex(update(INITIAL, data), out);
+        return out.toString();
+    }
+}
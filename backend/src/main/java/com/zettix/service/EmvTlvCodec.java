@@ -0,0 +1,189 @@
+package com.zettix.service;
+
+import java.nio.CharBuffer;
+
+/**
+ * Reads EMVCo merchant-presented QR payloads (the VietQR format) in place. Every element is a
+ * two-digit tag, a two-digit length and the value; templates such as 38 and 62 nest further
+ * elements in their value. Lookups return the value's position packed into a {@code long}
+ * (see {@link #start(long)} and {@link #length(long)}), so walking a payload creates no substrings.
+ */
+public final class EmvTlvCodec {
+
+    public static final int TAG_AMOUNT = 54;
+    public static final int TAG_ADDITIONAL_DATA = 62;
+    public static final int TAG_PURPOSE = 8;
+    public static final int TAG_CRC = 63;
+
+    public static final long NOT_FOUND = -1L;
+
+    private static final String HEX = "0123456789ABCDEF";
+
+    private EmvTlvCodec() {
+    }
+
+    /**
+     * Finds {@code tag} among the elements of {@code data[from, to)}. Returns the packed position of
+     * its value, or {@link #NOT_FOUND} when it is absent or the elements before it are malformed.
+     */
+    public static long find(CharSequence data, int from, int to, int tag) {
+        int i = from;
+        while (i + 4 <= to) {
+            int elementTag = twoDigits(data, i);
+            int length = twoDigits(data, i + 2);
+            if (elementTag < 0 || length < 0 || i + 4 + length > to) {
+                return NOT_FOUND;
+            }
+            if (elementTag == tag) {
+                return pack(i + 4, length);
+            }
+            i += 4 + length;
+        }
+        return NOT_FOUND;
+    }
+
+    public static long find(CharSequence payload, int tag) {
+        return find(payload, 0, payload.length(), tag);
+    }
+
+    /** Finds {@code subTag} inside the template element {@code tag}. */
+    public static long find(CharSequence payload, int tag, int subTag) {
+        long template = find(payload, tag);
+        if (template == NOT_FOUND) {
+            return NOT_FOUND;
+        }
+        return find(payload, start(template), start(template) + length(template), subTag);
+    }
+
+    public static int start(long position) {
+        return (int) (position >>> 32);
+    }
+
+    public static int length(long position) {
+        return (int) position;
+    }
+
+    /**
+     * Checks the layout of a whole payload: well-formed elements, templates 26-51 and 62 made of
+     * well-formed elements, and a CRC element (63, length 4) at the end matching the data before it.
+     * Returns null when valid, otherwise a short description of the first problem.
+     */
+    public static String validate(CharSequence payload) {
+        int end = payload.length();
+        if (end < 12 || twoDigits(payload, 0) != 0) {
+            return "payload must start with the format indicator (tag 00)";
+        }
+        int i = 0;
+        while (i < end) {
+            if (i + 4 > end) {
+                return "truncated element header";
+            }
+            int tag = twoDigits(payload, i);
+            int length = twoDigits(payload, i + 2);
+            if (tag < 0 || length < 0) {
+                return "tag and length must be two digits";
+            }
+            if (i + 4 + length > end) {
+                return "element runs past the end of the payload";
+            }
+            if (tag == TAG_CRC) {
+                if (length != 4 || i + 8 != end) {
+                    return "CRC (tag 63) must be the last element with length 4";
+                }
+                return isCrcValid(payload) ? null : "CRC does not match";
+            }
+            if (isTemplate(tag) && !isWellFormed(payload, i + 4, i + 4 + length)) {
+                return "template " + tag + " holds malformed elements";
+            }
+            i += 4 + length;
+        }
+        return "missing CRC (tag 63)";
+    }
+
+    /** Whether the last four characters are the CRC of everything before them, including "6304". */
+    public static boolean isCrcValid(CharSequence payload) {
+        int end = payload.length();
+        if (end < 8) {
+            return false;
+        }
+        int crc = EmvCrc16.update(EmvCrc16.INITIAL, payload, 0, end - 4);
+        for (int shift = 12, i = end - 4; shift >= 0; shift -= 4, i++) {
+            if (Character.toUpperCase(payload.charAt(i)) != HEX.charAt((crc >>> shift) & 0xF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The transaction amount (tag 54) in hundredths, so decimals survive without a BigDecimal; VND
+     * amounts are whole numbers and come back multiplied by 100. Returns -1 when absent or invalid.
+     */
+    public static long amountInHundredths(CharSequence payload) {
+        long position = find(payload, TAG_AMOUNT);
+        if (position == NOT_FOUND || length(position) == 0) {
+            return -1;
+        }
+        long value = 0;
+        int decimals = -1;
+        for (int i = start(position), end = i + length(position); i < end; i++) {
+            char c = payload.charAt(i);
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (c >= '0' && c <= '9' && decimals < 2 && value < Long.MAX_VALUE / 10 - 9) {
+                value = value * 10 + (c - '0');
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else {
+                return -1;
+            }
+        }
+        for (int scale = Math.max(decimals, 0); scale < 2; scale++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    /** The purpose of transaction (tag 62, sub-tag 08), i.e. the transfer memo, as a view on the payload. */
+    public static CharSequence memo(CharSequence payload) {
+        long position = find(payload, TAG_ADDITIONAL_DATA, TAG_PURPOSE);
+        if (position == NOT_FOUND) {
+            return null;
+        }
+        return CharBuffer.wrap(payload, start(position), start(position) + length(position));
+    }
+
+    private static boolean isWellFormed(CharSequence data, int from, int to) {
+        int i = from;
+        while (i < to) {
+            if (i + 4 > to) {
+                return false;
+            }
+            int length = twoDigits(data, i + 2);
+            if (twoDigits(data, i) < 0 || length < 0 || i + 4 + length > to) {
+                return false;
+            }
+            i += 4 + length;
+        }
+        return true;
+    }
+
+    // Merchant account information templates and the additional data template
+    private static boolean isTemplate(int tag) {
+        return (tag >= 26 && tag <= 51) || tag == TAG_ADDITIONAL_DATA;
+    }
+
+    private static int twoDigits(CharSequence data, int at) {
+        char tens = data.charAt(at);
+        char ones = data.charAt(at + 1);
+        if (tens < '0' || tens > '9' || ones < '0' || ones > '9') {
+            return -1;
+        }
+        return (tens - '0') * 10 + (ones - '0');
+    }
+
+    private static long pack(int start, int length) {
+        return ((long) start << 32) | length;
+    }
+}
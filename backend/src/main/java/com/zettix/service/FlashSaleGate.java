@@ -0,0 +1,249 @@
+package com.zettix.service;
+
+import com.zettix.entity.Product;
+import com.zettix.repository.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Waiting room in front of the purchase path for products in flash-sale mode. Buyers join a FIFO
+ * queue held in memory; a token bucket admits them from the head at a fixed rate, and never more
+ * buyers are admitted at once than there are units left. Everyone else gets their queue position,
+ * or a rejection once the units are gone, without touching the database.
+ * <p>
+ * An admitted buyer has {@code flash-sale.admission-timeout-seconds} to come back and buy; the
+ * slot returns to the queue otherwise. Queued buyers that stop polling are dropped when they reach
+ * the head. State lives in this process only; the per-product mode itself is stored on
+ * {@link Product#getFlashSale()} and reopened at startup.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FlashSaleGate {
+
+    private final ProductRepository productRepository;
+    private final ProductStockCounters productStockCounters;
+    private final InventoryPool inventoryPool;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${flash-sale.admit-per-second:20}")
+    private double admitPerSecond;
+
+    @Value("${flash-sale.burst:20}")
+    private int burst;
+
+    @Value("${flash-sale.max-queue:100000}")
+    private int maxQueue;
+
+    @Value("${flash-sale.admission-timeout-seconds:30}")
+    private long admissionTimeoutSeconds;
+
+    @Value("${flash-sale.poll-timeout-seconds:60}")
+    private long pollTimeoutSeconds;
+
+    private final Map<Long, Sale> sales = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reopen() {
+        try {
+            for (Product product : productRepository.findByFlashSaleTrue()) {
+                open(product);
+            }
+        } catch (Exception e) {
+            log.error("Could not reopen flash sales: {}", e.getMessage(), e);
+        }
+    }
+
+    /** Starts the waiting room of a product with its current stock; reopening resets the queue. */
+    public void open(Product product) {
+        int units = Math.max(0, productStockCounters.available(product));
+        sales.put(product.getId(), new Sale(units, System.nanoTime()));
+        log.info("Flash sale opened for product {} with {} units", product.getId(), units);
+    }
+
+    public void close(Long productId) {
+        if (sales.remove(productId) != null) {
+            log.info("Flash sale closed for product {}", productId);
+        }
+    }
+
+    public boolean isOpen(Long productId) {
+        return sales.containsKey(productId);
+    }
+
+    /**
+     * Lets the buyer through if they hold an admission, otherwise queues them (or refreshes their
+     * place) and reports where they stand.
+     */
+    public Decision enter(Long productId, Long userId) {
+        Sale sale = sales.get(productId);
+        if (sale == null) {
+            return Decision.admitted(0);
+        }
+        Decision decision;
+        synchronized (sale) {
+            long now = System.nanoTime();
+            sale.advance(now);
+            decision = sale.enter(userId, now);
+        }
+        meterRegistry.counter("zettix.flash.sale.requests", "outcome", decision.outcome().name().toLowerCase()).increment();
+        return decision;
+    }
+
+    /** Where the buyer stands, without joining the queue. */
+    public Decision status(Long productId, Long userId) {
+        Sale sale = sales.get(productId);
+        if (sale == null) {
+            return Decision.admitted(0);
+        }
+        synchronized (sale) {
+            long now = System.nanoTime();
+            sale.advance(now);
+            return sale.status(userId, now);
+        }
+    }
+
+    /**
+     * Ends an admitted buyer's turn. A completed purchase uses up a unit; a failed one frees the slot
+     * for the next in line, or ends the sale when the database had no stock left after all.
+     */
+    public void complete(Long productId, Long userId, boolean purchased) {
+        Sale sale = sales.get(productId);
+        if (sale == null) {
+            return;
+        }
+        synchronized (sale) {
+            if (sale.admitted.remove(userId) == null) {
+                return;
+            }
+            if (purchased) {
+                sale.unitsLeft = Math.max(0, sale.unitsLeft - 1);
+            } else if (inventoryPool.isSoldOut(productId)) {
+                sale.unitsLeft = 0;
+            }
+        }
+    }
+
+    public enum Outcome {
+        ADMITTED, WAITING, NOT_QUEUED, SOLD_OUT, QUEUE_FULL
+    }
+
+    public record Decision(Outcome outcome, long position, int unitsLeft) {
+
+        static Decision admitted(int unitsLeft) {
+            return new Decision(Outcome.ADMITTED, 0, unitsLeft);
+        }
+
+        public boolean isAdmitted() {
+            return outcome == Outcome.ADMITTED;
+        }
+    }
+
+    private final class Sale {
+        // Units not yet bought; admitted buyers hold some of them
+        private int unitsLeft;
+        // Queued buyers in arrival order, with their ticket number and when they last polled
+        private final LinkedHashMap<Long, Ticket> queue = new LinkedHashMap<>();
+        // Admitted buyers and the time their admission runs out
+        private final Map<Long, Long> admitted = new HashMap<>();
+        private long nextTicket;
+        private double tokens;
+        private long lastRefillNanos;
+
+        private Sale(int unitsLeft, long now) {
+            this.unitsLeft = unitsLeft;
+            this.tokens = burst;
+            this.lastRefillNanos = now;
+        }
+
+        /** Refills the bucket, drops lapsed admissions and admits from the head while tokens and units last. */
+        private void advance(long now) {
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) / 1e9 * admitPerSecond);
+            lastRefillNanos = now;
+            admitted.values().removeIf(deadline -> deadline - now < 0);
+
+            long pollTimeoutNanos = pollTimeoutSeconds * 1_000_000_000L;
+            Iterator<Map.Entry<Long, Ticket>> head = queue.entrySet().iterator();
+            while (head.hasNext() && tokens >= 1 && admitted.size() < unitsLeft) {
+                Map.Entry<Long, Ticket> next = head.next();
+                head.remove();
+                if (now - next.getValue().lastSeenNanos > pollTimeoutNanos) {
+                    continue;
+                }
+                admitted.put(next.getKey(), now + admissionTimeoutSeconds * 1_000_000_000L);
+                tokens -= 1;
+            }
+        }
+
+        private Decision enter(Long userId, long now) {
+            if (admitted.containsKey(userId)) {
+                return Decision.admitted(unitsLeft);
+            }
+            if (unitsLeft <= 0) {
+                queue.remove(userId);
+                return new Decision(Outcome.SOLD_OUT, 0, 0);
+            }
+            Ticket ticket = queue.get(userId);
+            if (ticket == null) {
+                if (unitsLeft - admitted.size() <= 0) {
+                    // Nothing to queue for, unless an admitted buyer fails; they can try again then
+                    return new Decision(Outcome.SOLD_OUT, 0, unitsLeft);
+                }
+                if (queue.size() >= maxQueue) {
+                    return new Decision(Outcome.QUEUE_FULL, 0, unitsLeft);
+                }
+                ticket = new Ticket(nextTicket++, now);
+                queue.put(userId, ticket);
+                advance(now);
+                if (admitted.containsKey(userId)) {
+                    return Decision.admitted(unitsLeft);
+                }
+            }
+            ticket.lastSeenNanos = now;
+            return new Decision(Outcome.WAITING, position(ticket), unitsLeft);
+        }
+
+        private Decision status(Long userId, long now) {
+            if (admitted.containsKey(userId)) {
+                return Decision.admitted(unitsLeft);
+            }
+            if (unitsLeft <= 0) {
+                queue.remove(userId);
+                return new Decision(Outcome.SOLD_OUT, 0, 0);
+            }
+            Ticket ticket = queue.get(userId);
+            if (ticket != null) {
+                ticket.lastSeenNanos = now;
+                return new Decision(Outcome.WAITING, position(ticket), unitsLeft);
+            }
+            return new Decision(unitsLeft - admitted.size() <= 0 ? Outcome.SOLD_OUT : Outcome.NOT_QUEUED, 0, unitsLeft);
+        }
+
+        // Counts lapsed tickets still ahead too, so it can only overstate the wait
+        private long position(Ticket ticket) {
+            Ticket first = queue.values().iterator().next();
+            return ticket.number - first.number + 1;
+        }
+    }
+
+    private static final class Ticket {
+        private final long number;
+        private long lastSeenNanos;
+
+        private Ticket(long number, long lastSeenNanos) {
+            this.number = number;
+            this.lastSeenNanos = lastSeenNanos;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.zettix.service;
+
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.extensions.java6.auth.oauth2.AuthorizationCodeInstalledApp;
+import com.google.api.client.extensions.jetty.auth.oauth2.LocalServerReceiver;
+import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
+import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.util.store.FileDataStoreFactory;
+import com.google.api.services.gmail.Gmail;
+import com.google.api.services.gmail.GmailScopes;
+import com.google.api.services.gmail.model.History;
+import com.google.api.services.gmail.model.ListHistoryResponse;
+import com.google.api.services.gmail.model.ListMessagesResponse;
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.gmail.model.WatchRequest;
+import com.google.api.services.gmail.model.WatchResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Gmail-backed {@link MailSource}.
+ * The HTTP transport, OAuth credential and Gmail client are built once and shared by every run;
+ * {@link NetHttpTransport} keeps TLS connections alive between calls. Tokens are refreshed ahead
+ * of expiry by {@link com.zettix.scheduler.GmailTokenRefreshJob} so the ingestion path never pays for it.
+ */
+@Component
+@ConditionalOnProperty(name = "gmail.source", havingValue = "gmail", matchIfMissing = true)
+@Slf4j
+public class GmailMailSource implements MailSource {
+
+    private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+    private static final List<String> SCOPES = Collections.singletonList(GmailScopes.GMAIL_READONLY);
+    private static final String USER_ID = "me";
+    private static final long MAX_PAGE_SIZE = 500L;
+
+    @Value("${gmail.application-name}")
+    private String applicationName;
+
+    @Value("${gmail.credentials-file:gmail-credentials.json}")
+    private String credentialsFilePath;
+
+    @Value("${gmail.tokens-directory:tokens}")
+    private String tokensDirectory;
+
+    @Value("${gmail.token-refresh-margin-seconds:300}")
+    private long tokenRefreshMarginSeconds;
+
+    @Value("${gmail.sync.history-label-id:INBOX}")
+    private String historyLabelId;
+
+    private volatile Gmail gmail;
+    private volatile Credential credential;
+
+    @Override
+    public boolean isAvailable() {
+        return new File(credentialsFilePath).exists()
+                || GmailMailSource.class.getResource("/" + new File(credentialsFilePath).getName()) != null;
+    }
+
+    @Override
+    public List<String> listMessageIds(String query, long maxResults) throws IOException {
+        List<String> ids = new ArrayList<>();
+        String pageToken = null;
+        do {
+            ListMessagesResponse response = gmail().users().messages().list(USER_ID)
+                    .setQ(query)
+                    .setMaxResults(Math.min(MAX_PAGE_SIZE, maxResults - ids.size()))
+                    .setPageToken(pageToken)
+                    .execute();
+            if (response.getMessages() != null) {
+                response.getMessages().forEach(message -> ids.add(message.getId()));
+            }
+            pageToken = response.getNextPageToken();
+        } while (pageToken != null && ids.size() < maxResults);
+        return ids;
+    }
+
+    @Override
+    public String getCurrentHistoryId() throws IOException {
+        return gmail().users().getProfile(USER_ID).execute().getHistoryId().toString();
+    }
+
+    @Override
+    public HistoryDelta listHistory(String startHistoryId) throws IOException {
+        Set<String> ids = new LinkedHashSet<>();
+        String latestHistoryId = startHistoryId;
+        String pageToken = null;
+        try {
+            do {
+                Gmail.Users.History.List request = gmail().users().history().list(USER_ID)
+                        .setStartHistoryId(new BigInteger(startHistoryId))
+                        .setHistoryTypes(List.of("messageAdded"))
+                        .setMaxResults(MAX_PAGE_SIZE)
+                        .setPageToken(pageToken);
+                if (historyLabelId != null && !historyLabelId.isEmpty()) {
+                    request.setLabelId(historyLabelId);
+                }
+                ListHistoryResponse response = request.execute();
+                if (response.getHistory() != null) {
+                    for (History history : response.getHistory()) {
+                        if (history.getMessagesAdded() != null) {
+                            history.getMessagesAdded().forEach(added -> ids.add(added.getMessage().getId()));
+                        }
+                    }
+                }
+                if (response.getHistoryId() != null) {
+                    latestHistoryId = response.getHistoryId().toString();
+                }
+                pageToken = response.getNextPageToken();
+            } while (pageToken != null);
+        } catch (GoogleJsonResponseException e) {
+            if (e.getStatusCode() == 404) {
+                // Gmail keeps roughly a week of history; older cursors must fall back to a full catch-up
+                return HistoryDelta.builder().messageIds(List.of()).historyId(startHistoryId).expired(true).build();
+            }
+            throw e;
+        }
+        return HistoryDelta.builder().messageIds(new ArrayList<>(ids)).historyId(latestHistoryId).build();
+    }
+
+    @Override
+    public MailMessage getMessage(String messageId) throws IOException {
+        return toMailMessage(gmail().users().messages().get(USER_ID, messageId).execute());
+    }
+
+    @Override
+    public List<MailMessage> getMessages(List<String> messageIds) throws IOException {
+        if (messageIds.isEmpty()) {
+            return List.of();
+        }
+        Gmail client = gmail();
+        BatchRequest batch = client.batch();
+        MailMessage[] results = new MailMessage[messageIds.size()];
+        for (int i = 0; i < messageIds.size(); i++) {
+            final int index = i;
+            String messageId = messageIds.get(i);
+            client.users().messages().get(USER_ID, messageId).queue(batch, new JsonBatchCallback<Message>() {
+                @Override
+                public void onSuccess(Message message, HttpHeaders responseHeaders) {
+                    results[index] = toMailMessage(message);
+                }
+
+                @Override
+                public void onFailure(GoogleJsonError error, HttpHeaders responseHeaders) {
+                    log.warn("Failed to fetch email {}: {} {}", messageId, error.getCode(), error.getMessage());
+                }
+            });
+        }
+        batch.execute();
+
+        List<MailMessage> messages = new ArrayList<>(results.length);
+        for (MailMessage message : results) {
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    @Override
+    public Long watch(String topicName) throws IOException {
+        WatchRequest request = new WatchRequest().setTopicName(topicName);
+        if (historyLabelId != null && !historyLabelId.isEmpty()) {
+            request.setLabelIds(List.of(historyLabelId)).setLabelFilterAction("include");
+        }
+        WatchResponse response = gmail().users().watch(USER_ID, request).execute();
+        return response.getExpiration();
+    }
+
+    @Override
+    public void refreshCredentials() throws IOException {
+        Credential current = credential;
+        if (current == null) {
+            // Not connected yet; the first ingestion run performs the authorization.
+            return;
+        }
+        Long expiresIn = current.getExpiresInSeconds();
+        if (expiresIn == null || expiresIn <= tokenRefreshMarginSeconds) {
+            if (current.refreshToken()) {
+                log.debug("Refreshed Gmail access token, expires in {}s", current.getExpiresInSeconds());
+            } else {
+                log.warn("Gmail access token refresh was rejected");
+            }
+        }
+    }
+
+    private Gmail gmail() throws IOException {
+        Gmail client = gmail;
+        if (client == null) {
+            synchronized (this) {
+                client = gmail;
+                if (client == null) {
+                    client = buildClient();
+                    gmail = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private Gmail buildClient() throws IOException {
+        try {
+            NetHttpTransport transport = GoogleNetHttpTransport.newTrustedTransport();
+            credential = authorize(transport);
+            log.info("Gmail client initialized");
+            return new Gmail.Builder(transport, JSON_FACTORY, credential)
+                    .setApplicationName(applicationName)
+                    .build();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to create Gmail HTTP transport", e);
+        }
+    }
+
+    private Credential authorize(NetHttpTransport transport) throws IOException {
+        GoogleClientSecrets clientSecrets;
+        try (Reader reader = openCredentials()) {
+            clientSecrets = GoogleClientSecrets.load(JSON_FACTORY, reader);
+        }
+
+        GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow.Builder(
+                transport, JSON_FACTORY, clientSecrets, SCOPES)
+                .setDataStoreFactory(new FileDataStoreFactory(new File(tokensDirectory)))
+                .setAccessType("offline")
+                .build();
+        LocalServerReceiver receiver = new LocalServerReceiver.Builder().setPort(8888).build();
+        return new AuthorizationCodeInstalledApp(flow, receiver).authorize("user");
+    }
+
+    private Reader openCredentials() throws IOException {
+        File credentialsFile = new File(credentialsFilePath);
+        if (credentialsFile.exists()) {
+            return new FileReader(credentialsFile);
+        }
+        InputStream in = GmailMailSource.class.getResourceAsStream("/" + credentialsFile.getName());
+        if (in == null) {
+            throw new FileNotFoundException("Credentials file not found: " + credentialsFilePath +
+                    ". Please create this file in the backend directory.");
+        }
+        return new InputStreamReader(in);
+    }
+
+    private MailMessage toMailMessage(Message message) {
+        return MailMessage.builder()
+                .id(message.getId())
+                .subject(getHeaderValue(message, "Subject"))
+                .from(getHeaderValue(message, "From"))
+                .body(getMessageBody(message))
+                .build();
+    }
+
+    private String getHeaderValue(Message message, String headerName) {
+        return message.getPayload().getHeaders().stream()
+                .filter(header -> headerName.equals(header.getName()))
+                .map(header -> header.getValue())
+                .findFirst()
+                .orElse("");
+    }
+
+    private String getMessageBody(Message message) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(
+                    message.getPayload().getBody().getData()));
+        } catch (Exception e) {
+            return "";
+        }
+    }
+}
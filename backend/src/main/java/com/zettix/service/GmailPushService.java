@@ -0,0 +1,136 @@
+package com.zettix.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zettix.dto.request.PubSubPushRequest;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Push mode for deposit confirmation: Gmail watch notifications delivered through Pub/Sub trigger an
+ * ingestion run straight away instead of waiting for the next polling tick.
+ * Notifications arriving while a run is queued are coalesced into that run.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class GmailPushService {
+
+    @Value("${gmail.push.enabled:false}")
+    private boolean pushEnabled;
+
+    @Value("${gmail.push.topic:}")
+    private String topicName;
+
+    @Value("${gmail.push.verification-token:}")
+    private String verificationToken;
+
+    private final GmailService gmailService;
+    private final MailSource mailSource;
+    private final ObjectMapper objectMapper;
+
+    private final ExecutorService syncExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "gmail-push-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean syncQueued = new AtomicBoolean();
+
+    private volatile Long watchExpiration;
+
+    public boolean isPushEnabled() {
+        return pushEnabled;
+    }
+
+    /** Without a configured verification token every push is rejected: the webhook is public. */
+    public boolean isValidToken(String token) {
+        if (!hasVerificationToken()) {
+            return false;
+        }
+        return token != null && MessageDigest.isEqual(
+                verificationToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Handles one Pub/Sub push. Returns false when the envelope is not a Gmail notification. */
+    public boolean handlePush(PubSubPushRequest request) {
+        if (request == null || request.getMessage() == null || request.getMessage().getData() == null) {
+            return false;
+        }
+        try {
+            byte[] data = Base64.getDecoder().decode(request.getMessage().getData());
+            JsonNode notification = objectMapper.readTree(data);
+            log.info("Gmail push notification for {} at history {}",
+                    notification.path("emailAddress").asText(), notification.path("historyId").asText());
+        } catch (IllegalArgumentException | IOException e) {
+            log.warn("Ignoring malformed Gmail push message {}: {}", request.getMessage().getMessageId(), e.getMessage());
+            return false;
+        }
+        requestSync();
+        return true;
+    }
+
+    /** Queues an ingestion run unless one is already waiting to start. */
+    public void requestSync() {
+        if (syncQueued.compareAndSet(false, true)) {
+            syncExecutor.execute(() -> {
+                // Clear before running so notifications arriving mid-run queue exactly one more pass
+                syncQueued.set(false);
+                gmailService.processNewEmails();
+            });
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWatch() {
+        renewWatch();
+    }
+
+    /** Gmail watches expire after seven days; renewing daily keeps push delivery uninterrupted. */
+    public void renewWatch() {
+        if (!pushEnabled || !mailSource.isAvailable()) {
+            return;
+        }
+        if (topicName == null || topicName.isEmpty()) {
+            log.warn("gmail.push.enabled is set but gmail.push.topic is empty, push mode is inactive");
+            return;
+        }
+        if (!hasVerificationToken()) {
+            log.error("gmail.push.enabled is set but gmail.push.verification-token is empty, push mode is inactive");
+            return;
+        }
+        try {
+            watchExpiration = mailSource.watch(topicName);
+            log.info("Gmail watch on {} renewed, expires at {}", topicName,
+                    watchExpiration != null ? Instant.ofEpochMilli(watchExpiration) : "never");
+        } catch (Exception e) {
+            log.error("Failed to renew Gmail watch: {}", e.getMessage(), e);
+        }
+    }
+
+    private boolean hasVerificationToken() {
+        return verificationToken != null && !verificationToken.isEmpty();
+    }
+
+    public Long getWatchExpiration() {
+        return watchExpiration;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        syncExecutor.shutdownNow();
+    }
+}
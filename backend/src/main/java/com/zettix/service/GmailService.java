@@ -1,136 +1,275 @@
 package com.zettix.service;
 
-import com.google.api.client.auth.oauth2.Credential;
-import com.google.api.client.extensions.java6.auth.oauth2.AuthorizationCodeInstalledApp;
-import com.google.api.client.extensions.jetty.auth.oauth2.LocalServerReceiver;
-import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
-import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
-import com.google.api.client.json.JsonFactory;
-import com.google.api.client.json.gson.GsonFactory;
-import com.google.api.client.util.store.FileDataStoreFactory;
-import com.google.api.services.gmail.Gmail;
-import com.google.api.services.gmail.GmailScopes;
-import com.google.api.services.gmail.model.ListMessagesResponse;
-import com.google.api.services.gmail.model.Message;
 import com.zettix.entity.EmailTransaction;
+import com.zettix.entity.MailSyncState;
 import com.zettix.repository.EmailTransactionRepository;
+import com.zettix.repository.MailSyncStateRepository;
+import com.zettix.service.BankNotificationParser.ParsedNotification;
+import com.zettix.service.MailSource.HistoryDelta;
+import com.zettix.service.MailSource.MailMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.security.GeneralSecurityException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class GmailService {
 
-    private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
-    private static final String TOKENS_DIRECTORY_TOKEN = "tokens";
-    private static final List<String> SCOPES = Collections.singletonList(GmailScopes.GMAIL_READONLY);
-    private static final String CREDENTIALS_FILE_PATH = "gmail-credentials.json";
+    private static final String MAILBOX = "me";
 
-    @Value("${gmail.application-name}")
-    private String applicationName;
+    @Value("${gmail.query}")
+    private String query;
+
+    @Value("${gmail.sender-filter:}")
+    private String senderFilter;
+
+    @Value("${gmail.sync.mode:history}")
+    private String syncMode;
+
+    @Value("${gmail.sync.max-results-per-poll:100}")
+    private long maxResultsPerPoll;
+
+    @Value("${gmail.sync.catch-up-window-days:7}")
+    private int catchUpWindowDays;
+
+    @Value("${gmail.sync.catch-up-max-messages:5000}")
+    private long catchUpMaxMessages;
+
+    @Value("${gmail.sync.dedupe-batch-size:500}")
+    private int dedupeBatchSize;
+
+    @Value("${gmail.sync.fetch-batch-size:50}")
+    private int fetchBatchSize;
+
+    @Value("${gmail.pipeline.fetch-threads:4}")
+    private int fetchThreads;
+
+    @Value("${gmail.pipeline.parse-threads:2}")
+    private int parseThreads;
+
+    @Value("${gmail.pipeline.persist-threads:4}")
+    private int persistThreads;
+
+    @Value("${gmail.pipeline.confirm-lanes:4}")
+    private int confirmLanes;
+
+    @Value("${gmail.pipeline.queue-capacity:256}")
+    private int pipelineQueueCapacity;
 
     @Value("${vietqr.account-number}")
     private String targetAccountNumber;
 
     private final EmailTransactionRepository emailTransactionRepository;
+    private final MailSyncStateRepository mailSyncStateRepository;
     private final TransactionService transactionService;
+    private final MailSource mailSource;
+    private final MeterRegistry meterRegistry;
+    private final BankNotificationParser bankNotificationParser;
+    private final EmailBodyStore emailBodyStore;
+    private final ReferenceMatcher referenceMatcher;
+
+    private final ReentrantLock syncLock = new ReentrantLock();
 
+    private EmailIngestionPipeline pipeline;
+
+    @PostConstruct
+    public void startPipeline() {
+        pipeline = new EmailIngestionPipeline(fetchThreads, parseThreads, persistThreads, confirmLanes,
+                pipelineQueueCapacity, fetchBatchSize, this::fetchMessages, this::parseEmail,
+                emailBodyStore::saveWithBody, this::processTransactionConfirmation, meterRegistry);
+    }
+
+    @PreDestroy
+    public void stopPipeline() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    /**
+     * Runs one ingestion pass. Polling and push notifications may call this concurrently;
+     * runs are serialized so the history cursor is never advanced by two passes at once.
+     */
     public void processNewEmails() {
+        syncLock.lock();
         try {
-            // Check if credentials file exists
-            java.io.File credentialsFile = new java.io.File(CREDENTIALS_FILE_PATH);
-            if (!credentialsFile.exists()) {
-                log.warn("Gmail credentials file not found: {}. Skipping email processing.", CREDENTIALS_FILE_PATH);
+            if (!mailSource.isAvailable()) {
+                log.warn("Mail source is not configured. Skipping email processing.");
                 return;
             }
 
-            Gmail service = getGmailService();
-            String query = "from:VCBDigibank@info.vietcombank.com.vn subject:Thông báo giao dịch";
-            
-            ListMessagesResponse response = service.users().messages().list("me")
-                    .setQ(query)
-                    .setMaxResults(10L)
-                    .execute();
+            if (!"history".equalsIgnoreCase(syncMode)) {
+                List<String> messageIds = mailSource.listMessageIds(query, maxResultsPerPoll);
+                if (messageIds.isEmpty()) {
+                    log.info("No new emails found");
+                    return;
+                }
+                processEmails(messageIds);
+                return;
+            }
 
-            List<Message> messages = response.getMessages();
-            if (messages == null || messages.isEmpty()) {
-                log.info("No new emails found");
+            MailSyncState state = mailSyncStateRepository.findById(MAILBOX).orElse(null);
+            if (state == null || state.getHistoryId() == null) {
+                log.info("No Gmail history cursor stored yet, running catch-up");
+                runCatchUp();
+                return;
+            }
+
+            HistoryDelta delta = mailSource.listHistory(state.getHistoryId());
+            if (delta.isExpired()) {
+                log.warn("Gmail history cursor {} has expired, running catch-up", state.getHistoryId());
+                runCatchUp();
                 return;
             }
 
-            for (Message message : messages) {
-                processEmail(service, message);
+            if (delta.getMessageIds().isEmpty()) {
+                log.info("No new emails found");
+            } else if (!processEmails(delta.getMessageIds())) {
+                // Keep the old cursor so failed messages are retried; already-saved ones are skipped by the dedupe
+                return;
             }
+            state.setHistoryId(delta.getHistoryId());
+            mailSyncStateRepository.save(state);
 
         } catch (Exception e) {
             log.error("Error processing emails: {}", e.getMessage(), e);
+        } finally {
+            syncLock.unlock();
         }
     }
 
-    private void processEmail(Gmail service, Message message) {
+    /**
+     * Drains the backlog after downtime or an expired cursor: lists every matching message inside the
+     * catch-up window, processes them oldest first and stores a fresh history cursor.
+     */
+    public int catchUp() throws IOException {
+        syncLock.lock();
         try {
-            String messageId = message.getId();
-            
-            // Check if already processed
-            if (emailTransactionRepository.findByEmailId(messageId).isPresent()) {
-                return;
-            }
+            return runCatchUp();
+        } finally {
+            syncLock.unlock();
+        }
+    }
 
-            Message fullMessage = service.users().messages().get("me", messageId).execute();
-            String subject = getHeaderValue(fullMessage, "Subject");
-            String sender = getHeaderValue(fullMessage, "From");
-            String body = getMessageBody(fullMessage);
+    private int runCatchUp() throws IOException {
+        // Read the cursor first so mail arriving during the catch-up is picked up by the next delta
+        String historyId = mailSource.getCurrentHistoryId();
+        String catchUpQuery = query + " newer_than:" + catchUpWindowDays + "d";
+        List<String> messageIds = new ArrayList<>(mailSource.listMessageIds(catchUpQuery, catchUpMaxMessages));
+        Collections.reverse(messageIds);
 
-            log.info("Processing email: {} from {}", subject, sender);
+        log.info("Gmail catch-up found {} messages in the last {} days", messageIds.size(), catchUpWindowDays);
+        if (!processEmails(messageIds)) {
+            return messageIds.size();
+        }
 
-            // Parse transaction details
-            TransactionDetails details = parseTransactionDetails(body);
-            if (details == null) {
-                log.warn("Could not parse transaction details from email: {}", messageId);
-                return;
-            }
+        MailSyncState state = mailSyncStateRepository.findById(MAILBOX).orElseGet(() -> {
+            MailSyncState created = new MailSyncState();
+            created.setMailbox(MAILBOX);
+            return created;
+        });
+        state.setHistoryId(historyId);
+        state.setLastCatchUpAt(LocalDateTime.now());
+        mailSyncStateRepository.save(state);
+        return messageIds.size();
+    }
 
-            // Check if transaction matches our target account
-            if (!targetAccountNumber.equals(details.getAccountNumber())) {
-                log.info("Transaction not for our account: {}", details.getAccountNumber());
-                return;
-            }
+    private boolean processEmails(List<String> messageIds) {
+        long startNanos = System.nanoTime();
+        boolean allSucceeded = true;
+        int newCount = 0;
 
-            // Save email transaction
-            EmailTransaction emailTransaction = new EmailTransaction();
-            emailTransaction.setEmailId(messageId);
-            emailTransaction.setSenderEmail(sender);
-            emailTransaction.setSubject(subject);
-            emailTransaction.setBody(body);
-            emailTransaction.setBankAccountNumber(details.getAccountNumber());
-            emailTransaction.setAmount(details.getAmount());
-            emailTransaction.setReferenceCode(details.getReferenceCode());
-            emailTransaction.setTransactionDate(details.getTransactionDate());
-            emailTransaction.setIsProcessed(false);
+        for (List<String> dedupeChunk : partition(messageIds, dedupeBatchSize)) {
+            // One query per chunk instead of one findByEmailId per message
+            Set<String> seen = new HashSet<>(meterRegistry.timer("zettix.email.dedupe.batch")
+                    .record(() -> emailTransactionRepository.findEmailIdsByEmailIdIn(dedupeChunk)));
+            List<String> newIds = dedupeChunk.stream().filter(id -> !seen.contains(id)).toList();
+            meterRegistry.counter("zettix.email.messages", "outcome", "duplicate").increment(seen.size());
+            newCount += newIds.size();
 
-            emailTransactionRepository.save(emailTransaction);
+            allSucceeded &= pipeline.ingest(newIds);
+        }
 
-            // Process the transaction
-            processTransactionConfirmation(emailTransaction);
+        meterRegistry.counter("zettix.email.messages", "outcome", "new").increment(newCount);
+        long elapsedNanos = System.nanoTime() - startNanos;
+        meterRegistry.timer("zettix.email.ingest.tick").record(elapsedNanos, TimeUnit.NANOSECONDS);
+        log.info("Ingested {} emails ({} new) in {} ms", messageIds.size(), newCount,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        return allSucceeded;
+    }
 
-        } catch (Exception e) {
-            log.error("Error processing email {}: {}", message.getId(), e.getMessage(), e);
+    private List<MailMessage> fetchMessages(List<String> messageIds) throws IOException {
+        long startNanos = System.nanoTime();
+        try {
+            return mailSource.getMessages(messageIds);
+        } finally {
+            meterRegistry.timer("zettix.email.fetch.batch").record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static <T> List<List<T>> partition(List<T> items, int size) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < items.size(); i += size) {
+            chunks.add(items.subList(i, Math.min(i + size, items.size())));
+        }
+        return chunks;
+    }
+
+    /** Builds the unsaved transaction for a bank notification, or returns null when the email is not one for us. */
+    private EmailTransaction parseEmail(MailMessage message) {
+        String messageId = message.getId();
+        String subject = message.getSubject();
+        String sender = message.getFrom();
+        String body = message.getBody();
+
+        if (senderFilter != null && !senderFilter.isEmpty() && (sender == null || !sender.contains(senderFilter))) {
+            // History deltas include every new inbox message, not only bank notifications
+            log.debug("Skipping email {} from {}", messageId, sender);
+            return null;
         }
+
+        log.info("Processing email: {} from {}", subject, sender);
+
+        // Parse transaction details
+        ParsedNotification details = parseTransactionDetails(body);
+        if (details == null) {
+            log.warn("Could not parse transaction details from email: {}", messageId);
+            return null;
+        }
+
+        // Check if transaction matches our target account
+        if (!targetAccountNumber.equals(details.getAccountNumber())) {
+            log.info("Transaction not for our account: {}", details.getAccountNumber());
+            return null;
+        }
+
+        EmailTransaction emailTransaction = new EmailTransaction();
+        emailTransaction.setEmailId(messageId);
+        emailTransaction.setSenderEmail(sender);
+        emailTransaction.setSubject(subject);
+        emailTransaction.setBody(body);
+        emailTransaction.setBankAccountNumber(details.getAccountNumber());
+        emailTransaction.setAmount(details.getAmount());
+        emailTransaction.setReferenceCode(details.getReferenceCode());
+        emailTransaction.setTransactionDate(details.getTransactionDate());
+        emailTransaction.setIsProcessed(false);
+        return emailTransaction;
     }
 
     private void processTransactionConfirmation(EmailTransaction emailTransaction) {
@@ -155,6 +294,11 @@ public class GmailService {
                 processed = transactionService.processDepositConfirmation(referenceId, emailTransaction.getAmount());
             }
 
+            if (!processed) {
+                // The bank app may have truncated or decorated the memo
+                processed = confirmByClosestReference(emailTransaction);
+            }
+
             if (processed) {
                 // Mark email as processed
                 emailTransaction.setIsProcessed(true);
@@ -171,188 +315,30 @@ public class GmailService {
         }
     }
 
-    private TransactionDetails parseTransactionDetails(String body) {
-        try {
-            log.debug("Parsing transaction body: {}", body);
-            
-            // Vietcombank email patterns - support multiple formats
-            Pattern[] accountPatterns = {
-                Pattern.compile("Tài khoản\\s*:\\s*(\\d+)"),
-                Pattern.compile("Số tài khoản\\s*:\\s*(\\d+)"),
-                Pattern.compile("TK\\s*:\\s*(\\d+)"),
-                Pattern.compile("Account\\s*:\\s*(\\d+)")
-            };
-            
-            Pattern[] amountPatterns = {
-                Pattern.compile("Số tiền\\s*:\\s*([\\d,]+)\\s*VND"),
-                Pattern.compile("Số tiền\\s*:\\s*([\\d,]+)"),
-                Pattern.compile("Amount\\s*:\\s*([\\d,]+)"),
-                Pattern.compile("(\\+|-)([\\d,]+)\\s*VND")
-            };
-            
-            Pattern[] referencePatterns = {
-                Pattern.compile("Nội dung\\s*:\\s*(.+?)(?=\\n|$)"),
-                Pattern.compile("Diễn giải\\s*:\\s*(.+?)(?=\\n|$)"),
-                Pattern.compile("Memo\\s*:\\s*(.+?)(?=\\n|$)"),
-                Pattern.compile("Content\\s*:\\s*(.+?)(?=\\n|$)"),
-                Pattern.compile("NAP TIEN ZETTIX\\s+([A-Z0-9]+)")
-            };
-            
-            Pattern[] datePatterns = {
-                Pattern.compile("Thời gian\\s*:\\s*(.+?)(?=\\n|$)"),
-                Pattern.compile("Time\\s*:\\s*(.+?)(?=\\n|$)"),
-                Pattern.compile("Ngày\\s*:\\s*(.+?)(?=\\n|$)")
-            };
-
-            // Find account number
-            String accountNumber = null;
-            for (Pattern pattern : accountPatterns) {
-                Matcher matcher = pattern.matcher(body);
-                if (matcher.find()) {
-                    accountNumber = matcher.group(1);
-                    break;
-                }
-            }
-
-            // Find amount
-            String amountStr = null;
-            for (Pattern pattern : amountPatterns) {
-                Matcher matcher = pattern.matcher(body);
-                if (matcher.find()) {
-                    amountStr = matcher.group(matcher.groupCount()).replace(",", "");
-                    break;
-                }
-            }
-
-            // Find reference code
-            String referenceCode = "";
-            for (Pattern pattern : referencePatterns) {
-                Matcher matcher = pattern.matcher(body);
-                if (matcher.find()) {
-                    String content = matcher.group(1).trim();
-                    
-                    // Extract ZETTIX reference from content
-                    Pattern zettixPattern = Pattern.compile("(?:NAP TIEN ZETTIX|ZETTIX)\\s*([A-Z0-9]+)");
-                    Matcher zettixMatcher = zettixPattern.matcher(content);
-                    if (zettixMatcher.find()) {
-                        referenceCode = zettixMatcher.group(1);
-                        break;
-                    }
-                    
-                    // If no ZETTIX pattern, use the whole content but clean it
-                    referenceCode = content.replaceAll("[^A-Za-z0-9]", "").toUpperCase();
-                    break;
-                }
-            }
-
-            // Find date
-            String dateStr = "";
-            for (Pattern pattern : datePatterns) {
-                Matcher matcher = pattern.matcher(body);
-                if (matcher.find()) {
-                    dateStr = matcher.group(1).trim();
-                    break;
-                }
-            }
-
-            if (accountNumber == null || amountStr == null) {
-                log.warn("Could not extract required fields - account: {}, amount: {}", accountNumber, amountStr);
-                return null;
-            }
-
-            TransactionDetails details = new TransactionDetails();
-            details.setAccountNumber(accountNumber);
-            details.setAmount(new java.math.BigDecimal(amountStr));
-            details.setReferenceCode(referenceCode);
-            details.setTransactionDate(parseTransactionDate(dateStr));
-
-            log.info("Parsed transaction details - Account: {}, Amount: {}, Reference: {}", 
-                    accountNumber, amountStr, referenceCode);
-
-            return details;
-
-        } catch (Exception e) {
-            log.error("Error parsing transaction details: {}", e.getMessage(), e);
-            return null;
+    private boolean confirmByClosestReference(EmailTransaction emailTransaction) {
+        Optional<ReferenceMatcher.Match> match = referenceMatcher.match(emailTransaction.getReferenceCode(),
+                emailTransaction.getAmount(), emailTransaction.getTransactionDate());
+        if (match.isEmpty()) {
+            return false;
         }
-    }
-
-    private java.time.LocalDateTime parseTransactionDate(String dateStr) {
-        try {
-            // Parse Vietcombank date format
-            java.time.format.DateTimeFormatter formatter = 
-                java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
-            return java.time.LocalDateTime.parse(dateStr, formatter);
-        } catch (Exception e) {
-            log.warn("Could not parse transaction date: {}", dateStr);
-            return java.time.LocalDateTime.now();
+        String matchedReference = match.get().deposit().referenceId();
+        double confidence = match.get().confidence();
+        if (!referenceMatcher.isAutoConfirmable(match.get())) {
+            log.warn("Reference {} closest pending deposit is {} with confidence {}, leaving for manual review",
+                    emailTransaction.getReferenceCode(), matchedReference, String.format("%.2f", confidence));
+            return false;
         }
+        log.info("Reference {} matched pending deposit {} with confidence {}",
+                emailTransaction.getReferenceCode(), matchedReference, String.format("%.2f", confidence));
+        return transactionService.processDepositConfirmation(matchedReference, emailTransaction.getAmount());
     }
 
-    private String getHeaderValue(Message message, String headerName) {
-        return message.getPayload().getHeaders().stream()
-                .filter(header -> headerName.equals(header.getName()))
-                .map(header -> header.getValue())
-                .findFirst()
-                .orElse("");
-    }
-
-    private String getMessageBody(Message message) {
+    private ParsedNotification parseTransactionDetails(String body) {
         try {
-            return new String(java.util.Base64.getUrlDecoder().decode(
-                    message.getPayload().getBody().getData()));
+            return bankNotificationParser.parse(body);
         } catch (Exception e) {
-            return "";
-        }
-    }
-
-    private Credential getCredentials(final NetHttpTransport HTTP_TRANSPORT) throws IOException {
-        // Try to find credentials file in current directory first
-        java.io.File credentialsFile = new java.io.File(CREDENTIALS_FILE_PATH);
-        if (!credentialsFile.exists()) {
-            // Try to find in resources
-            InputStream in = GmailService.class.getResourceAsStream("/" + CREDENTIALS_FILE_PATH);
-            if (in == null) {
-                throw new FileNotFoundException("Credentials file not found: " + CREDENTIALS_FILE_PATH + 
-                    ". Please create this file in the backend directory.");
-            }
-            GoogleClientSecrets clientSecrets = GoogleClientSecrets.load(JSON_FACTORY, new InputStreamReader(in));
-            in.close();
-            
-            GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow.Builder(
-                    HTTP_TRANSPORT, JSON_FACTORY, clientSecrets, SCOPES)
-                    .setDataStoreFactory(new FileDataStoreFactory(new java.io.File(TOKENS_DIRECTORY_TOKEN)))
-                    .setAccessType("offline")
-                    .build();
-            LocalServerReceiver receiver = new LocalServerReceiver.Builder().setPort(8888).build();
-            return new AuthorizationCodeInstalledApp(flow, receiver).authorize("user");
+            log.error("Error parsing transaction details: {}", e.getMessage(), e);
+            return null;
         }
-        
-        // Load from file
-        GoogleClientSecrets clientSecrets = GoogleClientSecrets.load(JSON_FACTORY, 
-            new java.io.FileReader(credentialsFile));
-
-        GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow.Builder(
-                HTTP_TRANSPORT, JSON_FACTORY, clientSecrets, SCOPES)
-                .setDataStoreFactory(new FileDataStoreFactory(new java.io.File(TOKENS_DIRECTORY_TOKEN)))
-                .setAccessType("offline")
-                .build();
-        LocalServerReceiver receiver = new LocalServerReceiver.Builder().setPort(8888).build();
-        return new AuthorizationCodeInstalledApp(flow, receiver).authorize("user");
-    }
-
-    private Gmail getGmailService() throws IOException, GeneralSecurityException {
-        final NetHttpTransport HTTP_TRANSPORT = GoogleNetHttpTransport.newTrustedTransport();
-        return new Gmail.Builder(HTTP_TRANSPORT, JSON_FACTORY, getCredentials(HTTP_TRANSPORT))
-                .setApplicationName(applicationName)
-                .build();
-    }
-
-    @lombok.Data
-    private static class TransactionDetails {
-        private String accountNumber;
-        private java.math.BigDecimal amount;
-        private String referenceCode;
-        private java.time.LocalDateTime transactionDate;
     }
 }
@@ -0,0 +1,267 @@
+package com.zettix.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zettix.entity.IdempotencyRecord;
+import com.zettix.repository.IdempotencyRecordRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Makes POST endpoints safe to retry. A request carrying an {@code Idempotency-Key} header runs once
+ * per user, endpoint and key; repeats get the stored response back with an
+ * {@code Idempotent-Replayed: true} header instead of doing the work again.
+ * <p>
+ * Successful responses are written to {@code idempotency_keys} in the same transaction as the work,
+ * so a replay never describes work that rolled back, and recent ones are also kept in a bounded
+ * in-memory map. A repeat arriving while the first call is still running waits for its result.
+ * Failed and 202 Accepted responses are not stored: the key stays free and the client may retry it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+
+    @Value("${idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${idempotency.cache-size:10000}")
+    private int cacheSize;
+
+    @Value("${idempotency.wait-seconds:30}")
+    private long waitSeconds;
+
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    // Access-ordered so the least recently replayed entry is dropped when full
+    private final LinkedHashMap<String, StoredResponse> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    /**
+     * Runs {@code action} unless this user already sent {@code key} to {@code endpoint}, in which case
+     * the response of that first call is returned. Without a key the action simply runs.
+     */
+    public ResponseEntity<?> execute(Long userId, String endpoint, String key, Object request,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", HEADER + " must be at most " + MAX_KEY_LENGTH + " characters"));
+        }
+
+        String requestHash = hash(request);
+        String cacheKey = userId + ":" + endpoint + ":" + key;
+
+        StoredResponse cached = getCached(cacheKey);
+        if (cached != null) {
+            return replay(cached, requestHash);
+        }
+
+        CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(cacheKey, mine);
+        if (running != null) {
+            return awaitFirst(running, requestHash);
+        }
+
+        try {
+            StoredResponse stored = idempotencyRecordRepository
+                    .findByUserIdAndEndpointAndIdempotencyKey(userId, endpoint, key)
+                    .filter(record -> record.getStatusCode() != null)
+                    .filter(record -> record.getExpiresAt().isAfter(LocalDateTime.now()))
+                    .map(IdempotencyService::toStored)
+                    .orElse(null);
+            if (stored != null) {
+                putCached(cacheKey, stored);
+                mine.complete(stored);
+                return replay(stored, requestHash);
+            }
+
+            Outcome outcome = runOnce(userId, endpoint, key, requestHash, action);
+            if (outcome.stored().persisted()) {
+                putCached(cacheKey, outcome.stored());
+            }
+            mine.complete(outcome.stored());
+            return outcome.response() != null ? outcome.response() : replay(outcome.stored(), requestHash);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, mine);
+        }
+    }
+
+    /**
+     * The stored response for {@code key} if this instance has it in memory, without querying the
+     * database. Lets a caller answer a repeat before doing work that must not run for one.
+     */
+    public Optional<ResponseEntity<?>> replayCached(Long userId, String endpoint, String key, Object request) {
+        if (key == null || key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return Optional.empty();
+        }
+        StoredResponse cached = getCached(userId + ":" + endpoint + ":" + key);
+        return cached == null ? Optional.empty() : Optional.of(replay(cached, hash(request)));
+    }
+
+    /** Deletes records past their expiry; called from the transaction cleanup job. */
+    public int purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (cache) {
+            cache.values().removeIf(stored -> stored.expiresAt().isBefore(now));
+        }
+        Integer deleted = new TransactionTemplate(transactionManager)
+                .execute(status -> idempotencyRecordRepository.deleteExpired(now));
+        return deleted == null ? 0 : deleted;
+    }
+
+    private Outcome runOnce(Long userId, String endpoint, String key, String requestHash,
+                            Supplier<ResponseEntity<?>> action) {
+        try {
+            return new TransactionTemplate(transactionManager).execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                idempotencyRecordRepository.deleteExpiredKey(userId, endpoint, key, now);
+
+                // Claim the key first: another instance running the same key now fails here, not after the work
+                IdempotencyRecord record = new IdempotencyRecord();
+                record.setUserId(userId);
+                record.setEndpoint(endpoint);
+                record.setIdempotencyKey(key);
+                record.setRequestHash(requestHash);
+                record.setCreatedAt(now);
+                record.setExpiresAt(now.plusHours(ttlHours));
+                idempotencyRecordRepository.saveAndFlush(record);
+
+                ResponseEntity<?> response = action.get();
+                String body = toJson(response.getBody());
+                // 202 means the work has not happened yet, e.g. a buyer still in the flash-sale queue
+                if (!response.getStatusCode().is2xxSuccessful() || response.getStatusCode() == HttpStatus.ACCEPTED) {
+                    // Undo any partial work together with the claim so the key can be retried
+                    status.setRollbackOnly();
+                    return new Outcome(response, new StoredResponse(requestHash, response.getStatusCode().value(),
+                            body, record.getExpiresAt(), false));
+                }
+                record.setStatusCode(response.getStatusCode().value());
+                record.setResponseBody(body);
+                return new Outcome(response, new StoredResponse(requestHash, record.getStatusCode(), body,
+                        record.getExpiresAt(), true));
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.info("Idempotency key {} of user {} was used concurrently elsewhere", key, userId);
+            StoredResponse stored = idempotencyRecordRepository
+                    .findByUserIdAndEndpointAndIdempotencyKey(userId, endpoint, key)
+                    .filter(record -> record.getStatusCode() != null)
+                    .map(IdempotencyService::toStored)
+                    .orElseThrow(() -> new RuntimeException("A request with this " + HEADER + " is already being processed"));
+            return new Outcome(null, stored);
+        }
+    }
+
+    private ResponseEntity<?> awaitFirst(CompletableFuture<StoredResponse> running, String requestHash) {
+        try {
+            return replay(running.get(waitSeconds, TimeUnit.SECONDS), requestHash);
+        } catch (TimeoutException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "A request with this " + HEADER + " is still being processed"));
+        } catch (ExecutionException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "The request with this " + HEADER + " failed: " + e.getCause().getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the original request", e);
+        }
+    }
+
+    private static ResponseEntity<?> replay(StoredResponse stored, String requestHash) {
+        if (!stored.requestHash().equals(requestHash)) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", HEADER + " was already used for a different request"));
+        }
+        return ResponseEntity.status(stored.statusCode())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(REPLAYED_HEADER, "true")
+                .body(stored.body());
+    }
+
+    private StoredResponse getCached(String cacheKey) {
+        synchronized (cache) {
+            StoredResponse stored = cache.get(cacheKey);
+            if (stored != null && stored.expiresAt().isBefore(LocalDateTime.now())) {
+                cache.remove(cacheKey);
+                return null;
+            }
+            return stored;
+        }
+    }
+
+    private void putCached(String cacheKey, StoredResponse stored) {
+        synchronized (cache) {
+            cache.put(cacheKey, stored);
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(toJson(request).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize response: " + e.getMessage(), e);
+        }
+    }
+
+    private static StoredResponse toStored(IdempotencyRecord record) {
+        return new StoredResponse(record.getRequestHash(), record.getStatusCode(), record.getResponseBody(),
+                record.getExpiresAt(), true);
+    }
+
+    private record StoredResponse(String requestHash, int statusCode, String body, LocalDateTime expiresAt,
+                                  boolean persisted) {
+    }
+
+    private record Outcome(ResponseEntity<?> response, StoredResponse stored) {
+    }
+}
@@ -0,0 +1,78 @@
+package com.zettix.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory {@link MailSource} for load-testing the ingestion path without Google.
+ * Enabled with {@code gmail.source=memory}; messages are added with {@link #addMessage(MailMessage)}.
+ * The Gmail search query is ignored, every stored message is returned.
+ */
+@Component
+@ConditionalOnProperty(name = "gmail.source", havingValue = "memory")
+public class InMemoryMailSource implements MailSource {
+
+    private final Map<String, MailMessage> messages = new LinkedHashMap<>();
+    // Position i holds the message added at history id i + 1
+    private final List<String> history = new ArrayList<>();
+
+    public synchronized void addMessage(MailMessage message) {
+        messages.put(message.getId(), message);
+        history.add(message.getId());
+    }
+
+    public synchronized void clear() {
+        messages.clear();
+        history.clear();
+    }
+
+    public synchronized int size() {
+        return messages.size();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public synchronized List<String> listMessageIds(String query, long maxResults) {
+        List<String> ids = new ArrayList<>(messages.keySet());
+        List<String> newestFirst = new ArrayList<>();
+        for (int i = ids.size() - 1; i >= 0 && newestFirst.size() < maxResults; i--) {
+            newestFirst.add(ids.get(i));
+        }
+        return newestFirst;
+    }
+
+    @Override
+    public synchronized String getCurrentHistoryId() {
+        return String.valueOf(history.size());
+    }
+
+    @Override
+    public synchronized HistoryDelta listHistory(String startHistoryId) {
+        int start = Integer.parseInt(startHistoryId);
+        if (start > history.size()) {
+            return HistoryDelta.builder().messageIds(List.of()).historyId(startHistoryId).expired(true).build();
+        }
+        return HistoryDelta.builder()
+                .messageIds(new ArrayList<>(history.subList(start, history.size())))
+                .historyId(String.valueOf(history.size()))
+                .build();
+    }
+
+    @Override
+    public synchronized MailMessage getMessage(String messageId) {
+        MailMessage message = messages.get(messageId);
+        if (message == null) {
+            throw new IllegalArgumentException("Message not found: " + messageId);
+        }
+        return message;
+    }
+}
@@ -0,0 +1,298 @@
+package com.zettix.service;
+
+import com.zettix.entity.Account;
+import com.zettix.entity.Product;
+import com.zettix.repository.AccountRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-product queues of accounts reserved ahead of demand. A background refill moves batches of
+ * AVAILABLE accounts to RESERVED and queues their ids, so a purchase of a busy product pops an id
+ * instead of searching the accounts table. Pool sizes follow each product's recent sales rate;
+ * products selling slower than the configured minimum get no pool and go through
+ * {@link AccountAllocator} directly.
+ * <p>
+ * Products found empty are remembered as sold out, so further purchases are rejected without a query
+ * until stock is imported or a refill run finds some again. A claim that finds no free account only
+ * marks the product after a count confirms that no account is left unsold: accounts held by
+ * purchases still in progress may come back when those roll back.
+ * <p>
+ * Reservations only live in this process: they are released at shutdown and any RESERVED account
+ * found at startup is treated as left behind by a crash and made available again. Running a second
+ * instance needs an owner column on the reservation first.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InventoryPool {
+
+    private final AccountRepository accountRepository;
+    private final AccountAllocator accountAllocator;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${inventory.pool.enabled:true}")
+    private boolean enabled;
+
+    @Value("${inventory.pool.horizon-seconds:30}")
+    private int horizonSeconds;
+
+    @Value("${inventory.pool.min-sales-per-minute:6}")
+    private double minSalesPerMinute;
+
+    @Value("${inventory.pool.min-size:10}")
+    private int minSize;
+
+    @Value("${inventory.pool.max-size:500}")
+    private int maxSize;
+
+    @Value("${inventory.pool.rate-smoothing:0.3}")
+    private double rateSmoothing;
+
+    private final Map<Long, ProductPool> pools = new ConcurrentHashMap<>();
+    private final Set<Long> soldOut = ConcurrentHashMap.newKeySet();
+    private volatile long lastRefillNanos = System.nanoTime();
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("zettix.inventory.pool.reserved", pools,
+                map -> map.values().stream().mapToInt(pool -> pool.reserved.size()).sum()).register(meterRegistry);
+        Gauge.builder("zettix.inventory.sold.out", soldOut, Set::size).register(meterRegistry);
+    }
+
+    /** Returns RESERVED accounts left behind by a previous run that did not shut down cleanly. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverReservations() {
+        try {
+            Integer released = new TransactionTemplate(transactionManager)
+                    .execute(status -> accountRepository.releaseAllReserved(LocalDateTime.now()));
+            if (released != null && released > 0) {
+                log.info("Released {} accounts reserved before the last restart", released);
+            }
+        } catch (Exception e) {
+            log.error("Could not recover reserved accounts: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void releaseReservations() {
+        List<Long> ids = new ArrayList<>();
+        pools.values().forEach(pool -> drain(pool.reserved, Integer.MAX_VALUE, ids));
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            release(ids);
+            log.info("Released {} reserved accounts at shutdown", ids.size());
+        } catch (Exception e) {
+            log.warn("Could not release reserved accounts, they will be recovered at startup: {}", e.getMessage());
+        }
+    }
+
+    /** Whether the product is known to have no stock left; answered from memory. */
+    public boolean isSoldOut(Long productId) {
+        return soldOut.contains(productId);
+    }
+
+    /** Clears the sold-out mark, e.g. after accounts were imported for the product. */
+    public void markRestocked(Long productId) {
+        soldOut.remove(productId);
+    }
+
+    /**
+     * Claims an account for a purchase in the caller's transaction: from the product's pool when it
+     * has one, otherwise through {@link AccountAllocator}. A pooled account goes back to the pool if
+     * the purchase rolls back. Empty means no account is free right now; {@link #isSoldOut} tells
+     * whether the product has run out.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<Account> claim(Product product) {
+        return claim(product, 1).stream().findFirst();
+    }
+
+    /**
+     * Claims up to {@code quantity} accounts the same way, taking what the pool holds first and the
+     * rest from the database. Returns fewer when the product runs out.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Account> claim(Product product, int quantity) {
+        Long productId = product.getId();
+        ProductPool pool = pools.computeIfAbsent(productId, ProductPool::new);
+        pool.sales.add(quantity);
+
+        List<Account> claimed = new ArrayList<>(quantity);
+        if (enabled) {
+            List<Long> ids = new ArrayList<>();
+            drain(pool.reserved, quantity, ids);
+            if (!ids.isEmpty()) {
+                for (Account account : accountRepository.findAllById(ids)) {
+                    if (account.getStatus() == Account.AccountStatus.RESERVED) {
+                        claimed.add(account);
+                    }
+                }
+                returnOnRollback(pool, claimed.stream().map(Account::getId).toList());
+                meterRegistry.counter("zettix.inventory.claims", "source", "pool").increment(claimed.size());
+            }
+        }
+
+        if (claimed.size() < quantity) {
+            List<Account> fromDatabase = accountAllocator.claim(product, quantity - claimed.size());
+            claimed.addAll(fromDatabase);
+            meterRegistry.counter("zettix.inventory.claims", "source", "database").increment(fromDatabase.size());
+            if (fromDatabase.isEmpty()) {
+                if (accountRepository.countUnsoldByProductId(productId) == 0) {
+                    soldOut.add(productId);
+                    meterRegistry.counter("zettix.inventory.claims", "source", "sold_out").increment();
+                } else {
+                    soldOut.remove(productId);
+                    meterRegistry.counter("zettix.inventory.claims", "source", "busy").increment();
+                }
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Re-estimates each product's sales rate, tops up pools that fell below half their target and
+     * releases reservations of products that slowed down. Also re-checks products marked sold out.
+     */
+    public void refill() {
+        long now = System.nanoTime();
+        double elapsedSeconds = Math.max(1e-3, (now - lastRefillNanos) / 1e9);
+        lastRefillNanos = now;
+
+        for (Long productId : List.copyOf(soldOut)) {
+            if (accountRepository.countUnsoldByProductId(productId) > 0) {
+                soldOut.remove(productId);
+            }
+        }
+        if (!enabled) {
+            return;
+        }
+
+        for (ProductPool pool : pools.values()) {
+            long sales = pool.sales.sum();
+            double rate = (sales - pool.lastSales) / elapsedSeconds;
+            pool.lastSales = sales;
+            pool.ratePerSecond = rateSmoothing * rate + (1 - rateSmoothing) * pool.ratePerSecond;
+
+            int target = targetSize(pool.ratePerSecond);
+            int size = pool.reserved.size();
+            try {
+                if (size < target / 2 || (size == 0 && target > 0)) {
+                    reserve(pool, target - size);
+                } else if (size > target * 2) {
+                    List<Long> excess = new ArrayList<>();
+                    drain(pool.reserved, size - target, excess);
+                    release(excess);
+                }
+            } catch (Exception e) {
+                log.error("Could not refill inventory pool of product {}: {}", pool.productId, e.getMessage(), e);
+            }
+        }
+    }
+
+    int targetSize(double salesPerSecond) {
+        if (salesPerSecond * 60 < minSalesPerMinute) {
+            return 0;
+        }
+        long target = (long) Math.ceil(salesPerSecond * horizonSeconds);
+        return (int) Math.max(minSize, Math.min(maxSize, target));
+    }
+
+    int reservedCount(Long productId) {
+        ProductPool pool = pools.get(productId);
+        return pool == null ? 0 : pool.reserved.size();
+    }
+
+    private void reserve(ProductPool pool, int count) {
+        if (soldOut.contains(pool.productId)) {
+            return;
+        }
+        List<Long> reserved = new TransactionTemplate(transactionManager).execute(status -> {
+            List<Long> candidates = accountRepository.findAvailableIdsByProduct(pool.productId, PageRequest.of(0, count));
+            // Rows a buyer is selling right now are skipped rather than waited on
+            List<Long> locked = candidates.isEmpty() ? List.of()
+                    : accountRepository.lockAvailable(candidates).stream().map(Account::getId).toList();
+            if (!locked.isEmpty()) {
+                accountRepository.updateStatus(locked, Account.AccountStatus.AVAILABLE,
+                        Account.AccountStatus.RESERVED, LocalDateTime.now());
+            }
+            return locked;
+        });
+        if (reserved != null && !reserved.isEmpty()) {
+            pool.reserved.addAll(reserved);
+            log.debug("Reserved {} accounts for product {}", reserved.size(), pool.productId);
+        }
+    }
+
+    private void release(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                accountRepository.updateStatus(ids, Account.AccountStatus.RESERVED,
+                        Account.AccountStatus.AVAILABLE, LocalDateTime.now()));
+    }
+
+    private static void returnOnRollback(ProductPool pool, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    pool.reserved.addAll(ids);
+                }
+            }
+        });
+    }
+
+    private static void drain(Queue<Long> queue, int max, List<Long> into) {
+        Long id;
+        for (int i = 0; i < max && (id = queue.poll()) != null; i++) {
+            into.add(id);
+        }
+    }
+
+    private static final class ProductPool {
+        private final Long productId;
+        private final Queue<Long> reserved = new ConcurrentLinkedQueue<>();
+        private final LongAdder sales = new LongAdder();
+        // Only touched by the refill run
+        private long lastSales;
+        private double ratePerSecond;
+
+        private ProductPool(Long productId) {
+            this.productId = productId;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.zettix.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Source of bank notification emails.
+ * The ingestion path in {@link GmailService} only talks to this interface, so it can run
+ * against Gmail in production or against {@link InMemoryMailSource} for local load tests.
+ */
+public interface MailSource {
+
+    /** Whether the source is configured and can be queried. */
+    boolean isAvailable();
+
+    /** Ids of the newest messages matching the query, newest first, following result pages up to maxResults. */
+    List<String> listMessageIds(String query, long maxResults) throws IOException;
+
+    /** Current mailbox history id, used as the starting cursor for {@link #listHistory(String)}. */
+    String getCurrentHistoryId() throws IOException;
+
+    /**
+     * Ids of all messages added after the given history id, oldest first, following every result page.
+     * The returned delta is marked expired when the mailbox no longer keeps history that far back.
+     */
+    HistoryDelta listHistory(String startHistoryId) throws IOException;
+
+    MailMessage getMessage(String messageId) throws IOException;
+
+    /**
+     * Fetches several messages in one round trip where the source supports it.
+     * Messages that could not be fetched are left out of the result.
+     */
+    default List<MailMessage> getMessages(List<String> messageIds) throws IOException {
+        List<MailMessage> messages = new ArrayList<>(messageIds.size());
+        for (String messageId : messageIds) {
+            messages.add(getMessage(messageId));
+        }
+        return messages;
+    }
+
+    /**
+     * Starts or renews push notifications for new mail to the given Pub/Sub topic.
+     * Returns the watch expiry in epoch millis, or null when the source does not expire watches.
+     */
+    default Long watch(String topicName) throws IOException {
+        return null;
+    }
+
+    /** Refresh access credentials ahead of expiry. No-op for sources without credentials. */
+    default void refreshCredentials() throws IOException {
+    }
+
+    @lombok.Data
+    @lombok.Builder
+    class MailMessage {
+        private String id;
+        private String subject;
+        private String from;
+        private String body;
+    }
+
+    @lombok.Data
+    @lombok.Builder
+    class HistoryDelta {
+        private List<String> messageIds;
+        private String historyId;
+        private boolean expired;
+    }
+}
@@ -0,0 +1,236 @@
+package com.zettix.service;
+
+import com.zettix.entity.Transaction;
+import com.zettix.repository.TransactionRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+
+/**
+ * In-memory view of PENDING deposits keyed by reference id, so an email whose reference matches no
+ * open deposit is rejected with a hash lookup instead of a {@code findByReferenceId} round trip.
+ * Warmed from the database once the application is ready and kept current as deposits are created,
+ * confirmed and expired. Until it is warm, callers should fall back to the database.
+ * <p>
+ * Deposits are also kept in a sorted map under a normalized match key, which {@link ReferenceMatcher}
+ * uses to find references that a bank app truncated or decorated. Different references can fold to
+ * the same key, so each key holds a small list of deposits.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PendingDepositIndex {
+
+    private static final String REFERENCE_PREFIX = "ZETTIX";
+
+    private final TransactionRepository transactionRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, PendingDeposit> byReference = new ConcurrentHashMap<>();
+    // Lists are replaced, never mutated, because the map may apply a remapping function more than once
+    private final ConcurrentSkipListMap<String, List<PendingDeposit>> byMatchKey = new ConcurrentSkipListMap<>();
+    // Distinct match key lengths, so "key is a prefix of the memo" checks one substring per length
+    private final Set<Integer> matchKeyLengths = ConcurrentHashMap.newKeySet();
+    private volatile boolean warm;
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("zettix.deposit.pending.index.size", byReference, Map::size).register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            List<Transaction> pending = transactionRepository.findByTransactionTypeAndStatus(
+                    Transaction.TransactionType.DEPOSIT, Transaction.TransactionStatus.PENDING);
+            pending.forEach(this::add);
+            warm = true;
+            log.info("Pending deposit index warmed with {} deposits", pending.size());
+        } catch (Exception e) {
+            log.error("Could not warm pending deposit index, deposit matching will query the database: {}",
+                    e.getMessage(), e);
+        }
+    }
+
+    public boolean isWarm() {
+        return warm;
+    }
+
+    public void add(Transaction transaction) {
+        if (transaction.getReferenceId() == null) {
+            return;
+        }
+        PendingDeposit deposit = new PendingDeposit(transaction.getId(), transaction.getReferenceId(),
+                transaction.getAmount(), transaction.getCreatedAt(), transaction.getExpiresAt());
+        byReference.put(deposit.referenceId(), deposit);
+        String key = matchKey(deposit.referenceId());
+        if (!key.isEmpty()) {
+            byMatchKey.compute(key, (k, deposits) -> with(deposits, deposit));
+            matchKeyLengths.add(key.length());
+        }
+    }
+
+    /**
+     * Adds the deposit once the surrounding transaction commits, so a rolled-back deposit never
+     * becomes matchable. Adds immediately when no transaction is active.
+     */
+    public void addAfterCommit(Transaction transaction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(transaction);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                add(transaction);
+            }
+        });
+    }
+
+    public PendingDeposit get(String referenceId) {
+        PendingDeposit deposit = referenceId == null ? null : byReference.get(referenceId);
+        meterRegistry.counter("zettix.deposit.pending.index.lookups", "result", deposit == null ? "miss" : "hit")
+                .increment();
+        return deposit;
+    }
+
+    public void remove(String referenceId) {
+        if (referenceId == null) {
+            return;
+        }
+        PendingDeposit removed = byReference.remove(referenceId);
+        if (removed != null) {
+            byMatchKey.computeIfPresent(matchKey(referenceId), (k, deposits) -> without(deposits, referenceId));
+        }
+    }
+
+    /**
+     * Removes the deposit once the surrounding transaction commits, so a rolled-back confirmation
+     * leaves it matchable. Removes immediately when no transaction is active.
+     */
+    public void removeAfterCommit(String referenceId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            remove(referenceId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                remove(referenceId);
+            }
+        });
+    }
+
+    public int size() {
+        return byReference.size();
+    }
+
+    /**
+     * Deposits whose match key starts with the given key and that pass {@code filter}, in key order,
+     * at most {@code limit} of them.
+     */
+    public List<PendingDeposit> findByMatchKeyPrefix(String keyPrefix, Predicate<PendingDeposit> filter, int limit) {
+        List<PendingDeposit> found = new ArrayList<>();
+        for (Map.Entry<String, List<PendingDeposit>> entry : byMatchKey.tailMap(keyPrefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(keyPrefix)) {
+                break;
+            }
+            for (PendingDeposit deposit : entry.getValue()) {
+                if (found.size() >= limit) {
+                    return found;
+                }
+                if (filter.test(deposit)) {
+                    found.add(deposit);
+                }
+            }
+        }
+        return found;
+    }
+
+    /** Deposits whose match key is a prefix of the given key, e.g. when the bank appended its own suffix. */
+    public List<PendingDeposit> findByMatchKeyPrefixOf(String key) {
+        List<PendingDeposit> found = new ArrayList<>();
+        for (int length : matchKeyLengths) {
+            if (length < key.length()) {
+                List<PendingDeposit> deposits = byMatchKey.get(key.substring(0, length));
+                if (deposits != null) {
+                    found.addAll(deposits);
+                }
+            }
+        }
+        return found;
+    }
+
+    private static List<PendingDeposit> with(List<PendingDeposit> deposits, PendingDeposit deposit) {
+        List<PendingDeposit> updated = new ArrayList<>(deposits == null ? 1 : deposits.size() + 1);
+        if (deposits != null) {
+            for (PendingDeposit existing : deposits) {
+                if (!existing.referenceId().equals(deposit.referenceId())) {
+                    updated.add(existing);
+                }
+            }
+        }
+        updated.add(deposit);
+        return List.copyOf(updated);
+    }
+
+    // Returns null once the last deposit is gone, which removes the key
+    private static List<PendingDeposit> without(List<PendingDeposit> deposits, String referenceId) {
+        List<PendingDeposit> updated = new ArrayList<>(deposits.size());
+        for (PendingDeposit existing : deposits) {
+            if (!existing.referenceId().equals(referenceId)) {
+                updated.add(existing);
+            }
+        }
+        return updated.isEmpty() ? null : List.copyOf(updated);
+    }
+
+    /**
+     * Normalizes a reference or memo for fuzzy matching: uppercase letters and digits only, the
+     * ZETTIX prefix removed (also when the bank repeated it) and look-alike letters folded to digits.
+     */
+    public static String matchKey(String reference) {
+        StringBuilder cleaned = new StringBuilder(reference.length());
+        for (int i = 0; i < reference.length(); i++) {
+            char c = Character.toUpperCase(reference.charAt(i));
+            if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                cleaned.append(c);
+            }
+        }
+        int start = 0;
+        while (cleaned.indexOf(REFERENCE_PREFIX, start) == start) {
+            start += REFERENCE_PREFIX.length();
+        }
+        StringBuilder key = new StringBuilder(cleaned.length() - start);
+        for (int i = start; i < cleaned.length(); i++) {
+            char c = cleaned.charAt(i);
+            switch (c) {
+                case 'O' -> key.append('0');
+                case 'I', 'L' -> key.append('1');
+                default -> key.append(c);
+            }
+        }
+        return key.toString();
+    }
+
+    public record PendingDeposit(Long transactionId, String referenceId, BigDecimal amount,
+                                 LocalDateTime createdAt, LocalDateTime expiresAt) {
+    }
+}
@@ -0,0 +1,220 @@
+package com.zettix.service;
+
+import com.zettix.entity.Account;
+import com.zettix.entity.Product;
+import com.zettix.repository.AccountRepository;
+import com.zettix.repository.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Owns the {@code available_quantity} and {@code sold_quantity} counters of products. Sales are
+ * counted in memory when their transaction commits and written to the products table in the
+ * background as one batch of relative updates, so buyers never wait on the product row.
+ * <p>
+ * Catalog reads go through {@link #view(Product)}, which adds the sales not written yet to the
+ * stored counters. A periodic {@link #reconcile()} recounts the accounts of every product and
+ * repairs counters that drifted, e.g. sales lost with the process before they were flushed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductStockCounters {
+
+    private static final String APPLY_SALES = "UPDATE products SET available_quantity = available_quantity - ?, " +
+            "sold_quantity = sold_quantity + ?, updated_at = ? WHERE id = ?";
+
+    private final ProductRepository productRepository;
+    private final AccountRepository accountRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    // Committed sales per product that the products table does not show yet
+    private final Map<Long, LongAdder> pendingSales = new ConcurrentHashMap<>();
+    // Drift seen by the last reconcile run; corrected when the next run finds the same
+    private final Map<Long, Drift> suspectedDrift = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("zettix.product.stock.pending", pendingSales,
+                map -> map.values().stream().mapToLong(LongAdder::sum).sum()).register(meterRegistry);
+    }
+
+    /** Counts a sale once the caller's transaction commits; a rollback leaves the counters alone. */
+    public void recordSale(Long productId, int quantity) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    pending(productId).add(quantity);
+                }
+            });
+        } else {
+            pending(productId).add(quantity);
+        }
+    }
+
+    public int available(Product product) {
+        return product.getAvailableQuantity() - (int) pendingSales(product.getId());
+    }
+
+    public int sold(Product product) {
+        return product.getSoldQuantity() + (int) pendingSales(product.getId());
+    }
+
+    /**
+     * The product as buyers should see it. Returns a copy when sales are pending, so the loaded
+     * entity is never changed and cannot write the adjusted counters back.
+     */
+    public Product view(Product product) {
+        long pending = pendingSales(product.getId());
+        if (pending == 0) {
+            return product;
+        }
+        Product copy = new Product();
+        BeanUtils.copyProperties(product, copy);
+        copy.setAvailableQuantity(product.getAvailableQuantity() - (int) pending);
+        copy.setSoldQuantity(product.getSoldQuantity() + (int) pending);
+        return copy;
+    }
+
+    /** Views of the products, without those that sold out since they were stored. */
+    public List<Product> viewInStock(List<Product> products) {
+        return products.stream().map(this::view).filter(product -> product.getAvailableQuantity() > 0).toList();
+    }
+
+    public List<Product> view(List<Product> products) {
+        return products.stream().map(this::view).toList();
+    }
+
+    /** Sales of all products not written to the products table yet. */
+    public long totalPendingSales() {
+        return pendingSales.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * Writes the pending sales of every product as relative updates in one JDBC batch. On failure the
+     * sales are put back for the next run. Returns the number of products updated.
+     */
+    public synchronized int flush() {
+        List<Object[]> updates = new ArrayList<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (Map.Entry<Long, LongAdder> entry : pendingSales.entrySet()) {
+            long sales = entry.getValue().sumThenReset();
+            if (sales != 0) {
+                updates.add(new Object[]{sales, sales, now, entry.getKey()});
+            }
+        }
+        if (updates.isEmpty()) {
+            return 0;
+        }
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(APPLY_SALES, updates));
+            meterRegistry.counter("zettix.product.stock.flushed").increment(updates.size());
+            return updates.size();
+        } catch (Exception e) {
+            for (Object[] update : updates) {
+                pending((Long) update[3]).add((Long) update[0]);
+            }
+            log.error("Could not flush product stock counters, keeping {} products pending: {}",
+                    updates.size(), e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    @PreDestroy
+    public void flushAtShutdown() {
+        int flushed = flush();
+        if (flushed > 0) {
+            log.info("Flushed stock counters of {} products at shutdown", flushed);
+        }
+    }
+
+    /**
+     * Recounts AVAILABLE/RESERVED and SOLD accounts per product and compares them with the stored
+     * counters plus pending sales. Purchases committing during the count make a product look off
+     * for one run, so a product is only corrected when two runs in a row find the same difference.
+     * Returns the number of products corrected.
+     */
+    public synchronized int reconcile() {
+        flush();
+        Map<Long, long[]> accountCounts = new HashMap<>();
+        for (Object[] row : accountRepository.countByProductAndStatus()) {
+            long[] counts = accountCounts.computeIfAbsent((Long) row[0], id -> new long[2]);
+            Account.AccountStatus status = (Account.AccountStatus) row[1];
+            long count = (Long) row[2];
+            if (status == Account.AccountStatus.SOLD) {
+                counts[1] += count;
+            } else if (status == Account.AccountStatus.AVAILABLE || status == Account.AccountStatus.RESERVED) {
+                counts[0] += count;
+            }
+        }
+
+        int corrected = 0;
+        LocalDateTime now = LocalDateTime.now();
+        for (Object[] row : productRepository.findStockCounters()) {
+            Long productId = (Long) row[0];
+            long pending = pendingSales(productId);
+            long[] counts = accountCounts.getOrDefault(productId, new long[2]);
+            Drift drift = new Drift(
+                    counts[0] - (((Integer) row[1]).longValue() - pending),
+                    counts[1] - (((Integer) row[2]).longValue() + pending));
+
+            if (drift.isZero()) {
+                suspectedDrift.remove(productId);
+            } else if (drift.equals(suspectedDrift.get(productId))) {
+                new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                        productRepository.adjustStock(productId, 0, (int) drift.available(), (int) drift.sold(), now));
+                suspectedDrift.remove(productId);
+                meterRegistry.counter("zettix.product.stock.drift.corrected").increment();
+                log.warn("Corrected stock counters of product {}: available {}, sold {}",
+                        productId, signed(drift.available()), signed(drift.sold()));
+                corrected++;
+            } else {
+                suspectedDrift.put(productId, drift);
+            }
+        }
+        return corrected;
+    }
+
+    long pendingSales(Long productId) {
+        LongAdder adder = pendingSales.get(productId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    private LongAdder pending(Long productId) {
+        return pendingSales.computeIfAbsent(productId, id -> new LongAdder());
+    }
+
+    private static String signed(long value) {
+        return value > 0 ? "+" + value : String.valueOf(value);
+    }
+
+    private record Drift(long available, long sold) {
+        private boolean isZero() {
+            return available == 0 && sold == 0;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.zettix.service;
+
+import com.google.zxing.common.BitMatrix;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a QR {@link BitMatrix} straight to image bytes. The PNG is 1-bit indexed with a white and a
+ * black palette entry, packed eight pixels per byte from the matrix without an intermediate
+ * {@code BufferedImage}; the SVG draws one unit per module. Deflaters and row buffers are kept per
+ * thread, so rendering allocates little beyond the returned bytes.
+ */
+public final class QrImageEncoder {
+
+    /** Bump whenever the bytes written for the same matrix change, so cached images are refetched. */
+    public static final int VERSION = 2;
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    // Index 0 is white and 1 is black, so a set matrix bit is a set pixel bit
+    private static final byte[] PALETTE = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0, 0, 0};
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private QrImageEncoder() {
+    }
+
+    public static byte[] png(BitMatrix matrix) {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        int rowBytes = (width + 7) / 8;
+        Scratch scratch = SCRATCH.get();
+        int rawLength = height * (rowBytes + 1);
+        byte[] raw = scratch.raw(rawLength);
+        Arrays.fill(raw, 0, rawLength, (byte) 0);
+        // Rows stay unfiltered (filter byte 0): a row repeated by module scaling is then a single
+        // back-reference for deflate, which beats the Up filter on these images
+        for (int y = 0; y < height; y++) {
+            int offset = y * (rowBytes + 1) + 1;
+            for (int x = 0; x < width; x++) {
+                if (matrix.get(x, y)) {
+                    raw[offset + (x >>> 3)] |= (byte) (0x80 >>> (x & 7));
+                }
+            }
+        }
+
+        Deflater deflater = scratch.deflater;
+        deflater.reset();
+        deflater.setInput(raw, 0, rawLength);
+        deflater.finish();
+        ByteArrayOutputStream idat = scratch.idat;
+        idat.reset();
+        byte[] buffer = scratch.deflateBuffer;
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            idat.write(buffer, 0, n);
+        }
+
+        byte[] header = new byte[13];
+        writeInt(header, 0, width);
+        writeInt(header, 4, height);
+        header[8] = 1; // bit depth
+        header[9] = 3; // indexed colour
+        // compression, filter method and interlace stay 0
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(idat.size() + 64);
+        out.writeBytes(SIGNATURE);
+        writeChunk(out, scratch.crc, "IHDR", header, header.length);
+        writeChunk(out, scratch.crc, "PLTE", PALETTE, PALETTE.length);
+        writeChunk(out, scratch.crc, "IDAT", idat.toByteArray(), idat.size());
+        writeChunk(out, scratch.crc, "IEND", new byte[0], 0);
+        return out.toByteArray();
+    }
+
+    /** One unit per module; dark modules of a row are merged into runs, one path segment each. */
+    public static String svg(BitMatrix matrix) {
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+        StringBuilder svg = new StringBuilder(width * height);
+        svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 ").append(width).append(' ').append(height)
+                .append("\" shape-rendering=\"crispEdges\"><rect width=\"100%\" height=\"100%\" fill=\"#fff\"/><path fill=\"#000\" d=\"");
+        for (int y = 0; y < height; y++) {
+            int x = 0;
+            while (x < width) {
+                if (!matrix.get(x, y)) {
+                    x++;
+                    continue;
+                }
+                int start = x;
+                while (x < width && matrix.get(x, y)) {
+                    x++;
+                }
+                svg.append('M').append(start).append(' ').append(y)
+                        .append('h').append(x - start).append("v1h-").append(x - start).append('z');
+            }
+        }
+        return svg.append("\"/></svg>").toString();
+    }
+
+    private static void writeChunk(ByteArrayOutputStream out, CRC32 crc, String type, byte[] data, int length) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        byte[] word = new byte[4];
+        writeInt(word, 0, length);
+        out.writeBytes(word);
+        out.writeBytes(typeBytes);
+        out.write(data, 0, length);
+        crc.reset();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        writeInt(word, 0, (int) crc.getValue());
+        out.writeBytes(word);
+    }
+
+    private static void writeInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    private static final class Scratch {
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        private final CRC32 crc = new CRC32();
+        private final ByteArrayOutputStream idat = new ByteArrayOutputStream(1024);
+        private final byte[] deflateBuffer = new byte[4096];
+        private byte[] raw = new byte[0];
+
+        private byte[] raw(int size) {
+            if (raw.length < size) {
+                raw = new byte[size];
+            }
+            return raw;
+        }
+    }
+}
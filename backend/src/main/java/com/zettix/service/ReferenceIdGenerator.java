@@ -0,0 +1,127 @@
+package com.zettix.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Issues deposit reference IDs: eleven Crockford base32 characters, i.e. ten data characters
+ * holding a 50-bit key and one Luhn mod 32 check character. The key is a millisecond sequence since
+ * {@link #EPOCH} in its high 45 bits and the issuing node in its low 5 bits; the sequence follows
+ * the clock but never repeats, so IDs from one node are unique and sort in issue order.
+ * <p>
+ * {@link #decode(CharSequence)} reads an ID back without any lookup and tells a garbled one from a
+ * genuine one: every single mistyped character and almost every swap of neighbours fails the check.
+ */
+@Component
+public class ReferenceIdGenerator {
+
+    public static final int LENGTH = 11;
+    public static final long INVALID = -1L;
+
+    static final Instant EPOCH = Instant.parse("2025-01-01T00:00:00Z");
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int[] VALUES = new int[128];
+    private static final int RADIX = 32;
+    private static final int BITS_PER_CHAR = 5;
+    private static final int NODE_BITS = 5;
+    private static final int DATA_LENGTH = LENGTH - 1;
+
+    static {
+        Arrays.fill(VALUES, -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            VALUES[ALPHABET[i]] = i;
+            VALUES[Character.toLowerCase(ALPHABET[i])] = i;
+        }
+        // Crockford decoding: letters that read like digits are those digits
+        VALUES['O'] = VALUES['o'] = 0;
+        VALUES['I'] = VALUES['i'] = VALUES['L'] = VALUES['l'] = 1;
+    }
+
+    @Value("${reference.node-id:0}")
+    private int nodeId;
+
+    private final AtomicLong lastSequence = new AtomicLong();
+
+    @PostConstruct
+    public void checkNodeId() {
+        if (nodeId < 0 || nodeId >= (1 << NODE_BITS)) {
+            throw new IllegalStateException("reference.node-id must be between 0 and " + ((1 << NODE_BITS) - 1));
+        }
+    }
+
+    public String next() {
+        long now = System.currentTimeMillis() - EPOCH.toEpochMilli();
+        // Several IDs in one millisecond borrow from the next ones; the clock catches up when idle
+        long sequence = lastSequence.accumulateAndGet(now, (last, clock) -> Math.max(last + 1, clock));
+        return encode((sequence << NODE_BITS) | nodeId);
+    }
+
+    static String encode(long key) {
+        char[] id = new char[LENGTH];
+        for (int i = DATA_LENGTH - 1; i >= 0; i--) {
+            id[i] = ALPHABET[(int) (key & (RADIX - 1))];
+            key >>>= BITS_PER_CHAR;
+        }
+        id[DATA_LENGTH] = ALPHABET[checkValue(id)];
+        return new String(id);
+    }
+
+    /**
+     * Returns the key of a reference ID, or {@link #INVALID} when it has the wrong length, a
+     * character outside the alphabet or a failing check character. Case and the look-alikes O, I
+     * and L are accepted, as bank apps and people write them.
+     */
+    public static long decode(CharSequence reference) {
+        if (reference == null || reference.length() != LENGTH) {
+            return INVALID;
+        }
+        long key = 0;
+        int sum = 0;
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            char c = reference.charAt(i);
+            int value = c < VALUES.length ? VALUES[c] : -1;
+            if (value < 0) {
+                return INVALID;
+            }
+            // Luhn mod N from the right: the check character itself is not doubled
+            sum += (LENGTH - 1 - i) % 2 == 0 ? value : doubled(value);
+            if (i < DATA_LENGTH) {
+                key |= (long) value << (BITS_PER_CHAR * (DATA_LENGTH - 1 - i));
+            }
+        }
+        return sum % RADIX == 0 ? key : INVALID;
+    }
+
+    public static long sequence(long key) {
+        return key >>> NODE_BITS;
+    }
+
+    public static int node(long key) {
+        return (int) (key & ((1 << NODE_BITS) - 1));
+    }
+
+    /** When the ID was issued, give or take the IDs its node issued ahead of the clock. */
+    public static Instant issuedAt(long key) {
+        return EPOCH.plusMillis(sequence(key));
+    }
+
+    private static int checkValue(char[] id) {
+        int sum = 0;
+        for (int i = DATA_LENGTH - 1; i >= 0; i--) {
+            int value = VALUES[id[i]];
+            sum += (DATA_LENGTH - 1 - i) % 2 == 0 ? doubled(value) : value;
+        }
+        return (RADIX - sum % RADIX) % RADIX;
+    }
+
+    private static int doubled(int value) {
+        int product = 2 * value;
+        return product / RADIX + product % RADIX;
+    }
+}
@@ -0,0 +1,174 @@
+package com.zettix.service;
+
+import com.zettix.service.PendingDepositIndex.PendingDeposit;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Finds the pending deposit a bank memo most likely refers to when the exact reference lookup fails,
+ * e.g. because the bank app truncated the "NAP TIEN ZETTIX &lt;ref&gt;" memo, changed its case or
+ * spacing, or appended its own transaction code.
+ * <p>
+ * Candidates come from prefix lookups in {@link PendingDepositIndex}, so the cost depends on the
+ * number of deposits sharing the memo's prefix rather than on the number of pending deposits.
+ * Candidates must have exactly the transferred amount; they are scored on how much of the reference
+ * survived and on whether the transfer falls inside the deposit's validity window.
+ * <p>
+ * Memos carrying a {@link ReferenceIdGenerator} ID skip the search: the ID's check character either
+ * fails, and the memo is rejected as garbled, or the ID is looked up directly.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReferenceMatcher {
+
+    private final PendingDepositIndex pendingDepositIndex;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${matching.min-reference-length:8}")
+    private int minReferenceLength;
+
+    @Value("${matching.max-candidates:64}")
+    private int maxCandidates;
+
+    @Value("${matching.window-grace-minutes:10}")
+    private long windowGraceMinutes;
+
+    @Value("${matching.auto-confirm-confidence:0.8}")
+    private double autoConfirmConfidence;
+
+    /**
+     * Returns the best candidate with its confidence in [0, 1], or empty when no pending deposit
+     * with this amount shares enough of the reference.
+     */
+    public Optional<Match> match(String memoReference, BigDecimal amount, LocalDateTime transferredAt) {
+        if (memoReference == null || amount == null || !pendingDepositIndex.isWarm()) {
+            return Optional.empty();
+        }
+        String key = PendingDepositIndex.matchKey(memoReference);
+        if (key.length() < minReferenceLength) {
+            return Optional.empty();
+        }
+        if (isCompactReference(key)) {
+            return matchCompact(key, amount, transferredAt);
+        }
+
+        List<Match> scored = new ArrayList<>();
+        // Truncated memo: the memo is a prefix of the reference (or the whole reference)
+        // The candidate limit counts deposits with the right amount only
+        for (PendingDeposit deposit : pendingDepositIndex.findByMatchKeyPrefix(key,
+                deposit -> hasAmount(deposit, amount), maxCandidates)) {
+            int referenceLength = PendingDepositIndex.matchKey(deposit.referenceId()).length();
+            score(deposit, (double) key.length() / referenceLength, amount, transferredAt, scored);
+        }
+        // Decorated memo: the bank appended characters after the reference
+        for (PendingDeposit deposit : pendingDepositIndex.findByMatchKeyPrefixOf(key)) {
+            score(deposit, 0.95, amount, transferredAt, scored);
+        }
+        if (scored.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Match best = scored.get(0);
+        int ties = 0;
+        for (Match candidate : scored) {
+            if (candidate.confidence() > best.confidence()) {
+                best = candidate;
+                ties = 0;
+            } else if (candidate.confidence() == best.confidence() && candidate != best) {
+                ties++;
+            }
+        }
+        // Two equally good candidates are a coin flip, not a match
+        return Optional.of(record(new Match(best.deposit(), best.confidence() / (ties + 1))));
+    }
+
+    /** Whether the match is good enough to confirm the deposit without manual review. */
+    public boolean isAutoConfirmable(Match match) {
+        return match.confidence() >= autoConfirmConfidence;
+    }
+
+    private Optional<Match> matchCompact(String key, BigDecimal amount, LocalDateTime transferredAt) {
+        String reference = key.substring(0, ReferenceIdGenerator.LENGTH);
+        if (ReferenceIdGenerator.decode(reference) == ReferenceIdGenerator.INVALID) {
+            meterRegistry.counter("zettix.deposit.match.rejected", "reason", "check").increment();
+            log.debug("Memo reference {} fails its check character", key);
+            return Optional.empty();
+        }
+        PendingDeposit deposit = pendingDepositIndex.get(reference);
+        if (deposit == null) {
+            return Optional.empty();
+        }
+        List<Match> scored = new ArrayList<>(1);
+        // Anything after the ID was appended by the bank
+        score(deposit, key.length() == reference.length() ? 1.0 : 0.95, amount, transferredAt, scored);
+        return scored.isEmpty() ? Optional.empty() : Optional.of(record(scored.get(0)));
+    }
+
+    /**
+     * Whether the key starts like a compact ID. Legacy ZETTIX references start with 13 digits of
+     * epoch millis, so a letter among the first {@link ReferenceIdGenerator#LENGTH} characters
+     * tells them apart.
+     */
+    private static boolean isCompactReference(String key) {
+        if (key.length() < ReferenceIdGenerator.LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < ReferenceIdGenerator.LENGTH; i++) {
+            if (key.charAt(i) > '9') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Match record(Match match) {
+        meterRegistry.summary("zettix.deposit.match.confidence").record(match.confidence());
+        return match;
+    }
+
+    private void score(PendingDeposit deposit, double referenceScore, BigDecimal amount,
+                       LocalDateTime transferredAt, List<Match> scored) {
+        if (!hasAmount(deposit, amount)) {
+            return;
+        }
+        scored.add(new Match(deposit, referenceScore * windowScore(deposit, transferredAt)));
+    }
+
+    private static boolean hasAmount(PendingDeposit deposit, BigDecimal amount) {
+        return deposit.amount() != null && deposit.amount().compareTo(amount) == 0;
+    }
+
+    /** 1 inside [created, expires], fading to 0.5 over the grace period on either side. */
+    private double windowScore(PendingDeposit deposit, LocalDateTime transferredAt) {
+        if (transferredAt == null || deposit.createdAt() == null || deposit.expiresAt() == null) {
+            return 0.9;
+        }
+        long outsideMinutes = 0;
+        if (transferredAt.isBefore(deposit.createdAt())) {
+            outsideMinutes = Duration.between(transferredAt, deposit.createdAt()).toMinutes();
+        } else if (transferredAt.isAfter(deposit.expiresAt())) {
+            outsideMinutes = Duration.between(deposit.expiresAt(), transferredAt).toMinutes();
+        }
+        if (outsideMinutes == 0) {
+            return 1.0;
+        }
+        if (windowGraceMinutes <= 0 || outsideMinutes >= windowGraceMinutes) {
+            return 0.5;
+        }
+        return 1.0 - 0.5 * outsideMinutes / windowGraceMinutes;
+    }
+
+    public record Match(PendingDeposit deposit, double confidence) {
+    }
+}
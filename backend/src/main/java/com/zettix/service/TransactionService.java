@@ -7,9 +7,11 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -24,17 +26,23 @@ public class TransactionService {
     private final AccountRepository accountRepository;
     private final UserPurchaseRepository userPurchaseRepository;
     private final VietQRService vietQRService;
+    private final PendingDepositIndex pendingDepositIndex;
+    private final DepositStatusStream depositStatusStream;
+    private final WalletLedgerService walletLedgerService;
+    private final InventoryPool inventoryPool;
+    private final ProductStockCounters productStockCounters;
 
     @Transactional
     public Map<String, Object> createDepositTransaction(User user, BigDecimal amount, String referenceId) {
         try {
             // Create transaction
+            BigDecimal balance = walletLedgerService.getBalance(user.getId());
             Transaction transaction = new Transaction();
             transaction.setUser(user);
             transaction.setTransactionType(Transaction.TransactionType.DEPOSIT);
             transaction.setAmount(amount);
-            transaction.setBalanceBefore(user.getWalletBalance());
-            transaction.setBalanceAfter(user.getWalletBalance());
+            transaction.setBalanceBefore(balance);
+            transaction.setBalanceAfter(balance);
             transaction.setStatus(Transaction.TransactionStatus.PENDING);
             transaction.setReferenceId(referenceId);
             transaction.setDescription("Deposit via VietQR");
@@ -45,10 +53,10 @@ public class TransactionService {
             transaction.setQrCodeData(qrResponse.getQrData());
 
             Transaction savedTransaction = transactionRepository.save(transaction);
+            pendingDepositIndex.addAfterCommit(savedTransaction);
 
             return Map.of(
                     "transaction", savedTransaction,
-                    "qrCode", qrResponse.getQrCodeBase64(),
                     "qrData", qrResponse.getQrData(),
                     "accountNumber", qrResponse.getAccountNumber(),
                     "accountName", qrResponse.getAccountName(),
@@ -64,6 +72,11 @@ public class TransactionService {
     @Transactional
     public Map<String, Object> createPurchaseTransaction(User user, Long productId) {
         try {
+            // Known sold out: reject before any query
+            if (inventoryPool.isSoldOut(productId)) {
+                throw new RuntimeException("Product is out of stock");
+            }
+
             Product product = productRepository.findById(productId)
                     .orElseThrow(() -> new RuntimeException("Product not found"));
 
@@ -71,59 +84,54 @@ public class TransactionService {
                 throw new RuntimeException("Product is not available");
             }
 
-            if (product.getAvailableQuantity() <= 0) {
+            if (productStockCounters.available(product) <= 0) {
                 throw new RuntimeException("Product is out of stock");
             }
 
-            if (user.getWalletBalance().compareTo(product.getPrice()) < 0) {
-                throw new RuntimeException("Insufficient wallet balance");
-            }
+            // Claim an account from the product's reserved pool, or one no concurrent buyer holds
+            Account account = inventoryPool.claim(product)
+                    .orElseThrow(() -> new RuntimeException("No accounts available for this product"));
 
-            // Get available account
-            List<Account> availableAccounts = accountRepository.findAvailableAccountsByProduct(product);
-            if (availableAccounts.isEmpty()) {
-                throw new RuntimeException("No accounts available for this product");
+            // Cheap early rejection from the cached balance; the ledger debit below is what decides
+            if (walletLedgerService.getBalance(user.getId()).compareTo(product.getPrice()) < 0) {
+                throw new RuntimeException("Insufficient wallet balance");
             }
 
-            Account account = availableAccounts.get(0);
-
-            // Create transaction
+            // Create transaction; its id comes from the pooled sequence and the insert waits for the flush
+            LocalDateTime now = LocalDateTime.now();
             Transaction transaction = new Transaction();
             transaction.setUser(user);
             transaction.setTransactionType(Transaction.TransactionType.PURCHASE);
             transaction.setAmount(product.getPrice());
-            transaction.setBalanceBefore(user.getWalletBalance());
-            transaction.setBalanceAfter(user.getWalletBalance().subtract(product.getPrice()));
             transaction.setStatus(Transaction.TransactionStatus.COMPLETED);
             transaction.setDescription("Purchase: " + product.getName());
             transaction.setProduct(product);
             transaction.setAccount(account);
-            transaction.setCompletedAt(LocalDateTime.now());
-
-            Transaction savedTransaction = transactionRepository.save(transaction);
-
-            // Update user wallet
-            user.setWalletBalance(user.getWalletBalance().subtract(product.getPrice()));
-            userRepository.save(user);
+            transaction.setCompletedAt(now);
+
+            // Append the debit; throws and rolls the purchase back if the balance no longer covers it.
+            // The transaction is saved with its balances already set, so it needs no update afterwards
+            BigDecimal balanceAfter = walletLedgerService.debitAndRecord(user.getId(), product.getPrice(),
+                    Transaction.TransactionType.PURCHASE, balance -> {
+                        transaction.setBalanceBefore(balance.add(product.getPrice()));
+                        transaction.setBalanceAfter(balance);
+                        return transactionRepository.save(transaction).getId();
+                    });
+            user.setWalletBalance(balanceAfter);
 
             // Update account status
             account.setStatus(Account.AccountStatus.SOLD);
             account.setSoldToUser(user);
-            account.setSoldAt(LocalDateTime.now());
+            account.setSoldAt(now);
             account.setPurchasePrice(product.getPrice());
             accountRepository.save(account);
 
-            // Update product quantities
-            product.setAvailableQuantity(product.getAvailableQuantity() - 1);
-            product.setSoldQuantity(product.getSoldQuantity() + 1);
-            productRepository.save(product);
-
             // Create user purchase record
             UserPurchase userPurchase = new UserPurchase();
             userPurchase.setUser(user);
             userPurchase.setProduct(product);
             userPurchase.setAccount(account);
-            userPurchase.setTransaction(savedTransaction);
+            userPurchase.setTransaction(transaction);
             userPurchase.setPurchasePrice(product.getPrice());
             userPurchase.setAccountUsername(account.getUsername());
             userPurchase.setAccountPassword(account.getPassword());
@@ -133,15 +141,20 @@ public class TransactionService {
 
             UserPurchase savedPurchase = userPurchaseRepository.save(userPurchase);
 
+            // Product counters are updated in the background once this commits
+            productStockCounters.recordSale(product.getId(), 1);
+
+            // Email and additional info may be null, which Map.of rejects
+            Map<String, Object> accountDetails = new LinkedHashMap<>();
+            accountDetails.put("username", account.getUsername());
+            accountDetails.put("password", account.getPassword());
+            accountDetails.put("email", account.getEmail());
+            accountDetails.put("additionalInfo", account.getAdditionalInfo());
+
             return Map.of(
-                    "transaction", savedTransaction,
+                    "transaction", transaction,
                     "purchase", savedPurchase,
-                    "account", Map.of(
-                            "username", account.getUsername(),
-                            "password", account.getPassword(),
-                            "email", account.getEmail(),
-                            "additionalInfo", account.getAdditionalInfo()
-                    )
+                    "account", accountDetails
             );
 
         } catch (Exception e) {
@@ -150,6 +163,12 @@ public class TransactionService {
         }
     }
 
+    /** The stored VietQR payload of one of the user's deposits. */
+    public String getDepositQrData(User user, String referenceId) {
+        return transactionRepository.findDepositQrCodeData(referenceId, user.getId())
+                .orElseThrow(() -> new RuntimeException("Deposit not found"));
+    }
+
     public List<Transaction> getUserTransactions(User user) {
         return transactionRepository.findByUserOrderByCreatedAtDesc(user);
     }
@@ -161,16 +180,32 @@ public class TransactionService {
     @Transactional
     public boolean processDepositConfirmation(String referenceId, BigDecimal amount) {
         try {
+            if (pendingDepositIndex.isWarm()) {
+                // Most lookups miss; answer those from memory and only load the transaction on a hit
+                PendingDepositIndex.PendingDeposit pending = pendingDepositIndex.get(referenceId);
+                if (pending == null) {
+                    log.warn("No pending deposit for reference: {}", referenceId);
+                    return false;
+                }
+                if (pending.amount().compareTo(amount) != 0) {
+                    log.warn("Amount mismatch for transaction {}: expected {}, got {}",
+                            referenceId, pending.amount(), amount);
+                    return false;
+                }
+            }
+
             Transaction transaction = transactionRepository.findByReferenceId(referenceId)
                     .orElse(null);
 
             if (transaction == null) {
                 log.warn("Transaction not found for reference: {}", referenceId);
+                pendingDepositIndex.remove(referenceId);
                 return false;
             }
 
             if (transaction.getStatus() != Transaction.TransactionStatus.PENDING) {
                 log.warn("Transaction {} is not pending, current status: {}", referenceId, transaction.getStatus());
+                pendingDepositIndex.remove(referenceId);
                 return false;
             }
 
@@ -181,22 +216,34 @@ public class TransactionService {
                 return false;
             }
 
-            // Update transaction
-            transaction.setStatus(Transaction.TransactionStatus.COMPLETED);
-            transaction.setCompletedAt(LocalDateTime.now());
-            transaction.setBalanceAfter(transaction.getUser().getWalletBalance().add(amount));
-            transactionRepository.save(transaction);
+            // Claim the deposit with a conditional update so two confirmations of one email cannot both credit it
+            LocalDateTime now = LocalDateTime.now();
+            if (transactionRepository.completePending(transaction.getId(), now) == 0) {
+                log.warn("Transaction {} was confirmed concurrently", referenceId);
+                pendingDepositIndex.removeAfterCommit(referenceId);
+                return false;
+            }
 
-            // Update user wallet
+            // Append the credit to the user's wallet ledger
             User user = transaction.getUser();
-            user.setWalletBalance(user.getWalletBalance().add(amount));
-            userRepository.save(user);
+            BigDecimal balanceAfter = walletLedgerService.credit(user.getId(), amount,
+                    Transaction.TransactionType.DEPOSIT, transaction.getId());
+
+            // Update transaction, keeping the managed entity in line with the claim above
+            transaction.setStatus(Transaction.TransactionStatus.COMPLETED);
+            transaction.setCompletedAt(now);
+            transaction.setBalanceAfter(balanceAfter);
+            transactionRepository.save(transaction);
+            pendingDepositIndex.removeAfterCommit(referenceId);
+            depositStatusStream.publish(transaction);
 
             log.info("Deposit confirmed for user {}: {} VND", user.getUsername(), amount);
             return true;
 
         } catch (Exception e) {
             log.error("Error processing deposit confirmation: {}", e.getMessage(), e);
+            // Do not commit a claim or credit that only got half way
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
             return false;
         }
     }
@@ -0,0 +1,108 @@
+package com.zettix.service;
+
+import java.math.BigDecimal;
+
+/**
+ * Builds the EMVCo payload of a VietQR deposit code. Tags 00, 01, 38 and 53 only depend on the
+ * receiving account, so they are rendered once together with their running CRC; each payload then
+ * appends the amount (54), country (58), transfer memo (62) and checksum (63) into one buffer.
+ */
+public class VietQRPayloadBuilder {
+
+    static final String MEMO_PREFIX = "NAP TIEN ZETTIX ";
+
+    private static final String SERVICE_CODE = "QRIBFTTA"; // QR Instant Bank Transfer to Account
+    private static final String COUNTRY = "5802VN";
+    private static final String CRC_TAG = "6304";
+    // Tag 62 wraps sub-tag 08, so the memo must leave room for both headers within two length digits
+    private static final int MAX_MEMO_LENGTH = 99 - 4;
+
+    private final String prefix;
+    private final int prefixCrc;
+
+    public VietQRPayloadBuilder(String bankCode, String accountNumber) {
+        if (bankCode == null || bankCode.isEmpty()) throw new IllegalArgumentException("bankCode is empty");
+        if (accountNumber == null || accountNumber.isEmpty()) throw new IllegalArgumentException("accountNumber is empty");
+
+        StringBuilder acquirer = new StringBuilder();
+        appendField(acquirer, "00", bankCode);
+        appendField(acquirer, "01", accountNumber);
+
+        StringBuilder merchantAccount = new StringBuilder();
+        appendField(merchantAccount, "00", "A000000727");
+        appendField(merchantAccount, "01", acquirer);
+        appendField(merchantAccount, "02", SERVICE_CODE);
+
+        StringBuilder sb = new StringBuilder();
+        appendField(sb, "00", "01");
+        // 12 = dynamic code, so the amount and memo are locked in the banking app
+        appendField(sb, "01", "12");
+        appendField(sb, "38", merchantAccount);
+        appendField(sb, "53", "704");
+        this.prefix = sb.toString();
+        this.prefixCrc = EmvCrc16.update(EmvCrc16.INITIAL, prefix);
+    }
+
+    public String build(BigDecimal amount, String referenceId) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) throw new IllegalArgumentException("amount must > 0");
+        if (referenceId == null || referenceId.isEmpty()) throw new IllegalArgumentException("referenceId is empty");
+
+        String amountText = amount.stripTrailingZeros().toPlainString();
+        int referenceLength = countAlphanumeric(referenceId);
+        int memoLength = MEMO_PREFIX.length() + referenceLength;
+        if (amountText.length() > 99 || memoLength > MAX_MEMO_LENGTH) {
+            throw new IllegalArgumentException("amount or referenceId too long for a VietQR payload");
+        }
+
+        StringBuilder sb = new StringBuilder(prefix.length() + amountText.length() + memoLength + 32);
+        sb.append(prefix);
+        appendHeader(sb, "54", amountText.length());
+        sb.append(amountText);
+        sb.append(COUNTRY);
+        appendHeader(sb, "62", memoLength + 4);
+        appendHeader(sb, "08", memoLength);
+        sb.append(MEMO_PREFIX);
+        appendCleanReference(sb, referenceId);
+        sb.append(CRC_TAG);
+
+        int crc = EmvCrc16.update(prefixCrc, sb, prefix.length(), sb.length());
+        EmvCrc16.appendHex(crc, sb);
+        return sb.toString();
+    }
+
+    String prefix() {
+        return prefix;
+    }
+
+    private static void appendField(StringBuilder sb, String tag, CharSequence value) {
+        appendHeader(sb, tag, value.length());
+        sb.append(value);
+    }
+
+    private static void appendHeader(StringBuilder sb, String tag, int length) {
+        sb.append(tag).append((char) ('0' + length / 10)).append((char) ('0' + length % 10));
+    }
+
+    // Keeps ASCII letters and digits, upper-cased, as the memo matcher expects
+    private static void appendCleanReference(StringBuilder sb, String referenceId) {
+        for (int i = 0; i < referenceId.length(); i++) {
+            char c = referenceId.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                sb.append((char) (c - ('a' - 'A')));
+            } else if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                sb.append(c);
+            }
+        }
+    }
+
+    private static int countAlphanumeric(String referenceId) {
+        int count = 0;
+        for (int i = 0; i < referenceId.length(); i++) {
+            char c = referenceId.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,381 @@
+package com.zettix.service;
+
+import com.zettix.entity.Transaction;
+import com.zettix.entity.WalletBalance;
+import com.zettix.entity.WalletBalanceSnapshot;
+import com.zettix.entity.WalletLedgerEntry;
+import com.zettix.repository.UserRepository;
+import com.zettix.repository.WalletBalanceRepository;
+import com.zettix.repository.WalletBalanceSnapshotRepository;
+import com.zettix.repository.WalletLedgerEntryRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Wallet balances kept as an append-only ledger. Every deposit, purchase, refund and admin adjustment
+ * inserts a {@link WalletLedgerEntry}; the ledger is the history and {@link #verify()} recomputes
+ * every balance from it.
+ * <p>
+ * Overdrafts are refused by the database, not by this process: each change also updates the user's
+ * {@link WalletBalance} row, and a debit only matches that row when its balance covers the amount.
+ * The row lock taken by the update is held until the surrounding transaction completes, so two
+ * purchases on any number of application instances cannot both spend the same balance, while
+ * purchases of different users never wait on each other.
+ * <p>
+ * Balances are cached in memory for reads such as the early rejection of a purchase; a debit never
+ * trusts them. Each cached balance carries the revision of the row it came from and replaces an
+ * older one only, so a load that raced a commit cannot bring back a stale balance. Balances changed
+ * by another instance are picked up once the cached copy is older than {@code wallet.cache-ttl-ms}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WalletLedgerService {
+
+    private static final int MAX_REPORTED_MISMATCHES = 100;
+
+    private final WalletLedgerEntryRepository walletLedgerEntryRepository;
+    private final WalletBalanceRepository walletBalanceRepository;
+    private final WalletBalanceSnapshotRepository walletBalanceSnapshotRepository;
+    private final UserRepository userRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${wallet.cache-ttl-ms:2000}")
+    private long cacheTtlMs;
+
+    private final Map<Long, CachedBalance> balances = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("zettix.wallet.balance.cache.size", balances, Map::size).register(meterRegistry);
+    }
+
+    /** Gives users whose balance predates the ledger an opening entry for it. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedOpeningBalances() {
+        try {
+            Integer seeded = new TransactionTemplate(transactionManager).execute(status -> {
+                List<Object[]> rows = userRepository.findBalancesWithoutLedger();
+                LocalDateTime now = LocalDateTime.now();
+                for (Object[] row : rows) {
+                    Long userId = (Long) row[0];
+                    // Only matches a row created for this user while the application was starting
+                    long revision = walletBalanceRepository.credit(userId, (BigDecimal) row[1], now) == 0
+                            ? 0 : walletBalanceRepository.findCurrent(userId).orElseThrow().getRevision();
+                    append(userId, Transaction.TransactionType.ADMIN_ADJUSTMENT, (BigDecimal) row[1], null, revision);
+                }
+                return rows.size();
+            });
+            if (seeded != null && seeded > 0) {
+                log.info("Opened wallet ledger for {} users with existing balances", seeded);
+            }
+        } catch (Exception e) {
+            log.error("Could not seed wallet ledger opening balances: {}", e.getMessage(), e);
+        }
+    }
+
+    public BigDecimal getBalance(Long userId) {
+        CachedBalance cached = balances.get(userId);
+        if (cached != null && System.currentTimeMillis() - cached.loadedAt() < cacheTtlMs) {
+            meterRegistry.counter("zettix.wallet.balance.cache", "result", "hit").increment();
+            return cached.balance();
+        }
+        meterRegistry.counter("zettix.wallet.balance.cache", "result", "miss").increment();
+        WalletBalanceRepository.Current current = walletBalanceRepository.findCurrent(userId).orElse(null);
+        if (current == null) {
+            // Wallets that never changed since the balance rows were introduced have no row yet
+            return ledgerBalance(userId);
+        }
+        return cache(userId, current);
+    }
+
+    /**
+     * Appends a credit and returns the balance it leads to, read from the balance row while the
+     * credit holds its lock. The balance is cached once the surrounding transaction commits.
+     */
+    @Transactional
+    public BigDecimal credit(Long userId, BigDecimal amount, Transaction.TransactionType type, Long transactionId) {
+        requirePositive(amount);
+        if (walletBalanceRepository.credit(userId, amount, LocalDateTime.now()) == 0) {
+            createBalanceRow(userId);
+            walletBalanceRepository.credit(userId, amount, LocalDateTime.now());
+        }
+        WalletBalanceRepository.Current current = walletBalanceRepository.findCurrent(userId).orElseThrow();
+        append(userId, type, amount, transactionId, current.getRevision());
+        cacheOnCommit(userId, current);
+        return current.getBalance();
+    }
+
+    /**
+     * Appends a debit if the balance covers it and returns the balance after it, or throws
+     * "Insufficient wallet balance". The user's balance row stays locked until the surrounding
+     * transaction completes.
+     */
+    @Transactional
+    public BigDecimal debit(Long userId, BigDecimal amount, Transaction.TransactionType type, Long transactionId) {
+        return debitAndRecord(userId, amount, type, balanceAfter -> transactionId);
+    }
+
+    /**
+     * Same as {@link #debit} for a transaction row that records the balance it leads to: {@code record} is
+     * called with the balance after the debit, writes the row and returns its id for the ledger
+     * entry. Lets the row be inserted once with its balances instead of inserted and then updated.
+     */
+    @Transactional
+    public BigDecimal debitAndRecord(Long userId, BigDecimal amount, Transaction.TransactionType type,
+                                     Function<BigDecimal, Long> record) {
+        requirePositive(amount);
+        // No row matched: either the balance does not cover the amount or the wallet has no row yet
+        if (walletBalanceRepository.debit(userId, amount, LocalDateTime.now()) == 0
+                && (!createBalanceRow(userId) || walletBalanceRepository.debit(userId, amount, LocalDateTime.now()) == 0)) {
+            // The cached balance let this debit through, so it is out of date
+            balances.remove(userId);
+            throw new RuntimeException("Insufficient wallet balance");
+        }
+        WalletBalanceRepository.Current current = walletBalanceRepository.findCurrent(userId).orElseThrow();
+        append(userId, type, amount.negate(), record.apply(current.getBalance()), current.getRevision());
+        cacheOnCommit(userId, current);
+        return current.getBalance();
+    }
+
+    /** Credits a positive amount or debits a negative one on an admin's behalf. */
+    @Transactional
+    public BigDecimal adjust(Long userId, BigDecimal amount) {
+        if (amount == null || amount.signum() == 0) {
+            throw new RuntimeException("Adjustment amount must not be zero");
+        }
+        return amount.signum() > 0
+                ? credit(userId, amount, Transaction.TransactionType.ADMIN_ADJUSTMENT, null)
+                : debit(userId, amount.negate(), Transaction.TransactionType.ADMIN_ADJUSTMENT, null);
+    }
+
+    /**
+     * Copies the balance rows changed since their snapshot into the snapshots and refreshes the
+     * materialized {@code users.wallet_balance} of those users. Each change holds the row lock until
+     * it commits, so a row's revision grows in commit order and a committed row at revision n is
+     * exactly the sum of the user's entries up to n, whatever order their ids were drawn in.
+     * Returns the number of users updated.
+     */
+    @Transactional
+    public int takeSnapshots() {
+        List<WalletBalance> changed = walletBalanceRepository.findChangedSinceSnapshot();
+        if (changed.isEmpty()) {
+            return 0;
+        }
+        Map<Long, WalletBalanceSnapshot> snapshots = walletBalanceSnapshotRepository
+                .findAllById(changed.stream().map(WalletBalance::getUserId).toList()).stream()
+                .collect(Collectors.toMap(WalletBalanceSnapshot::getUserId, Function.identity()));
+        LocalDateTime now = LocalDateTime.now();
+        List<WalletBalanceSnapshot> updated = new ArrayList<>(changed.size());
+        for (WalletBalance row : changed) {
+            WalletBalanceSnapshot snapshot = snapshots.get(row.getUserId());
+            if (snapshot == null) {
+                snapshot = new WalletBalanceSnapshot();
+                snapshot.setUserId(row.getUserId());
+            } else if (snapshot.getRevision() >= row.getRevision()) {
+                // Another run got there first
+                continue;
+            }
+            snapshot.setBalance(row.getBalance());
+            snapshot.setRevision(row.getRevision());
+            snapshot.setTakenAt(now);
+            updated.add(snapshot);
+            userRepository.updateWalletBalance(row.getUserId(), row.getBalance());
+        }
+        walletBalanceSnapshotRepository.saveAll(updated);
+        log.info("Wallet snapshots updated for {} users", updated.size());
+        return updated.size();
+    }
+
+    /**
+     * Recomputes every balance from the ledger in one pass over the entries in (user, revision) order and
+     * compares it with the snapshots, the balance rows and the cache. Also reports wallets whose
+     * running balance ever went negative.
+     */
+    @Transactional(readOnly = true)
+    public VerificationReport verify() {
+        Map<Long, WalletBalanceSnapshot> snapshots = new HashMap<>();
+        walletBalanceSnapshotRepository.findAll().forEach(snapshot -> snapshots.put(snapshot.getUserId(), snapshot));
+        Map<Long, BigDecimal> balanceRows = new HashMap<>();
+        walletBalanceRepository.findAll().forEach(row -> balanceRows.put(row.getUserId(), row.getBalance()));
+        List<Mismatch> mismatches = new ArrayList<>();
+        long entries = 0;
+        int users = 0;
+
+        try (Stream<Object[]> rows = walletLedgerEntryRepository.streamAllInLedgerOrder()) {
+            UserTally tally = null;
+            for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+                Long userId = (Long) row[0];
+                if (tally == null || !tally.userId.equals(userId)) {
+                    if (tally != null) {
+                        tally.check(snapshots.remove(tally.userId), balanceRows.get(tally.userId),
+                                cachedBalance(tally.userId), mismatches);
+                        users++;
+                    }
+                    WalletBalanceSnapshot snapshot = snapshots.get(userId);
+                    tally = new UserTally(userId, snapshot == null ? 0 : snapshot.getRevision());
+                }
+                tally.add((Long) row[1], (BigDecimal) row[2]);
+                entries++;
+            }
+            if (tally != null) {
+                tally.check(snapshots.remove(tally.userId), balanceRows.get(tally.userId),
+                        cachedBalance(tally.userId), mismatches);
+                users++;
+            }
+        }
+        // Snapshots of users without a single entry
+        for (WalletBalanceSnapshot orphan : snapshots.values()) {
+            new UserTally(orphan.getUserId(), orphan.getRevision()).check(orphan, null, null, mismatches);
+        }
+
+        List<Mismatch> reported = mismatches.size() > MAX_REPORTED_MISMATCHES
+                ? mismatches.subList(0, MAX_REPORTED_MISMATCHES) : mismatches;
+        log.info("Wallet ledger verified: {} entries, {} users, {} mismatches", entries, users, mismatches.size());
+        return new VerificationReport(entries, users, mismatches.size(), List.copyOf(reported));
+    }
+
+    /** The snapshot plus the entries of later revisions. */
+    private BigDecimal ledgerBalance(Long userId) {
+        WalletBalanceSnapshot snapshot = walletBalanceSnapshotRepository.findById(userId).orElse(null);
+        if (snapshot == null) {
+            return walletLedgerEntryRepository.sumAfter(userId, -1L);
+        }
+        return snapshot.getBalance().add(walletLedgerEntryRepository.sumAfter(userId, snapshot.getRevision()));
+    }
+
+    /**
+     * Creates the user's balance row from the ledger the first time their wallet changes, and returns
+     * false when the row already exists. Creation is serialized on the user row, and the row is looked
+     * up again with a locking read, which sees a row another instance committed after this
+     * transaction's snapshot.
+     */
+    private boolean createBalanceRow(Long userId) {
+        if (walletBalanceRepository.existsById(userId)) {
+            return false;
+        }
+        if (userRepository.lockById(userId) == null) {
+            throw new RuntimeException("User not found");
+        }
+        if (walletBalanceRepository.lockById(userId) != null) {
+            return false;
+        }
+        walletBalanceRepository.saveAndFlush(new WalletBalance(userId, ledgerBalance(userId), 0L, LocalDateTime.now()));
+        return true;
+    }
+
+    private void append(Long userId, Transaction.TransactionType type, BigDecimal amount, Long transactionId,
+                        long revision) {
+        WalletLedgerEntry entry = new WalletLedgerEntry();
+        entry.setUserId(userId);
+        entry.setEntryType(type);
+        entry.setAmount(amount);
+        entry.setTransactionId(transactionId);
+        entry.setRevision(revision);
+        walletLedgerEntryRepository.save(entry);
+    }
+
+    private void cacheOnCommit(Long userId, WalletBalanceRepository.Current current) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache(userId, current);
+                }
+            });
+        } else {
+            cache(userId, current);
+        }
+    }
+
+    /** Caches a balance unless a newer revision is cached already, and returns the balance. */
+    private BigDecimal cache(Long userId, WalletBalanceRepository.Current current) {
+        CachedBalance loaded = new CachedBalance(current.getBalance(), current.getRevision(), System.currentTimeMillis());
+        balances.merge(userId, loaded, (cached, fresh) -> fresh.revision() >= cached.revision() ? fresh : cached);
+        return current.getBalance();
+    }
+
+    private BigDecimal cachedBalance(Long userId) {
+        CachedBalance cached = balances.get(userId);
+        return cached == null ? null : cached.balance();
+    }
+
+    private static void requirePositive(BigDecimal amount) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new RuntimeException("Amount must be positive");
+        }
+    }
+
+    private static final class UserTally {
+        private final Long userId;
+        private final long snapshotRevision;
+        private BigDecimal balance = BigDecimal.ZERO;
+        private BigDecimal balanceAtSnapshot = BigDecimal.ZERO;
+        private BigDecimal lowest = BigDecimal.ZERO;
+
+        private UserTally(Long userId, long snapshotRevision) {
+            this.userId = userId;
+            this.snapshotRevision = snapshotRevision;
+        }
+
+        private void add(long revision, BigDecimal amount) {
+            balance = balance.add(amount);
+            if (revision <= snapshotRevision) {
+                balanceAtSnapshot = balance;
+            }
+            if (balance.compareTo(lowest) < 0) {
+                lowest = balance;
+            }
+        }
+
+        private void check(WalletBalanceSnapshot snapshot, BigDecimal row, BigDecimal cached,
+                           List<Mismatch> mismatches) {
+            if (snapshot != null && snapshot.getBalance().compareTo(balanceAtSnapshot) != 0) {
+                mismatches.add(new Mismatch(userId, "SNAPSHOT", balanceAtSnapshot, snapshot.getBalance()));
+            }
+            if (row != null && row.compareTo(balance) != 0) {
+                mismatches.add(new Mismatch(userId, "ROW", balance, row));
+            }
+            if (cached != null && cached.compareTo(balance) != 0) {
+                mismatches.add(new Mismatch(userId, "CACHE", balance, cached));
+            }
+            if (lowest.signum() < 0) {
+                mismatches.add(new Mismatch(userId, "OVERDRAWN", BigDecimal.ZERO, lowest));
+            }
+        }
+    }
+
+    private record CachedBalance(BigDecimal balance, long revision, long loadedAt) {
+    }
+
+    public record Mismatch(Long userId, String kind, BigDecimal expected, BigDecimal actual) {
+    }
+
+    public record VerificationReport(long entriesScanned, int usersChecked, int mismatchCount,
+                                     List<Mismatch> mismatches) {
+    }
+}
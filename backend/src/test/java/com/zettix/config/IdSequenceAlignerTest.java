@@ -0,0 +1,47 @@
+package com.zettix.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** {@link IdSequenceAligner} against a schema of its own in in-memory H2, with MySQL's lower-case table names. */
+public class IdSequenceAlignerTest {
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:sequences;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE transactions (id BIGINT PRIMARY KEY)");
+        jdbcTemplate.execute("CREATE TABLE transactions_seq (next_val BIGINT)");
+        jdbcTemplate.update("INSERT INTO transactions_seq VALUES (1)");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    public void movesSequencePastExistingIds() {
+        jdbcTemplate.update("INSERT INTO transactions VALUES (41), (42)");
+
+        new IdSequenceAligner(jdbcTemplate).align();
+
+        assertEquals(43L, jdbcTemplate.queryForObject("SELECT next_val FROM transactions_seq", Long.class));
+    }
+
+    @Test
+    public void failsStartupWhenSequenceCannotBeAligned() {
+        jdbcTemplate.execute("DROP TABLE transactions");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> new IdSequenceAligner(jdbcTemplate).align());
+        assertTrue(e.getMessage().contains("transactions_seq"));
+    }
+}
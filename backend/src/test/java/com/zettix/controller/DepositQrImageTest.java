@@ -0,0 +1,93 @@
+package com.zettix.controller;
+
+import com.zettix.entity.User;
+import com.zettix.security.JwtUtil;
+import com.zettix.service.BatchPurchaseService;
+import com.zettix.service.DepositStatusStream;
+import com.zettix.service.FlashSaleGate;
+import com.zettix.service.IdempotencyService;
+import com.zettix.service.ReferenceIdGenerator;
+import com.zettix.service.TransactionService;
+import com.zettix.service.UserService;
+import com.zettix.service.VietQRService;
+import com.zettix.service.WalletLedgerService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class DepositQrImageTest {
+
+    private static final String REFERENCE = "ZETTIX1700000000000ABC123";
+    private static final String PAYLOAD = "00020101021238540010A00000072701240006970436011098895593570208QRIBFTTA"
+            + "530370454061000005802VN62450841NAP TIEN ZETTIX ZETTIX1700000000000ABC12363044384";
+
+    private TransactionService transactionService;
+    private VietQRService vietQRService;
+    private MockMvc mockMvc;
+    private UsernamePasswordAuthenticationToken principal;
+
+    @BeforeEach
+    public void setUp() {
+        transactionService = mock(TransactionService.class);
+        vietQRService = spy(new VietQRService());
+        ReflectionTestUtils.setField(vietQRService, "qrWidth", 200);
+        ReflectionTestUtils.setField(vietQRService, "qrHeight", 200);
+        UserController controller = new UserController(mock(UserService.class), transactionService, vietQRService,
+                mock(WalletLedgerService.class), mock(BatchPurchaseService.class), mock(IdempotencyService.class),
+                mock(FlashSaleGate.class), mock(DepositStatusStream.class), new ReferenceIdGenerator(), mock(JwtUtil.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        User user = new User();
+        user.setId(7L);
+        principal = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+        when(transactionService.getDepositQrData(user, REFERENCE)).thenReturn(PAYLOAD);
+    }
+
+    @Test
+    public void testPngIsServedWithImmutableCaching() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/user/deposits/{referenceId}/qr.png", REFERENCE).principal(principal))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/png"))
+                .andExpect(header().string(HttpHeaders.ETAG, vietQRService.imageTag(PAYLOAD, "png")))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, private, immutable"))
+                .andReturn();
+        byte[] png = result.getResponse().getContentAsByteArray();
+        assertEquals((byte) 0x89, png[0]);
+        assertEquals('P', png[1]);
+    }
+
+    @Test
+    public void testMatchingETagSkipsRendering() throws Exception {
+        String etag = vietQRService.imageTag(PAYLOAD, "svg");
+
+        mockMvc.perform(get("/api/user/deposits/{referenceId}/qr.svg", REFERENCE).principal(principal)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        verify(vietQRService, never()).renderSvg(anyString());
+
+        mockMvc.perform(get("/api/user/deposits/{referenceId}/qr.svg", REFERENCE).principal(principal))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/svg+xml"));
+    }
+
+    @Test
+    public void testUnknownDepositIsRejected() throws Exception {
+        when(transactionService.getDepositQrData(any(), eq("ZETTIXOTHER"))).thenThrow(new RuntimeException("Deposit not found"));
+
+        mockMvc.perform(get("/api/user/deposits/{referenceId}/qr.png", "ZETTIXOTHER").principal(principal))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,94 @@
+package com.zettix.controller;
+
+import com.zettix.entity.User;
+import com.zettix.security.JwtUtil;
+import com.zettix.service.BatchPurchaseService;
+import com.zettix.service.DepositStatusStream;
+import com.zettix.service.FlashSaleGate;
+import com.zettix.service.IdempotencyService;
+import com.zettix.service.ReferenceIdGenerator;
+import com.zettix.service.TransactionService;
+import com.zettix.service.UserService;
+import com.zettix.service.VietQRService;
+import com.zettix.service.WalletLedgerService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/** The flash-sale waiting room answers queued buyers before the idempotency key reaches the database. */
+public class FlashSalePurchaseTest {
+
+    private static final long PRODUCT_ID = 42L;
+
+    private TransactionService transactionService;
+    private IdempotencyService idempotencyService;
+    private FlashSaleGate flashSaleGate;
+    private MockMvc mockMvc;
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        transactionService = mock(TransactionService.class);
+        idempotencyService = mock(IdempotencyService.class);
+        flashSaleGate = mock(FlashSaleGate.class);
+        UserController controller = new UserController(mock(UserService.class), transactionService,
+                mock(VietQRService.class), mock(WalletLedgerService.class), mock(BatchPurchaseService.class),
+                idempotencyService, flashSaleGate, mock(DepositStatusStream.class), new ReferenceIdGenerator(), mock(JwtUtil.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        user = new User();
+        user.setId(7L);
+        when(flashSaleGate.isOpen(PRODUCT_ID)).thenReturn(true);
+        when(idempotencyService.execute(eq(7L), eq("purchase"), anyString(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<ResponseEntity<?>>>getArgument(4).get());
+    }
+
+    @Test
+    public void queuedBuyerIsAnsweredWithoutClaimingTheKey() throws Exception {
+        when(flashSaleGate.enter(PRODUCT_ID, 7L))
+                .thenReturn(new FlashSaleGate.Decision(FlashSaleGate.Outcome.WAITING, 12, 50));
+
+        purchase().andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.position").value(12));
+
+        verify(idempotencyService, never()).execute(any(), any(), any(), any(), any());
+        verifyNoInteractions(transactionService);
+        verify(flashSaleGate, never()).complete(any(), any(), anyBoolean());
+    }
+
+    @Test
+    public void admittedBuyerPurchasesUnderTheKeyAndEndsTheTurn() throws Exception {
+        when(flashSaleGate.enter(PRODUCT_ID, 7L))
+                .thenReturn(new FlashSaleGate.Decision(FlashSaleGate.Outcome.ADMITTED, 0, 50));
+        when(transactionService.createPurchaseTransaction(user, PRODUCT_ID)).thenReturn(Map.of("transactionId", 1L));
+
+        purchase().andExpect(status().isOk());
+
+        verify(idempotencyService).execute(eq(7L), eq("purchase"), eq("key-1"), any(), any());
+        verify(flashSaleGate).complete(PRODUCT_ID, 7L, true);
+    }
+
+    private ResultActions purchase() throws Exception {
+        return mockMvc.perform(post("/api/user/purchase")
+                .principal(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()))
+                .header(IdempotencyService.HEADER, "key-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"productId\": " + PRODUCT_ID + "}"));
+    }
+}
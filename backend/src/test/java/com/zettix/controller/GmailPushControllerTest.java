@@ -0,0 +1,107 @@
+package com.zettix.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zettix.service.GmailPushService;
+import com.zettix.service.GmailService;
+import com.zettix.service.MailSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class GmailPushControllerTest {
+
+    private static final String TOKEN = "local-test-token";
+
+    private GmailService gmailService;
+    private GmailPushService gmailPushService;
+    private MockMvc mockMvc;
+    private LocalPubSubPublisher publisher;
+
+    @BeforeEach
+    public void setUp() {
+        gmailService = mock(GmailService.class);
+        gmailPushService = new GmailPushService(gmailService, mock(MailSource.class), new ObjectMapper());
+        ReflectionTestUtils.setField(gmailPushService, "pushEnabled", true);
+        ReflectionTestUtils.setField(gmailPushService, "verificationToken", TOKEN);
+        mockMvc = MockMvcBuilders.standaloneSetup(new GmailPushController(gmailPushService)).build();
+        publisher = new LocalPubSubPublisher(mockMvc);
+    }
+
+    @Test
+    public void testNotificationTriggersIngestion() throws Exception {
+        publisher.publish(TOKEN, "payments@zettix.com", 123456L).andExpect(status().isNoContent());
+
+        verify(gmailService, timeout(2000)).processNewEmails();
+    }
+
+    @Test
+    public void testInvalidTokenIsRejected() throws Exception {
+        publisher.publish("wrong-token", "payments@zettix.com", 123456L).andExpect(status().isForbidden());
+
+        verify(gmailService, after(200).never()).processNewEmails();
+    }
+
+    @Test
+    public void testUnsetTokenRejectsEveryPush() throws Exception {
+        ReflectionTestUtils.setField(gmailPushService, "verificationToken", "");
+
+        publisher.publish("", "payments@zettix.com", 123456L).andExpect(status().isForbidden());
+        publisher.publish(TOKEN, "payments@zettix.com", 123456L).andExpect(status().isForbidden());
+        mockMvc.perform(post("/api/public/webhooks/gmail")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"message\":{\"data\":\"e30=\",\"messageId\":\"1\"}}"))
+                .andExpect(status().isForbidden());
+
+        verify(gmailService, after(200).never()).processNewEmails();
+    }
+
+    @Test
+    public void testMalformedMessageIsAcknowledged() throws Exception {
+        mockMvc.perform(post("/api/public/webhooks/gmail")
+                        .param("token", TOKEN)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"message\":{\"data\":\"not-base64!\",\"messageId\":\"1\"}}"))
+                .andExpect(status().isNoContent());
+
+        verify(gmailService, after(200).never()).processNewEmails();
+    }
+
+    /** Stand-in for Google Pub/Sub: wraps a Gmail notification in the push envelope and posts it. */
+    static class LocalPubSubPublisher {
+
+        private final MockMvc mockMvc;
+        private final ObjectMapper objectMapper = new ObjectMapper();
+        private long nextMessageId = 1;
+
+        LocalPubSubPublisher(MockMvc mockMvc) {
+            this.mockMvc = mockMvc;
+        }
+
+        ResultActions publish(String token, String emailAddress, long historyId) throws Exception {
+            String notification = objectMapper.writeValueAsString(
+                    Map.of("emailAddress", emailAddress, "historyId", historyId));
+            Map<String, Object> envelope = Map.of(
+                    "message", Map.of(
+                            "data", Base64.getEncoder().encodeToString(notification.getBytes(StandardCharsets.UTF_8)),
+                            "messageId", String.valueOf(nextMessageId++),
+                            "publishTime", "2025-09-15T07:30:00Z"),
+                    "subscription", "projects/zettix/subscriptions/gmail-push-local");
+            return mockMvc.perform(post("/api/public/webhooks/gmail")
+                    .param("token", token)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(envelope)));
+        }
+    }
+}
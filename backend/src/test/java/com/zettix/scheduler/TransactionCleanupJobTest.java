@@ -0,0 +1,67 @@
+package com.zettix.scheduler;
+
+import com.zettix.entity.Transaction;
+import com.zettix.repository.TransactionRepository;
+import com.zettix.service.DepositStatusStream;
+import com.zettix.service.IdempotencyService;
+import com.zettix.service.PendingDepositIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class TransactionCleanupJobTest {
+
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+    private final PendingDepositIndex pendingDepositIndex = mock(PendingDepositIndex.class);
+    private final DepositStatusStream depositStatusStream = mock(DepositStatusStream.class);
+    private final TransactionCleanupJob job = new TransactionCleanupJob(transactionRepository, pendingDepositIndex,
+            depositStatusStream, mock(IdempotencyService.class), mock(PlatformTransactionManager.class));
+
+    @Test
+    public void expiresDepositsStillPending() throws Exception {
+        Transaction deposit = deposit(1L, "ZETTIXAAA111");
+        when(transactionRepository.findExpiredTransactions(any())).thenReturn(List.of(deposit));
+        when(transactionRepository.expirePending(eq(1L), any())).thenReturn(1);
+
+        job.execute(null);
+
+        assertEquals(Transaction.TransactionStatus.EXPIRED, deposit.getStatus());
+        verify(pendingDepositIndex).remove("ZETTIXAAA111");
+        verify(depositStatusStream).publish(deposit);
+        verify(transactionRepository, never()).save(any());
+    }
+
+    @Test
+    public void leavesDepositConfirmedAfterItWasRead() throws Exception {
+        Transaction deposit = deposit(1L, "ZETTIXAAA111");
+        when(transactionRepository.findExpiredTransactions(any())).thenReturn(List.of(deposit));
+        // A confirmation completed the deposit between the read and the update
+        when(transactionRepository.expirePending(eq(1L), any())).thenReturn(0);
+
+        job.execute(null);
+
+        assertEquals(Transaction.TransactionStatus.PENDING, deposit.getStatus());
+        verify(pendingDepositIndex, never()).remove(any());
+        verify(depositStatusStream, never()).publish(any());
+        verify(transactionRepository, never()).save(any());
+    }
+
+    private static Transaction deposit(Long id, String referenceId) {
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setReferenceId(referenceId);
+        transaction.setTransactionType(Transaction.TransactionType.DEPOSIT);
+        transaction.setAmount(new BigDecimal("100000"));
+        transaction.setStatus(Transaction.TransactionStatus.PENDING);
+        transaction.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+        return transaction;
+    }
+}
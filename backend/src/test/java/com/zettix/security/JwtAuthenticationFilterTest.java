@@ -0,0 +1,84 @@
+package com.zettix.security;
+
+import com.zettix.entity.User;
+import com.zettix.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/** Stream tickets open the event stream of their own deposit and nothing else. */
+public class JwtAuthenticationFilterTest {
+
+    private static final String REFERENCE = "0K4XR3Z5T8A";
+
+    private JwtUtil jwtUtil;
+    private JwtAuthenticationFilter filter;
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "test-secret-of-at-least-thirty-two-bytes");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 3_600_000L);
+        ReflectionTestUtils.setField(jwtUtil, "streamTicketExpiration", 60_000L);
+        user = new User();
+        user.setUsername("buyer");
+        user.setIsActive(true);
+        UserService userService = mock(UserService.class);
+        when(userService.loadUserByUsername("buyer")).thenReturn(user);
+        filter = new JwtAuthenticationFilter(jwtUtil, userService);
+    }
+
+    @AfterEach
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void ticketOpensTheStreamOfItsDeposit() throws Exception {
+        String ticket = jwtUtil.generateStreamTicket(user, REFERENCE);
+
+        assertTrue(authenticates(withTicket("/api/user/deposits/" + REFERENCE + "/events", ticket)));
+    }
+
+    @Test
+    public void ticketIsRefusedEverywhereElse() throws Exception {
+        String ticket = jwtUtil.generateStreamTicket(user, REFERENCE);
+
+        assertFalse(authenticates(withTicket("/api/user/deposits/0K4XR3Z5T8B/events", ticket)));
+        assertFalse(authenticates(withTicket("/api/admin/transactions/events", ticket)));
+        MockHttpServletRequest bearer = new MockHttpServletRequest("GET", "/api/user/profile");
+        bearer.addHeader("Authorization", "Bearer " + ticket);
+        assertFalse(authenticates(bearer));
+    }
+
+    @Test
+    public void regularTokenIsNotAcceptedAsParameter() throws Exception {
+        String token = jwtUtil.generateToken(user);
+
+        assertFalse(authenticates(withTicket("/api/user/deposits/" + REFERENCE + "/events", token)));
+        MockHttpServletRequest bearer = new MockHttpServletRequest("GET", "/api/user/profile");
+        bearer.addHeader("Authorization", "Bearer " + token);
+        assertTrue(authenticates(bearer));
+    }
+
+    private static MockHttpServletRequest withTicket(String uri, String ticket) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setParameter("ticket", ticket);
+        return request;
+    }
+
+    private boolean authenticates(MockHttpServletRequest request) throws Exception {
+        SecurityContextHolder.clearContext();
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication() != null;
+    }
+}
@@ -0,0 +1,84 @@
+package com.zettix.service;
+
+import com.zettix.entity.Account;
+import com.zettix.entity.Product;
+import com.zettix.repository.AccountRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Per-sale latency of {@link AccountAllocator} against the old load-every-available-account lookup
+ * as the stock of a product grows. Needs a database, so it runs against H2 in MySQL mode rather than
+ * under JMH. Not run by surefire; start it with {@code mvn test -Dtest=AccountAllocatorBenchmark}.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+public class AccountAllocatorBenchmark {
+
+    private static final int[] STOCK_SIZES = {1_000, 10_000, 50_000};
+    private static final int WARMUP_SALES = 100;
+    private static final int ALLOCATOR_SALES = 300;
+    private static final int LEGACY_SALES = 20;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private AccountAllocator accountAllocator;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void claimLatencyStaysFlatAsStockGrows() {
+        List<Double> allocatorMicros = new ArrayList<>();
+        System.out.printf("%10s %16s %16s%n", "stock", "allocator us/op", "legacy us/op");
+        for (int stock : STOCK_SIZES) {
+            Product allocated = fixtures.product("benchmark", Product.ProductType.ACCOUNT, new BigDecimal("1000.00"), stock);
+            measure(allocated, WARMUP_SALES, product -> accountAllocator.claim(product).orElseThrow());
+            double allocator = measure(allocated, ALLOCATOR_SALES,
+                    product -> accountAllocator.claim(product).orElseThrow());
+
+            Product legacy = fixtures.product("benchmark", Product.ProductType.ACCOUNT, new BigDecimal("1000.00"), stock);
+            double loadAll = measure(legacy, LEGACY_SALES,
+                    product -> accountRepository.findAvailableAccountsByProduct(product).get(0));
+
+            allocatorMicros.add(allocator);
+            System.out.printf("%10d %16.1f %16.1f%n", stock, allocator, loadAll);
+        }
+        double smallest = allocatorMicros.get(0);
+        double largest = allocatorMicros.get(allocatorMicros.size() - 1);
+        assertTrue(largest < smallest * 3, "allocator latency grew with stock: " + allocatorMicros);
+    }
+
+    /** Mean microseconds per sale, each sale claiming an account and marking it sold in its own transaction. */
+    private double measure(Product product, int sales, Function<Product, Account> pick) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long start = System.nanoTime();
+        for (int i = 0; i < sales; i++) {
+            transactionTemplate.executeWithoutResult(status -> {
+                Account account = pick.apply(product);
+                account.setStatus(Account.AccountStatus.SOLD);
+                account.setSoldAt(LocalDateTime.now());
+            });
+        }
+        return (System.nanoTime() - start) / 1_000.0 / sales;
+    }
+}
@@ -0,0 +1,156 @@
+package com.zettix.service;
+
+import com.zettix.entity.Account;
+import com.zettix.entity.Product;
+import com.zettix.repository.AccountRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Claims accounts of one product from many threads against an in-memory database in MySQL mode.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+public class AccountAllocatorTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private AccountAllocator accountAllocator;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private ProductStockCounters productStockCounters;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void concurrentBuyersNeverGetTheSameAccount() throws Exception {
+        Product product = fixtures.product("allocator", Product.ProductType.ACCOUNT, new BigDecimal("1000.00"), 300);
+        Set<Long> sold = ConcurrentHashMap.newKeySet();
+        AtomicInteger soldOut = new AtomicInteger();
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        Long accountId = sell(product);
+                        if (accountId == null) {
+                            soldOut.incrementAndGet();
+                        } else {
+                            assertTrue(sold.add(accountId), "account " + accountId + " sold twice");
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(300, sold.size());
+        assertEquals(100, soldOut.get());
+        assertEquals(0L, accountRepository.countAvailableAccountsByProduct(product));
+    }
+
+    @Test
+    public void claimSkipsAnAccountHeldByAnotherTransaction() throws Exception {
+        Product product = fixtures.product("allocator", Product.ProductType.ACCOUNT, new BigDecimal("1000.00"), 2);
+        CountDownLatch claimed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // Hold a row lock on the oldest account, as a buyer part-way through checkout would
+            Long oldest = accountRepository.findAvailableIdsByProduct(product.getId(), PageRequest.of(0, 1)).get(0);
+            Future<Long> holder = executor.submit(() -> new TransactionTemplate(transactionManager).execute(status -> {
+                Long id = accountRepository.lockAvailable(List.of(oldest)).get(0).getId();
+                claimed.countDown();
+                awaitQuietly(release);
+                return id;
+            }));
+            assertTrue(claimed.await(10, TimeUnit.SECONDS));
+
+            long start = System.nanoTime();
+            Long other = new TransactionTemplate(transactionManager)
+                    .execute(status -> accountAllocator.claim(product).orElseThrow().getId());
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000, "claim waited on a locked row");
+
+            release.countDown();
+            assertNotEquals(holder.get(), other);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void singleStatementClaimLocksTheOldestAccounts() {
+        Product product = fixtures.product("allocator", Product.ProductType.ACCOUNT, new BigDecimal("1000.00"), 5);
+        List<Long> oldest = accountRepository.findAvailableIdsByProduct(product.getId(), PageRequest.of(0, 3));
+
+        // Uncontended, so H2 returns the same rows as a database that skips before the limit
+        ReflectionTestUtils.setField(accountAllocator, "skipLockedBeforeLimit", true);
+        try {
+            List<Long> claimed = new TransactionTemplate(transactionManager).execute(status ->
+                    accountAllocator.claim(product, 3).stream().map(Account::getId).toList());
+            assertEquals(oldest, claimed);
+        } finally {
+            ReflectionTestUtils.setField(accountAllocator, "skipLockedBeforeLimit", false);
+        }
+    }
+
+    private Long sell(Product product) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            Account account = accountAllocator.claim(product).orElse(null);
+            if (account == null) {
+                return null;
+            }
+            account.setStatus(Account.AccountStatus.SOLD);
+            account.setSoldAt(LocalDateTime.now());
+            productStockCounters.recordSale(product.getId(), 1);
+            return account.getId();
+        });
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
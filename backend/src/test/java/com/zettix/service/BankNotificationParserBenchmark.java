@@ -0,0 +1,66 @@
+package com.zettix.service;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link BankNotificationParser} with the old regex parser over the corpus in
+ * {@link BankNotificationParserCorpusTest}. Not run by surefire; start it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.zettix.service.BankNotificationParserBenchmark}
+ * or run {@link #main(String[])} from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BankNotificationParserBenchmark {
+
+    private final String[] corpus = BankNotificationParserCorpusTest.CORPUS.toArray(new String[0]);
+    private final BankNotificationParser parser = new BankNotificationParser();
+    private final LegacyBankNotificationParser legacy = new LegacyBankNotificationParser();
+
+    @Setup
+    public void silenceParserLog() {
+        // The legacy copy does not log; keep console output out of the comparison
+        ((Logger) LoggerFactory.getLogger(BankNotificationParser.class)).setLevel(Level.OFF);
+    }
+
+    @Benchmark
+    public void legacyRegex(Blackhole blackhole) {
+        for (String body : corpus) {
+            blackhole.consume(legacy.parse(body));
+        }
+    }
+
+    @Benchmark
+    public void singlePass(Blackhole blackhole) {
+        for (String body : corpus) {
+            blackhole.consume(parser.parse(body));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BankNotificationParserBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
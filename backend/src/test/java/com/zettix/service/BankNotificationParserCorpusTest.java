@@ -0,0 +1,110 @@
+package com.zettix.service;
+
+import com.zettix.service.BankNotificationParser.ParsedNotification;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BankNotificationParserCorpusTest {
+
+    private static final String REF = "ZETTIX1726385400123";
+
+    /** Samples from GmailServiceParsingTest and EmailAutoConfirmTest, plus edge cases the regexes disagreed on. */
+    static final List<String> CORPUS = List.of(
+            // GmailServiceParsingTest
+            "Tài khoản: 9889559357\nSố tiền: 100,000 VND\nNội dung: NAP TIEN ZETTIX ZETTIX123456\nThời gian: 15/09/2025 01:30:00",
+            "Số tài khoản: 9889559357\nSố tiền: 50,000\nDiễn giải: NAP TIEN ZETTIX ABC123\nNgày: 15/09/2025 14:30:00",
+            "TK: 9889559357\n+100,000 VND\nContent: NAP TIEN ZETTIX XYZ789\nTime: 15/09/2025 08:45:00",
+            "Account:   9889559357  \nAmount: 200,000\nMemo:  NAP TIEN ZETTIX   DEF456  \n",
+
+            // EmailAutoConfirmTest
+            "Quý khách vừa thực hiện giao dịch chuyển tiền\n" +
+                    "Tài khoản: 9889559357\n" +
+                    "Số tiền: 100,000 VND\n" +
+                    "Nội dung: NAP TIEN ZETTIX " + REF + "\n" +
+                    "Thời gian: 15/09/2025 14:30:00\n" +
+                    "Số dư: 5,500,000 VND",
+            "TK: 9889559357\n" +
+                    "ST: 100,000 VND\n" +
+                    "ND: NAP TIEN ZETTIX " + REF + "\n" +
+                    "TG: 15/09/2025 14:30:00",
+            "Số tài khoản:   9889559357  \n" +
+                    "Số tiền:  100,000\n" +
+                    "Diễn giải:  NAP TIEN ZETTIX   " + REF + "  \n" +
+                    "Ngày: 15/09/2025 14:30:00",
+            "Account: 9889559357\n" +
+                    "Amount: 100,000 VND\n" +
+                    "Content: NAP TIEN ZETTIX " + REF + "\n" +
+                    "Time: 15/09/2025 14:30:00",
+
+            // Later, higher-priority label wins over an earlier fallback label
+            "Account: 1111111111\nTài khoản: 9889559357\nAmount: 5,000\nSố tiền: 20,000 VND",
+            // First "Số tiền" has no VND, a later one does
+            "Tài khoản: 9889559357\nSố tiền: 1,000\nSố tiền: 2,000 VND",
+            // Signed amount only, memo without the ZETTIX prefix is cleaned
+            "TK : 9889559357\n-75,000 VND\nNội dung: chuyen tien an trua #42",
+            // ZETTIX without the NAP TIEN prefix, reference only found as a bare token
+            "TK:9889559357\nSố tiền: 30,000 VND\nNội dung: ck ZETTIXABC99 cam on",
+            "TK: 9889559357\nSố tiền: 30,000 VND\nGhi chu NAP TIEN ZETTIX  Q7W8",
+            // Value on the next line after the colon
+            "Tài khoản:\n9889559357\nSố tiền:\n10,000 VND\nNội dung:\nNAP TIEN ZETTIX NL1",
+            // Required fields missing
+            "Số dư: 5,500,000 VND",
+            "Tài khoản: 9889559357\nSố tiền: , VND",
+            "",
+            // Unparseable date
+            "Tài khoản: 9889559357\nSố tiền: 10,000 VND\nThời gian: hôm nay"
+    );
+
+    private final BankNotificationParser parser = new BankNotificationParser();
+    private final LegacyBankNotificationParser legacy = new LegacyBankNotificationParser();
+
+    @Test
+    public void matchesLegacyParserOnCorpus() {
+        LocalDateTime before = LocalDateTime.now();
+        for (String body : CORPUS) {
+            ParsedNotification expected = legacy.parse(body);
+            ParsedNotification actual = parser.parse(body);
+            if (expected == null) {
+                assertNull(actual, body);
+                continue;
+            }
+            assertNotNull(actual, body);
+            assertEquals(expected.getAccountNumber(), actual.getAccountNumber(), body);
+            assertEquals(expected.getAmount(), actual.getAmount(), body);
+            assertEquals(expected.getReferenceCode(), actual.getReferenceCode(), body);
+            // Both fall back to now() for unparseable dates, so only compare dates taken from the body
+            if (expected.getTransactionDate().isBefore(before)) {
+                assertEquals(expected.getTransactionDate(), actual.getTransactionDate(), body);
+            }
+        }
+    }
+
+    @Test
+    public void parsesStandardNotification() {
+        ParsedNotification parsed = parser.parse(CORPUS.get(4));
+
+        assertEquals("9889559357", parsed.getAccountNumber());
+        assertEquals(new BigDecimal("100000"), parsed.getAmount());
+        assertEquals(REF, parsed.getReferenceCode());
+        assertEquals(LocalDateTime.of(2025, 9, 15, 14, 30), parsed.getTransactionDate());
+    }
+
+    @Test
+    public void readsMemoAndDateFromCrlfBodies() {
+        ParsedNotification parsed = parser.parse(
+                "Tài khoản: 9889559357\r\nSố tiền: 100,000 VND\r\nNội dung: NAP TIEN ZETTIX ABC123\r\nThời gian: 15/09/2025 14:30:00\r\n");
+
+        assertEquals("ABC123", parsed.getReferenceCode());
+        assertEquals(LocalDateTime.of(2025, 9, 15, 14, 30), parsed.getTransactionDate());
+    }
+
+    @Test
+    public void returnsNullForNullBody() {
+        assertNull(parser.parse(null));
+    }
+}
@@ -0,0 +1,124 @@
+package com.zettix.service;
+
+import com.zettix.dto.request.BatchPurchaseRequest;
+import com.zettix.entity.Account;
+import com.zettix.entity.Product;
+import com.zettix.entity.Transaction;
+import com.zettix.entity.User;
+import com.zettix.entity.WalletLedgerEntry;
+import com.zettix.repository.AccountRepository;
+import com.zettix.repository.ProductRepository;
+import com.zettix.repository.TransactionRepository;
+import com.zettix.repository.UserPurchaseRepository;
+import com.zettix.repository.WalletLedgerEntryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+public class BatchPurchaseServiceTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private BatchPurchaseService batchPurchaseService;
+
+    @Autowired
+    private WalletLedgerService walletLedgerService;
+
+    @Autowired
+    private ProductStockCounters productStockCounters;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private UserPurchaseRepository userPurchaseRepository;
+
+    @Autowired
+    private WalletLedgerEntryRepository walletLedgerEntryRepository;
+
+    @Test
+    public void buysEveryLineInOneOrder() {
+        User user = fixtures.user("batch", new BigDecimal("100000.00"));
+        Product keys = fixtures.product("batch", Product.ProductType.LICENSE_KEY, new BigDecimal("5000.00"), 10);
+        Product games = fixtures.product("batch", Product.ProductType.LICENSE_KEY, new BigDecimal("20000.00"), 3);
+
+        Map<String, Object> result = batchPurchaseService.purchase(user,
+                List.of(item(keys, 3), item(games, 2), item(keys, 1)));
+
+        @SuppressWarnings("unchecked")
+        List<Long> transactionIds = (List<Long>) result.get("transactionIds");
+        assertEquals(6, transactionIds.size());
+        assertEquals(0, new BigDecimal("60000.00").compareTo((BigDecimal) result.get("totalAmount")));
+        assertEquals(0, new BigDecimal("40000.00").compareTo(walletLedgerService.getBalance(user.getId())));
+
+        List<Transaction> transactions = transactionRepository.findAllById(transactionIds);
+        assertEquals(6, transactions.size());
+        assertTrue(transactions.stream().allMatch(tx -> tx.getStatus() == Transaction.TransactionStatus.COMPLETED));
+        assertEquals(6, userPurchaseRepository.findUserPurchases(user).size());
+
+        // One debit for the order, linked to its first transaction
+        List<WalletLedgerEntry> debits = walletLedgerEntryRepository.findAll().stream()
+                .filter(entry -> entry.getUserId().equals(user.getId()) && entry.getAmount().signum() < 0)
+                .toList();
+        assertEquals(1, debits.size());
+        assertEquals(transactionIds.get(0), debits.get(0).getTransactionId());
+
+        assertEquals(4, accountRepository.findByProductAndStatus(keys, Account.AccountStatus.SOLD).size());
+        assertEquals(2, accountRepository.findByProductAndStatus(games, Account.AccountStatus.SOLD).size());
+        productStockCounters.flush();
+        assertEquals(6, productRepository.findById(keys.getId()).orElseThrow().getAvailableQuantity());
+        assertEquals(2, productRepository.findById(games.getId()).orElseThrow().getSoldQuantity());
+    }
+
+    @Test
+    public void oneFailingLineRollsBackTheWholeOrder() {
+        User user = fixtures.user("batch", new BigDecimal("100000.00"));
+        Product keys = fixtures.product("batch", Product.ProductType.LICENSE_KEY, new BigDecimal("5000.00"), 10);
+        Product games = fixtures.product("batch", Product.ProductType.LICENSE_KEY, new BigDecimal("20000.00"), 1);
+
+        RuntimeException error = assertThrows(RuntimeException.class, () ->
+                batchPurchaseService.purchase(user, List.of(item(keys, 2), item(games, 2))));
+        assertTrue(error.getMessage().contains("Not enough stock"));
+
+        assertEquals(0, new BigDecimal("100000.00").compareTo(walletLedgerService.getBalance(user.getId())));
+        assertEquals(10, accountRepository.findByProductAndStatus(keys, Account.AccountStatus.AVAILABLE).size());
+        assertTrue(userPurchaseRepository.findUserPurchases(user).isEmpty());
+    }
+
+    @Test
+    public void orderBeyondBalanceIsRejected() {
+        User user = fixtures.user("batch", new BigDecimal("9000.00"));
+        Product keys = fixtures.product("batch", Product.ProductType.LICENSE_KEY, new BigDecimal("5000.00"), 10);
+
+        RuntimeException error = assertThrows(RuntimeException.class, () ->
+                batchPurchaseService.purchase(user, List.of(item(keys, 2))));
+        assertTrue(error.getMessage().contains("Insufficient wallet balance"));
+        assertEquals(10, accountRepository.findByProductAndStatus(keys, Account.AccountStatus.AVAILABLE).size());
+    }
+
+    private static BatchPurchaseRequest.Item item(Product product, int quantity) {
+        BatchPurchaseRequest.Item item = new BatchPurchaseRequest.Item();
+        item.setProductId(product.getId());
+        item.setQuantity(quantity);
+        return item;
+    }
+}
@@ -0,0 +1,103 @@
+package com.zettix.service;
+
+import com.zettix.controller.UserController;
+import com.zettix.entity.Transaction;
+import com.zettix.entity.User;
+import com.zettix.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+public class DepositStatusStreamTest {
+
+    private static final String EVENTS = "/api/user/deposits/{referenceId}/events";
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private UserController userController;
+
+    @Autowired
+    private DepositStatusStream depositStatusStream;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(userController).build();
+    }
+
+    @Test
+    public void confirmationIsPushedToOpenStream() throws Exception {
+        User user = fixtures.user("stream");
+        Transaction deposit = fixtures.pendingDeposit(user, new BigDecimal("50000.00"));
+
+        MvcResult result = mockMvc.perform(get(EVENTS, deposit.getReferenceId()).principal(authenticate(user)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals(1, depositStatusStream.subscriberCount(deposit.getReferenceId()));
+        assertTrue(result.getResponse().getContentAsString().contains("\"status\":\"PENDING\""));
+
+        assertTrue(transactionService.processDepositConfirmation(deposit.getReferenceId(), new BigDecimal("50000.00")));
+
+        result.getAsyncResult(2000);
+        String body = result.getResponse().getContentAsString();
+        assertTrue(body.contains("event:status"), body);
+        assertTrue(body.contains("\"status\":\"COMPLETED\""), body);
+        assertTrue(body.contains("\"balanceAfter\":50000"), body);
+        assertEquals(0, depositStatusStream.subscriberCount(deposit.getReferenceId()));
+    }
+
+    @Test
+    public void settledDepositGetsFinalStatusAndClosedStream() throws Exception {
+        User user = fixtures.user("stream");
+        Transaction deposit = fixtures.pendingDeposit(user, new BigDecimal("20000.00"));
+        deposit.setStatus(Transaction.TransactionStatus.EXPIRED);
+        transactionRepository.save(deposit);
+
+        MvcResult result = mockMvc.perform(get(EVENTS, deposit.getReferenceId()).principal(authenticate(user)))
+                .andReturn();
+        result.getAsyncResult(2000);
+
+        assertTrue(result.getResponse().getContentAsString().contains("\"status\":\"EXPIRED\""));
+        assertEquals(0, depositStatusStream.subscriberCount(deposit.getReferenceId()));
+    }
+
+    @Test
+    public void otherUsersDepositIsRejected() throws Exception {
+        Transaction deposit = fixtures.pendingDeposit(fixtures.user("stream"), new BigDecimal("30000.00"));
+        User stranger = fixtures.user("stream");
+
+        mockMvc.perform(get(EVENTS, deposit.getReferenceId()).principal(authenticate(stranger)))
+                .andExpect(status().isBadRequest());
+        assertEquals(0, depositStatusStream.subscriberCount(deposit.getReferenceId()));
+    }
+
+    private static UsernamePasswordAuthenticationToken authenticate(User user) {
+        return new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+    }
+}
@@ -22,6 +22,9 @@ public class EmailAutoConfirmTest {
 
     @Autowired
     private VietQRService vietQRService;
+
+    @Autowired
+    private ReferenceIdGenerator referenceIdGenerator;
     
     @Autowired
     private GmailService gmailService;
@@ -32,7 +35,7 @@ public class EmailAutoConfirmTest {
             System.out.println("=== Test Email Auto-Confirm Flow ===");
             
             // 1. Tạo QR code và reference ID
-            String referenceId = vietQRService.generateReferenceId();
+            String referenceId = referenceIdGenerator.next();
             BigDecimal amount = new BigDecimal("100000");
             
             VietQRService.VietQRResponse response = vietQRService.generateQRCode(amount, referenceId);
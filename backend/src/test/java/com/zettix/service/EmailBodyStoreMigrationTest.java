@@ -0,0 +1,53 @@
+package com.zettix.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+public class EmailBodyStoreMigrationTest {
+
+    @Autowired
+    private EmailBodyStore emailBodyStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void movesBodiesOutOfLegacyColumn() {
+        // The schema Hibernate creates has no body column, as on a database created after the move
+        jdbcTemplate.execute("ALTER TABLE email_transactions ADD COLUMN body CLOB");
+        try {
+            jdbcTemplate.update("INSERT INTO email_transactions (email_id, body, is_processed) VALUES (?, ?, false)",
+                    "legacy-1", "Số tiền: 100,000 VND");
+
+            emailBodyStore.migrateLegacyBodies();
+
+            Long id = jdbcTemplate.queryForObject("SELECT id FROM email_transactions WHERE email_id = ?", Long.class, "legacy-1");
+            assertEquals("Số tiền: 100,000 VND", emailBodyStore.getWithBody(id).getBody());
+            assertNull(jdbcTemplate.queryForObject("SELECT body FROM email_transactions WHERE id = ?", String.class, id));
+            assertTrue(hasBodyColumn());
+
+            // Nothing left to move on the next start, so the column goes and later starts skip the scan
+            emailBodyStore.migrateLegacyBodies();
+
+            assertFalse(hasBodyColumn());
+            assertEquals("Số tiền: 100,000 VND", emailBodyStore.getWithBody(id).getBody());
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE email_transactions DROP COLUMN IF EXISTS body");
+        }
+    }
+
+    private boolean hasBodyColumn() {
+        Integer columns = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS " +
+                "WHERE UPPER(TABLE_NAME) = 'EMAIL_TRANSACTIONS' AND UPPER(COLUMN_NAME) = 'BODY'", Integer.class);
+        return columns != null && columns > 0;
+    }
+}
@@ -0,0 +1,33 @@
+package com.zettix.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmailBodyStoreTest {
+
+    @Test
+    public void roundTripsNotificationBody() {
+        String body = ("Quý khách vừa thực hiện giao dịch chuyển tiền\n" +
+                "Tài khoản: 9889559357\n" +
+                "Số tiền: 100,000 VND\n" +
+                "Nội dung: NAP TIEN ZETTIX ZETTIX123456\n" +
+                "Thời gian: 15/09/2025 14:30:00\n").repeat(20);
+        byte[] raw = body.getBytes(StandardCharsets.UTF_8);
+
+        byte[] compressed = EmailBodyStore.compress(raw);
+
+        assertTrue(compressed.length < raw.length / 4);
+        assertEquals(body, EmailBodyStore.decompress(compressed, raw.length));
+    }
+
+    @Test
+    public void rejectsCorruptBody() {
+        byte[] compressed = EmailBodyStore.compress("Số tiền: 100,000 VND".getBytes(StandardCharsets.UTF_8));
+        compressed[compressed.length / 2] ^= 0x5A;
+
+        assertThrows(RuntimeException.class, () -> EmailBodyStore.decompress(compressed, 64));
+    }
+}
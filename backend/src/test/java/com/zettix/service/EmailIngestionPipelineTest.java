@@ -0,0 +1,118 @@
+package com.zettix.service;
+
+import com.zettix.entity.EmailTransaction;
+import com.zettix.service.MailSource.MailMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmailIngestionPipelineTest {
+
+    private EmailIngestionPipeline pipeline;
+
+    @AfterEach
+    public void tearDown() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    public void confirmsEachReferenceInArrivalOrder() {
+        Map<String, List<String>> confirmedByReference = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> inFlightByReference = new ConcurrentHashMap<>();
+        List<String> overlaps = Collections.synchronizedList(new ArrayList<>());
+
+        pipeline = newPipeline(ids -> jitter(), transaction -> {
+            AtomicInteger inFlight = inFlightByReference.computeIfAbsent(transaction.getReferenceCode(), ref -> new AtomicInteger());
+            if (inFlight.incrementAndGet() > 1) {
+                overlaps.add(transaction.getEmailId());
+            }
+            jitter();
+            confirmedByReference.computeIfAbsent(transaction.getReferenceCode(), ref -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(transaction.getEmailId());
+            inFlight.decrementAndGet();
+        });
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            ids.add("msg-" + i);
+        }
+
+        assertTrue(pipeline.ingest(ids));
+
+        assertTrue(overlaps.isEmpty(), "Same reference confirmed concurrently: " + overlaps);
+        int confirmed = 0;
+        for (Map.Entry<String, List<String>> entry : confirmedByReference.entrySet()) {
+            List<String> order = entry.getValue();
+            for (int i = 1; i < order.size(); i++) {
+                assertTrue(index(order.get(i - 1)) < index(order.get(i)), entry.getKey() + " out of order: " + order);
+            }
+            confirmed += order.size();
+        }
+        // Every tenth message is skipped by the parser
+        assertEquals(540, confirmed);
+    }
+
+    @Test
+    public void reportsFailureWhenMessagesCannotBeFetched() {
+        AtomicInteger confirmed = new AtomicInteger();
+        pipeline = newPipeline(ids -> {
+            if (ids.contains("msg-3")) {
+                throw new IllegalStateException("Gmail unavailable");
+            }
+        }, transaction -> confirmed.incrementAndGet());
+
+        assertFalse(pipeline.ingest(List.of("msg-1", "msg-2", "msg-3", "msg-4", "msg-5")));
+        // Fetch batches hold two ids, so msg-3 and msg-4 fail together
+        assertEquals(3, confirmed.get());
+    }
+
+    private EmailIngestionPipeline newPipeline(Consumer<List<String>> onFetch, Consumer<EmailTransaction> confirmer) {
+        return new EmailIngestionPipeline(3, 2, 3, 4, 16, 2,
+                ids -> {
+                    onFetch.accept(ids);
+                    List<MailMessage> messages = new ArrayList<>();
+                    for (String id : ids) {
+                        messages.add(MailMessage.builder().id(id).body(id).build());
+                    }
+                    return messages;
+                },
+                message -> {
+                    int index = index(message.getId());
+                    if (index % 10 == 0) {
+                        return null;
+                    }
+                    EmailTransaction transaction = new EmailTransaction();
+                    transaction.setEmailId(message.getId());
+                    transaction.setReferenceCode("REF" + (index % 7));
+                    return transaction;
+                },
+                transaction -> jitter(),
+                confirmer,
+                new SimpleMeterRegistry());
+    }
+
+    private static int index(String messageId) {
+        return Integer.parseInt(messageId.substring(messageId.indexOf('-') + 1));
+    }
+
+    private static void jitter() {
+        try {
+            Thread.sleep(0, ThreadLocalRandom.current().nextInt(200_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
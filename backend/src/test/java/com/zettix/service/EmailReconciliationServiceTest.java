@@ -0,0 +1,99 @@
+package com.zettix.service;
+
+import com.zettix.entity.EmailTransaction;
+import com.zettix.entity.Transaction;
+import com.zettix.repository.EmailTransactionRepository;
+import com.zettix.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class EmailReconciliationServiceTest {
+
+    private EmailTransactionRepository emailTransactionRepository;
+    private TransactionService transactionService;
+    private PendingDepositIndex index;
+    private EmailReconciliationService service;
+
+    @BeforeEach
+    public void setUp() {
+        emailTransactionRepository = mock(EmailTransactionRepository.class);
+        transactionService = mock(TransactionService.class);
+        TransactionRepository transactionRepository = mock(TransactionRepository.class);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        index = new PendingDepositIndex(transactionRepository, meterRegistry);
+        when(transactionRepository.findByTransactionTypeAndStatus(any(), any())).thenReturn(List.of());
+        index.warmUp();
+        ReferenceMatcher matcher = new ReferenceMatcher(index, meterRegistry);
+        ReflectionTestUtils.setField(matcher, "minReferenceLength", 8);
+        ReflectionTestUtils.setField(matcher, "maxCandidates", 64);
+        ReflectionTestUtils.setField(matcher, "autoConfirmConfidence", 0.8);
+
+        service = new EmailReconciliationService(emailTransactionRepository, transactionService, index, matcher, meterRegistry);
+        ReflectionTestUtils.setField(service, "chunkSize", 2);
+        ReflectionTestUtils.setField(service, "settleSeconds", 60L);
+        ReflectionTestUtils.setField(service, "baseBackoffSeconds", 60L);
+        ReflectionTestUtils.setField(service, "maxBackoffMinutes", 60L);
+        ReflectionTestUtils.setField(service, "maxAgeHours", 48L);
+    }
+
+    @Test
+    public void confirmsHitsAndBacksOffMissesInBulk() {
+        index.add(deposit("ZETTIX1757946600123A1B2C3", "100000"));
+        EmailTransaction hit = email(1L, "ZETTIX1757946600123A1B2C3", "100000", null);
+        EmailTransaction firstMiss = email(2L, "ZETTIXUNKNOWN00001", "100000", null);
+        EmailTransaction thirdMiss = email(3L, "ZETTIXUNKNOWN00002", "100000", 2);
+        when(emailTransactionRepository.findReconcilable(eq(0L), any(), any(), any(), any()))
+                .thenReturn(List.of(hit, firstMiss));
+        when(emailTransactionRepository.findReconcilable(eq(2L), any(), any(), any(), any()))
+                .thenReturn(List.of(thirdMiss));
+        when(transactionService.processDepositConfirmation("ZETTIX1757946600123A1B2C3", new BigDecimal("100000")))
+                .thenReturn(true);
+
+        assertEquals(1, service.reconcile());
+
+        verify(emailTransactionRepository).markProcessed(eq(List.of(1L)), any());
+        verify(emailTransactionRepository).scheduleMatchRetry(eq(List.of(2L)), eq(1), any(), any());
+        verify(emailTransactionRepository).scheduleMatchRetry(eq(List.of(3L)), eq(3), any(), any());
+        // Misses never reach the database-backed confirmation
+        verify(transactionService, times(1)).processDepositConfirmation(anyString(), any());
+    }
+
+    @Test
+    public void doublesBackoffUpToTheCap() {
+        assertEquals(60, service.backoffSeconds(1));
+        assertEquals(120, service.backoffSeconds(2));
+        assertEquals(1920, service.backoffSeconds(6));
+        assertEquals(3600, service.backoffSeconds(7));
+        assertEquals(3600, service.backoffSeconds(200));
+    }
+
+    private static Transaction deposit(String referenceId, String amount) {
+        Transaction transaction = new Transaction();
+        transaction.setId(99L);
+        transaction.setReferenceId(referenceId);
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setExpiresAt(LocalDateTime.now().plusMinutes(30));
+        return transaction;
+    }
+
+    private static EmailTransaction email(Long id, String referenceCode, String amount, Integer attempts) {
+        EmailTransaction email = new EmailTransaction();
+        email.setId(id);
+        email.setEmailId("msg-" + id);
+        email.setReferenceCode(referenceCode);
+        email.setAmount(new BigDecimal(amount));
+        email.setTransactionDate(LocalDateTime.now());
+        email.setMatchAttempts(attempts);
+        return email;
+    }
+}
@@ -0,0 +1,72 @@
+package com.zettix.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link EmvTlvCodec} with substring-based decoding as done by the {@code QRAnalyzer} and
+ * {@code VietQRServiceTest} helpers: CRC check, amount and memo of one payload. Not run by surefire;
+ * start it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.zettix.service.EmvTlvCodecBenchmark}
+ * or run {@link #main(String[])} from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmvTlvCodecBenchmark {
+
+    private final String payload = new VietQRPayloadBuilder("970436", "9889559357")
+            .build(new BigDecimal("150000"), "ZETTIX1760000000000A1B2C3");
+
+    @Benchmark
+    public void substrings(Blackhole blackhole) {
+        String withoutCrc = payload.substring(0, payload.length() - 4);
+        blackhole.consume(LegacyVietQRPayload.calculateCRC16(withoutCrc).equals(payload.substring(payload.length() - 4)));
+        String amount = null;
+        String memo = null;
+        int index = 0;
+        while (index + 4 <= payload.length()) {
+            String tag = payload.substring(index, index + 2);
+            int length = Integer.parseInt(payload.substring(index + 2, index + 4));
+            String value = payload.substring(index + 4, index + 4 + length);
+            if ("54".equals(tag)) {
+                amount = value;
+            } else if ("62".equals(tag)) {
+                memo = value.substring(4, 4 + Integer.parseInt(value.substring(2, 4)));
+            }
+            index += 4 + length;
+        }
+        blackhole.consume(new BigDecimal(amount));
+        blackhole.consume(memo);
+    }
+
+    @Benchmark
+    public void codec(Blackhole blackhole) {
+        blackhole.consume(EmvTlvCodec.isCrcValid(payload));
+        blackhole.consume(EmvTlvCodec.amountInHundredths(payload));
+        blackhole.consume(EmvTlvCodec.memo(payload));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EmvTlvCodecBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
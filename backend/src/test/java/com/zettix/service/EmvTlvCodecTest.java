@@ -0,0 +1,86 @@
+package com.zettix.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmvTlvCodecTest {
+
+    private static final String PAYLOAD = "00020101021238540010A00000072701240006970436011098895593570208QRIBFTTA"
+            + "530370454061000005802VN62450841NAP TIEN ZETTIX ZETTIX1700000000000ABC12363044384";
+
+    @Test
+    public void testDecodesAmountMemoAndNestedTags() {
+        assertNull(EmvTlvCodec.validate(PAYLOAD));
+        assertTrue(EmvTlvCodec.isCrcValid(PAYLOAD));
+        assertEquals(10_000_000L, EmvTlvCodec.amountInHundredths(PAYLOAD));
+        assertEquals("NAP TIEN ZETTIX ZETTIX1700000000000ABC123", EmvTlvCodec.memo(PAYLOAD).toString());
+
+        long service = EmvTlvCodec.find(PAYLOAD, 38, 2);
+        assertEquals("QRIBFTTA", PAYLOAD.substring(EmvTlvCodec.start(service),
+                EmvTlvCodec.start(service) + EmvTlvCodec.length(service)));
+        assertEquals(EmvTlvCodec.NOT_FOUND, EmvTlvCodec.find(PAYLOAD, 59));
+        // "62" also appears inside the memo; only element boundaries count
+        assertEquals(EmvTlvCodec.NOT_FOUND, EmvTlvCodec.find(PAYLOAD, 62, 5));
+    }
+
+    @Test
+    public void testAcceptsPayloadFromTheVietQRSpecification() {
+        // A static VietQR from outside this codebase: account 0011012345678 at bank 970403
+        String payload = "00020101021138570010A00000072701270006970403011300110123456780208QRIBFTTA53037045802VN63049E6F";
+
+        assertNull(EmvTlvCodec.validate(payload));
+        assertEquals("9E6F", EmvCrc16.checksum(payload.substring(0, payload.length() - 4)));
+    }
+
+    @Test
+    public void testDecimalAmounts() {
+        VietQRPayloadBuilder builder = new VietQRPayloadBuilder("970436", "9889559357");
+        assertEquals(1_000_050L, EmvTlvCodec.amountInHundredths(builder.build(new BigDecimal("10000.5"), "ZETTIX1")));
+        assertEquals(1_000_005L, EmvTlvCodec.amountInHundredths(builder.build(new BigDecimal("10000.05"), "ZETTIX1")));
+    }
+
+    @Test
+    public void testRejectsBrokenPayloads() {
+        assertEquals("CRC does not match", EmvTlvCodec.validate(PAYLOAD.replace("100000", "900000")));
+        assertFalse(EmvTlvCodec.isCrcValid(PAYLOAD.substring(0, PAYLOAD.length() - 1) + "9"));
+        assertEquals("missing CRC (tag 63)", EmvTlvCodec.validate(PAYLOAD.substring(0, PAYLOAD.length() - 8)));
+        assertEquals("element runs past the end of the payload",
+                EmvTlvCodec.validate(PAYLOAD.substring(0, PAYLOAD.length() - 10)));
+        assertNotNull(EmvTlvCodec.validate(PAYLOAD.replace("62450841", "62450899")));
+        assertNotNull(EmvTlvCodec.validate("hello"));
+        assertEquals(-1, EmvTlvCodec.amountInHundredths(PAYLOAD.replace("5406100000", "54061O0000")));
+    }
+
+    @Test
+    public void testGeneratedPayloadsPassValidation() {
+        VietQRPayloadBuilder builder = new VietQRPayloadBuilder("970436", "9889559357");
+        for (int i = 1; i <= 500; i++) {
+            String reference = "ZETTIX" + (1_700_000_000_000L + i * 7919L) + Integer.toHexString(i).toUpperCase();
+            String payload = builder.build(BigDecimal.valueOf(i * 10_000L), reference);
+            assertNull(EmvTlvCodec.validate(payload), payload);
+            assertEquals(i * 1_000_000L, EmvTlvCodec.amountInHundredths(payload));
+            assertEquals(VietQRPayloadBuilder.MEMO_PREFIX + reference, EmvTlvCodec.memo(payload).toString());
+        }
+    }
+
+    @Test
+    public void testValidationDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long checksum = 0;
+        for (int i = 0; i < 20_000; i++) {
+            checksum += EmvTlvCodec.validate(PAYLOAD) == null ? EmvTlvCodec.amountInHundredths(PAYLOAD) : 0;
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 20_000; i++) {
+            checksum += EmvTlvCodec.validate(PAYLOAD) == null ? EmvTlvCodec.amountInHundredths(PAYLOAD) : 0;
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(40_000L * 10_000_000L, checksum);
+        assertTrue(allocated < 4096, allocated + " bytes allocated");
+    }
+}
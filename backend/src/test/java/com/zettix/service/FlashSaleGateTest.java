@@ -0,0 +1,107 @@
+package com.zettix.service;
+
+import com.zettix.entity.Product;
+import com.zettix.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+public class FlashSaleGateTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private FlashSaleGate flashSaleGate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    public void admitsNoMoreBuyersThanUnitsLeft() throws Exception {
+        Product product = createProduct(5);
+        flashSaleGate.open(product);
+
+        List<FlashSaleGate.Decision> decisions = enterConcurrently(product.getId(), 200);
+
+        long admitted = decisions.stream().filter(FlashSaleGate.Decision::isAdmitted).count();
+        long soldOut = decisions.stream().filter(decision -> decision.outcome() == FlashSaleGate.Outcome.SOLD_OUT).count();
+        assertEquals(5, admitted);
+        assertEquals(195, soldOut);
+    }
+
+    @Test
+    public void tokenBucketLimitsTheAdmissionRate() throws Exception {
+        Product product = createProduct(1000);
+        flashSaleGate.open(product);
+
+        List<FlashSaleGate.Decision> decisions = enterConcurrently(product.getId(), 100);
+
+        // The bucket starts full with flash-sale.burst tokens and refills at 20 per second
+        long admitted = decisions.stream().filter(FlashSaleGate.Decision::isAdmitted).count();
+        assertTrue(admitted >= 20 && admitted <= 25, "admitted " + admitted);
+        decisions.stream()
+                .filter(decision -> !decision.isAdmitted())
+                .forEach(decision -> {
+                    assertEquals(FlashSaleGate.Outcome.WAITING, decision.outcome());
+                    assertTrue(decision.position() >= 1);
+                });
+        assertEquals(FlashSaleGate.Outcome.WAITING, flashSaleGate.status(product.getId(), 100L).outcome());
+        assertEquals(FlashSaleGate.Outcome.NOT_QUEUED, flashSaleGate.status(product.getId(), 101L).outcome());
+    }
+
+    @Test
+    public void failedPurchaseHandsTheSlotToTheNextBuyer() {
+        Product product = createProduct(1);
+        flashSaleGate.open(product);
+
+        assertTrue(flashSaleGate.enter(product.getId(), 1L).isAdmitted());
+        // The only unit is held by an admitted buyer, so there is nothing to queue for
+        assertEquals(FlashSaleGate.Outcome.SOLD_OUT, flashSaleGate.enter(product.getId(), 2L).outcome());
+
+        flashSaleGate.complete(product.getId(), 1L, false);
+        assertTrue(flashSaleGate.enter(product.getId(), 2L).isAdmitted());
+
+        flashSaleGate.complete(product.getId(), 2L, true);
+        assertEquals(FlashSaleGate.Outcome.SOLD_OUT, flashSaleGate.enter(product.getId(), 3L).outcome());
+        assertEquals(0, flashSaleGate.status(product.getId(), 3L).unitsLeft());
+    }
+
+    private List<FlashSaleGate.Decision> enterConcurrently(Long productId, int buyers) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<FlashSaleGate.Decision>> futures = new ArrayList<>();
+            for (long userId = 1; userId <= buyers; userId++) {
+                long buyer = userId;
+                futures.add(executor.submit(() -> flashSaleGate.enter(productId, buyer)));
+            }
+            List<FlashSaleGate.Decision> decisions = new ArrayList<>();
+            for (Future<FlashSaleGate.Decision> future : futures) {
+                decisions.add(future.get());
+            }
+            return decisions;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Product createProduct(int stock) {
+        Product product = fixtures.product("flash", Product.ProductType.LICENSE_KEY, new BigDecimal("1000.00"), stock, 0);
+        product.setFlashSale(true);
+        return productRepository.save(product);
+    }
+}
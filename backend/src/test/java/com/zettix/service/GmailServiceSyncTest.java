@@ -0,0 +1,166 @@
+package com.zettix.service;
+
+import com.zettix.entity.EmailTransaction;
+import com.zettix.entity.MailSyncState;
+import com.zettix.repository.EmailTransactionRepository;
+import com.zettix.repository.MailSyncStateRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/** History-cursor sync and batch dedupe of {@link GmailService} against an {@link InMemoryMailSource}. */
+public class GmailServiceSyncTest {
+
+    private static final String ACCOUNT = "9889559357";
+
+    private final List<String> fetched = new ArrayList<>();
+    private final Set<String> stored = ConcurrentHashMap.newKeySet();
+    private final Map<String, MailSyncState> syncStates = new HashMap<>();
+
+    private InMemoryMailSource mailSource;
+    private GmailService gmailService;
+    private int nextMessage = 1;
+
+    @BeforeEach
+    public void setUp() {
+        mailSource = new InMemoryMailSource() {
+            @Override
+            public synchronized List<MailMessage> getMessages(List<String> messageIds) {
+                fetched.addAll(messageIds);
+                return messageIds.stream().map(this::getMessage).toList();
+            }
+        };
+
+        EmailTransactionRepository emailTransactionRepository = mock(EmailTransactionRepository.class);
+        when(emailTransactionRepository.findEmailIdsByEmailIdIn(any())).thenAnswer(invocation -> {
+            Collection<String> ids = invocation.getArgument(0);
+            return ids.stream().filter(stored::contains).toList();
+        });
+        MailSyncStateRepository mailSyncStateRepository = mock(MailSyncStateRepository.class);
+        when(mailSyncStateRepository.findById(any())).thenAnswer(
+                invocation -> Optional.ofNullable(syncStates.get(invocation.<String>getArgument(0))));
+        when(mailSyncStateRepository.save(any())).thenAnswer(invocation -> {
+            MailSyncState state = invocation.getArgument(0);
+            syncStates.put(state.getMailbox(), state);
+            return state;
+        });
+        EmailBodyStore emailBodyStore = mock(EmailBodyStore.class);
+        when(emailBodyStore.saveWithBody(any())).thenAnswer(invocation -> {
+            EmailTransaction emailTransaction = invocation.getArgument(0);
+            stored.add(emailTransaction.getEmailId());
+            return emailTransaction;
+        });
+
+        gmailService = new GmailService(emailTransactionRepository, mailSyncStateRepository,
+                mock(TransactionService.class), mailSource, new SimpleMeterRegistry(),
+                new BankNotificationParser(), emailBodyStore, mock(ReferenceMatcher.class));
+        ReflectionTestUtils.setField(gmailService, "query", "from:bank");
+        ReflectionTestUtils.setField(gmailService, "syncMode", "history");
+        ReflectionTestUtils.setField(gmailService, "catchUpWindowDays", 7);
+        ReflectionTestUtils.setField(gmailService, "catchUpMaxMessages", 5000L);
+        ReflectionTestUtils.setField(gmailService, "dedupeBatchSize", 3);
+        ReflectionTestUtils.setField(gmailService, "fetchBatchSize", 2);
+        ReflectionTestUtils.setField(gmailService, "fetchThreads", 2);
+        ReflectionTestUtils.setField(gmailService, "parseThreads", 1);
+        ReflectionTestUtils.setField(gmailService, "persistThreads", 1);
+        ReflectionTestUtils.setField(gmailService, "confirmLanes", 1);
+        ReflectionTestUtils.setField(gmailService, "pipelineQueueCapacity", 16);
+        ReflectionTestUtils.setField(gmailService, "targetAccountNumber", ACCOUNT);
+        gmailService.startPipeline();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        gmailService.stopPipeline();
+    }
+
+    @Test
+    public void historyCursorAdvancesOverNewMailOnly() {
+        addMessages(3);
+        gmailService.processNewEmails();
+        assertEquals("3", historyId());
+        assertEquals(3, stored.size());
+
+        fetched.clear();
+        List<String> added = addMessages(2);
+        gmailService.processNewEmails();
+
+        assertEquals(added, fetched);
+        assertEquals("5", historyId());
+
+        fetched.clear();
+        gmailService.processNewEmails();
+
+        assertTrue(fetched.isEmpty());
+        assertEquals("5", historyId());
+    }
+
+    @Test
+    public void expiredCursorFallsBackToCatchUp() {
+        addMessages(4);
+        MailSyncState state = new MailSyncState();
+        state.setMailbox("me");
+        state.setHistoryId("999");
+        syncStates.put("me", state);
+
+        gmailService.processNewEmails();
+
+        assertEquals(4, stored.size());
+        assertEquals("4", historyId());
+        assertNotNull(syncStates.get("me").getLastCatchUpAt());
+    }
+
+    @Test
+    public void messagesSeenByCatchUpAreNotFetchedAgainFromHistory() {
+        addMessages(2);
+        MailSyncState state = new MailSyncState();
+        state.setMailbox("me");
+        state.setHistoryId("0");
+        syncStates.put("me", state);
+        List<String> caughtUp = new ArrayList<>(mailSource.listMessageIds("", 10));
+        // A catch-up already stored these, but the cursor still points before them
+        stored.addAll(caughtUp);
+        List<String> added = addMessages(2);
+
+        gmailService.processNewEmails();
+
+        assertEquals(added, fetched);
+        assertEquals(4, stored.size());
+        assertEquals("4", historyId());
+    }
+
+    private List<String> addMessages(int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String id = "msg-" + nextMessage++;
+            mailSource.addMessage(MailSource.MailMessage.builder()
+                    .id(id)
+                    .from("bank")
+                    .subject("Bien dong so du")
+                    .body("Tài khoản: " + ACCOUNT + "\nSố tiền: 100,000 VND\nNội dung: NAP TIEN ZETTIX REF" + id.substring(4)
+                            + "\nThời gian: 15/09/2025 01:30:00")
+                    .build());
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private String historyId() {
+        return syncStates.get("me").getHistoryId();
+    }
+}
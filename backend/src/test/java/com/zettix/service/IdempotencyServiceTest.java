@@ -0,0 +1,150 @@
+package com.zettix.service;
+
+import com.zettix.entity.IdempotencyRecord;
+import com.zettix.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+public class IdempotencyServiceTest {
+
+    private static final Long USER_ID = 42L;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Test
+    public void repeatedKeyReplaysTheStoredResponse() {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger runs = new AtomicInteger();
+
+        ResponseEntity<?> first = idempotencyService.execute(USER_ID, "deposit", key, Map.of("amount", 50000),
+                () -> ResponseEntity.ok(Map.of("run", runs.incrementAndGet())));
+        ResponseEntity<?> second = idempotencyService.execute(USER_ID, "deposit", key, Map.of("amount", 50000),
+                () -> ResponseEntity.ok(Map.of("run", runs.incrementAndGet())));
+
+        assertEquals(1, runs.get());
+        assertEquals(200, first.getStatusCode().value());
+        assertNull(first.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(200, second.getStatusCode().value());
+        assertEquals("true", second.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals("{\"run\":1}", second.getBody());
+        assertTrue(idempotencyRecordRepository.findByUserIdAndEndpointAndIdempotencyKey(USER_ID, "deposit", key).isPresent());
+    }
+
+    @Test
+    public void concurrentDuplicatesWaitForTheFirstCall() throws Exception {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ResponseEntity<?>>> calls = new ArrayList<>();
+            calls.add(executor.submit(() -> idempotencyService.execute(USER_ID, "purchase", key, Map.of("productId", 1),
+                    () -> {
+                        started.countDown();
+                        await(release);
+                        return ResponseEntity.ok(Map.of("run", runs.incrementAndGet()));
+                    })));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 7; i++) {
+                calls.add(executor.submit(() -> idempotencyService.execute(USER_ID, "purchase", key, Map.of("productId", 1),
+                        () -> ResponseEntity.ok(Map.of("run", runs.incrementAndGet())))));
+            }
+            Thread.sleep(200);
+            release.countDown();
+
+            for (Future<ResponseEntity<?>> call : calls) {
+                assertEquals(200, call.get(30, TimeUnit.SECONDS).getStatusCode().value());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void failedResponsesAreNotStored() {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger runs = new AtomicInteger();
+
+        ResponseEntity<?> failed = idempotencyService.execute(USER_ID, "purchase", key, Map.of("productId", 2), () -> {
+            runs.incrementAndGet();
+            return ResponseEntity.badRequest().body(Map.of("error", "Product is out of stock"));
+        });
+        ResponseEntity<?> retried = idempotencyService.execute(USER_ID, "purchase", key, Map.of("productId", 2),
+                () -> ResponseEntity.ok(Map.of("run", runs.incrementAndGet())));
+
+        assertEquals(400, failed.getStatusCode().value());
+        assertEquals(200, retried.getStatusCode().value());
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    public void keyReusedForAnotherRequestIsRejected() {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger runs = new AtomicInteger();
+
+        idempotencyService.execute(USER_ID, "deposit", key, Map.of("amount", 50000),
+                () -> ResponseEntity.ok(Map.of("run", runs.incrementAndGet())));
+        ResponseEntity<?> other = idempotencyService.execute(USER_ID, "deposit", key, Map.of("amount", 90000),
+                () -> ResponseEntity.ok(Map.of("run", runs.incrementAndGet())));
+
+        assertEquals(400, other.getStatusCode().value());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void storedRecordsSurviveARestart() {
+        // A record written by an earlier run of the application, not in this instance's memory
+        String key = UUID.randomUUID().toString();
+        ResponseEntity<?> original = idempotencyService.execute(USER_ID + 1, "deposit", key, Map.of("amount", 10000),
+                () -> ResponseEntity.ok(Map.of("ref", "ZETTIX0001")));
+        assertEquals(200, original.getStatusCode().value());
+        IdempotencyRecord record = idempotencyRecordRepository
+                .findByUserIdAndEndpointAndIdempotencyKey(USER_ID + 1, "deposit", key).orElseThrow();
+        IdempotencyRecord copy = new IdempotencyRecord(null, USER_ID + 2, "deposit", key, record.getRequestHash(),
+                record.getStatusCode(), record.getResponseBody(), LocalDateTime.now(), LocalDateTime.now().plusHours(1));
+        idempotencyRecordRepository.save(copy);
+
+        AtomicInteger runs = new AtomicInteger();
+        ResponseEntity<?> replayed = idempotencyService.execute(USER_ID + 2, "deposit", key, Map.of("amount", 10000),
+                () -> ResponseEntity.ok(Map.of("run", runs.incrementAndGet())));
+
+        assertEquals(0, runs.get());
+        assertEquals("{\"ref\":\"ZETTIX0001\"}", replayed.getBody());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.zettix.service;
+
+import com.zettix.entity.Account;
+import com.zettix.entity.Product;
+import com.zettix.repository.AccountRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+public class InventoryPoolTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private InventoryPool inventoryPool;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void targetSizeFollowsSalesRate() {
+        assertEquals(0, inventoryPool.targetSize(0.05));
+        assertEquals(10, inventoryPool.targetSize(0.2));
+        assertEquals(60, inventoryPool.targetSize(2));
+        assertEquals(500, inventoryPool.targetSize(100));
+    }
+
+    @Test
+    public void busyProductIsServedFromReservedPool() {
+        Product product = fixtures.product("pool", Product.ProductType.ACCOUNT, new BigDecimal("1000.00"), 100);
+        inventoryPool.refill();
+        for (int i = 0; i < 20; i++) {
+            assertNotNull(sell(product, false));
+        }
+
+        inventoryPool.refill();
+        int reserved = inventoryPool.reservedCount(product.getId());
+        assertTrue(reserved > 0);
+        assertEquals(reserved, countByStatus(product, Account.AccountStatus.RESERVED));
+
+        Long sold = sell(product, false);
+        assertEquals(Account.AccountStatus.SOLD, accountRepository.findById(sold).orElseThrow().getStatus());
+        assertEquals(reserved - 1, inventoryPool.reservedCount(product.getId()));
+
+        // A purchase that rolls back hands its account back to the pool
+        sell(product, true);
+        assertEquals(reserved - 1, inventoryPool.reservedCount(product.getId()));
+
+        inventoryPool.releaseReservations();
+        assertEquals(0, countByStatus(product, Account.AccountStatus.RESERVED));
+        assertEquals(79, countByStatus(product, Account.AccountStatus.AVAILABLE));
+    }
+
+    @Test
+    public void emptyProductIsRememberedAsSoldOut() {
+        Product product = fixtures.product("pool", Product.ProductType.ACCOUNT, new BigDecimal("1000.00"), 1);
+        assertNotNull(sell(product, false));
+        assertFalse(inventoryPool.isSoldOut(product.getId()));
+
+        assertNull(sell(product, false));
+        assertTrue(inventoryPool.isSoldOut(product.getId()));
+
+        inventoryPool.markRestocked(product.getId());
+        assertFalse(inventoryPool.isSoldOut(product.getId()));
+    }
+
+    @Test
+    public void accountHeldByAnOpenPurchaseIsNotSoldOut() throws Exception {
+        Product product = fixtures.product("pool", Product.ProductType.ACCOUNT, new BigDecimal("1000.00"), 1);
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // Another buyer holds the only account and then rolls back
+            Future<?> holder = executor.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                assertNotNull(inventoryPool.claim(product).orElse(null));
+                held.countDown();
+                awaitQuietly(release);
+                status.setRollbackOnly();
+            }));
+            assertTrue(held.await(10, TimeUnit.SECONDS));
+
+            assertNull(sell(product, false));
+            assertFalse(inventoryPool.isSoldOut(product.getId()));
+
+            release.countDown();
+            holder.get();
+            assertNotNull(sell(product, false));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private Long sell(Product product, boolean rollBack) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            Account account = inventoryPool.claim(product).orElse(null);
+            if (account == null) {
+                return null;
+            }
+            account.setStatus(Account.AccountStatus.SOLD);
+            account.setSoldAt(LocalDateTime.now());
+            if (rollBack) {
+                status.setRollbackOnly();
+            }
+            return account.getId();
+        });
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int countByStatus(Product product, Account.AccountStatus status) {
+        return accountRepository.findByProductAndStatus(product, status).size();
+    }
+}
@@ -0,0 +1,121 @@
+package com.zettix.service;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The regex-per-field parser GmailService used before {@link BankNotificationParser}.
+ * Kept as the reference implementation for the corpus test and the parser benchmark.
+ */
+public class LegacyBankNotificationParser {
+
+    public BankNotificationParser.ParsedNotification parse(String body) {
+        try {
+            // Vietcombank email patterns - support multiple formats
+            Pattern[] accountPatterns = {
+                Pattern.compile("Tài khoản\\s*:\\s*(\\d+)"),
+                Pattern.compile("Số tài khoản\\s*:\\s*(\\d+)"),
+                Pattern.compile("TK\\s*:\\s*(\\d+)"),
+                Pattern.compile("Account\\s*:\\s*(\\d+)")
+            };
+            
+            Pattern[] amountPatterns = {
+                Pattern.compile("Số tiền\\s*:\\s*([\\d,]+)\\s*VND"),
+                Pattern.compile("Số tiền\\s*:\\s*([\\d,]+)"),
+                Pattern.compile("Amount\\s*:\\s*([\\d,]+)"),
+                Pattern.compile("(\\+|-)([\\d,]+)\\s*VND")
+            };
+            
+            Pattern[] referencePatterns = {
+                Pattern.compile("Nội dung\\s*:\\s*(.+?)(?=\\n|$)"),
+                Pattern.compile("Diễn giải\\s*:\\s*(.+?)(?=\\n|$)"),
+                Pattern.compile("Memo\\s*:\\s*(.+?)(?=\\n|$)"),
+                Pattern.compile("Content\\s*:\\s*(.+?)(?=\\n|$)"),
+                Pattern.compile("NAP TIEN ZETTIX\\s+([A-Z0-9]+)")
+            };
+            
+            Pattern[] datePatterns = {
+                Pattern.compile("Thời gian\\s*:\\s*(.+?)(?=\\n|$)"),
+                Pattern.compile("Time\\s*:\\s*(.+?)(?=\\n|$)"),
+                Pattern.compile("Ngày\\s*:\\s*(.+?)(?=\\n|$)")
+            };
+
+            // Find account number
+            String accountNumber = null;
+            for (Pattern pattern : accountPatterns) {
+                Matcher matcher = pattern.matcher(body);
+                if (matcher.find()) {
+                    accountNumber = matcher.group(1);
+                    break;
+                }
+            }
+
+            // Find amount
+            String amountStr = null;
+            for (Pattern pattern : amountPatterns) {
+                Matcher matcher = pattern.matcher(body);
+                if (matcher.find()) {
+                    amountStr = matcher.group(matcher.groupCount()).replace(",", "");
+                    break;
+                }
+            }
+
+            // Find reference code
+            String referenceCode = "";
+            for (Pattern pattern : referencePatterns) {
+                Matcher matcher = pattern.matcher(body);
+                if (matcher.find()) {
+                    String content = matcher.group(1).trim();
+                    
+                    // Extract ZETTIX reference from content
+                    Pattern zettixPattern = Pattern.compile("(?:NAP TIEN ZETTIX|ZETTIX)\\s*([A-Z0-9]+)");
+                    Matcher zettixMatcher = zettixPattern.matcher(content);
+                    if (zettixMatcher.find()) {
+                        referenceCode = zettixMatcher.group(1);
+                        break;
+                    }
+                    
+                    // If no ZETTIX pattern, use the whole content but clean it
+                    referenceCode = content.replaceAll("[^A-Za-z0-9]", "").toUpperCase();
+                    break;
+                }
+            }
+
+            // Find date
+            String dateStr = "";
+            for (Pattern pattern : datePatterns) {
+                Matcher matcher = pattern.matcher(body);
+                if (matcher.find()) {
+                    dateStr = matcher.group(1).trim();
+                    break;
+                }
+            }
+
+            if (accountNumber == null || amountStr == null) {
+                return null;
+            }
+
+            BankNotificationParser.ParsedNotification details = new BankNotificationParser.ParsedNotification();
+            details.setAccountNumber(accountNumber);
+            details.setAmount(new java.math.BigDecimal(amountStr));
+            details.setReferenceCode(referenceCode);
+            details.setTransactionDate(parseTransactionDate(dateStr));
+
+            return details;
+
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private java.time.LocalDateTime parseTransactionDate(String dateStr) {
+        try {
+            // Parse Vietcombank date format
+            java.time.format.DateTimeFormatter formatter = 
+                java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+            return java.time.LocalDateTime.parse(dateStr, formatter);
+        } catch (Exception e) {
+            return java.time.LocalDateTime.now();
+        }
+    }
+}
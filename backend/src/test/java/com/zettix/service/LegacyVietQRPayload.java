@@ -0,0 +1,88 @@
+package com.zettix.service;
+
+import java.math.BigDecimal;
+
+/**
+ * The payload builder VietQRService used before {@link VietQRPayloadBuilder}, with its bit-by-bit
+ * CRC. Kept as the reference implementation for the payload tests and the payload benchmark.
+ */
+public class LegacyVietQRPayload {
+
+    public String build(String bankCode, String accountNumber, BigDecimal amount, String referenceId) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) throw new IllegalArgumentException("amount must > 0");
+        if (referenceId == null || referenceId.isEmpty()) throw new IllegalArgumentException("referenceId is empty");
+
+        // Clean referenceId: chỉ chữ + số in hoa
+        String cleanRef = referenceId.replaceAll("[^A-Za-z0-9]", "").toUpperCase();
+        
+        // Tạo nội dung chuyển khoản theo chuẩn thực tế
+        String transactionContent = "NAP TIEN ZETTIX " + cleanRef;
+
+        StringBuilder sb = new StringBuilder();
+
+        // 00: Payload Format Indicator
+        sb.append("00").append("02").append("01");
+
+        // 01: Point of Initiation Method (12 = static để khóa thông tin)
+        sb.append("01").append("02").append("12");
+
+        // 38: Merchant Account Information theo chuẩn thực tế
+        StringBuilder mai = new StringBuilder();
+        
+        // 00: Globally Unique Identifier
+        mai.append("00").append("10").append("A000000727");
+        
+        // 01: Acquirer ID + Account Number (theo format thực tế)
+        String acquirerData = "0006" + bankCode + "0110" + accountNumber;
+        mai.append("01").append(String.format("%02d", acquirerData.length())).append(acquirerData);
+        
+        // 02: Service Code (theo chuẩn VietQR thực tế)
+        String serviceCode = "QRIBFTTA"; // QR Instant Bank Transfer to Account
+        mai.append("02").append(String.format("%02d", serviceCode.length())).append(serviceCode);
+        
+        String maiData = mai.toString();
+        sb.append("38").append(String.format("%02d", maiData.length())).append(maiData);
+
+        // 53: Transaction Currency (704 = VND)
+        sb.append("53").append("03").append("704");
+
+        // 54: Transaction Amount
+        String amountStr = amount.stripTrailingZeros().toPlainString();
+        sb.append("54").append(String.format("%02d", amountStr.length())).append(amountStr);
+
+        // 58: Country Code
+        sb.append("58").append("02").append("VN");
+
+        // 62: Additional Data Field - Nội dung chuyển khoản (QUAN TRỌNG)
+        StringBuilder additionalData = new StringBuilder();
+        
+        // 08: Purpose of Transaction - Nội dung hiển thị trong app ngân hàng
+        additionalData.append("08").append(String.format("%02d", transactionContent.length())).append(transactionContent);
+        
+        String additionalDataStr = additionalData.toString();
+        sb.append("62").append(String.format("%02d", additionalDataStr.length())).append(additionalDataStr);
+
+        // 63: CRC16
+        String dataWithoutCrc = sb.toString() + "6304";
+        String crc = calculateCRC16(dataWithoutCrc);
+        sb.append("63").append("04").append(crc);
+
+        return sb.toString();
+    }
+
+    static String calculateCRC16(String data) {
+        int crc = 0xFFFF;
+        for (int i = 0; i < data.length(); i++) {
+            crc ^= (data.charAt(i) & 0xFF);
+            for (int j = 0; j < 8; j++) {
+                if ((crc & 1) != 0) {
+                    crc = (crc >> 1) ^ 0x8408;
+                } else {
+                    crc >>= 1;
+                }
+            }
+        }
+        crc ^= 0xFFFF;
+        return String.format("%04X", crc & 0xFFFF);
+    }
+}
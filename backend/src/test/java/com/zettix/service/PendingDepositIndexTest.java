@@ -0,0 +1,111 @@
+package com.zettix.service;
+
+import com.zettix.entity.Transaction;
+import com.zettix.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class PendingDepositIndexTest {
+
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PendingDepositIndex index = new PendingDepositIndex(transactionRepository, meterRegistry);
+
+    @Test
+    public void warmsFromPendingDeposits() {
+        when(transactionRepository.findByTransactionTypeAndStatus(
+                Transaction.TransactionType.DEPOSIT, Transaction.TransactionStatus.PENDING))
+                .thenReturn(List.of(deposit(1L, "ZETTIXAAA111", "100000"), deposit(2L, "ZETTIXBBB222", "50000")));
+
+        assertFalse(index.isWarm());
+        index.warmUp();
+
+        assertTrue(index.isWarm());
+        assertEquals(2, index.size());
+        PendingDepositIndex.PendingDeposit pending = index.get("ZETTIXAAA111");
+        assertEquals(1L, pending.transactionId());
+        assertEquals(new BigDecimal("100000"), pending.amount());
+        assertNull(index.get("ZETTIXCCC333"));
+        assertEquals(1.0, meterRegistry.counter("zettix.deposit.pending.index.lookups", "result", "miss").count());
+    }
+
+    @Test
+    public void staysColdWhenWarmUpFails() {
+        when(transactionRepository.findByTransactionTypeAndStatus(any(), any()))
+                .thenThrow(new RuntimeException("database down"));
+
+        index.warmUp();
+
+        assertFalse(index.isWarm());
+    }
+
+    @Test
+    public void removesOutsideTransactionImmediately() {
+        index.add(deposit(1L, "ZETTIXAAA111", "100000"));
+
+        index.removeAfterCommit("ZETTIXAAA111");
+
+        assertNull(index.get("ZETTIXAAA111"));
+    }
+
+    @Test
+    public void keepsReferencesThatFoldToTheSameMatchKey() {
+        index.add(deposit(1L, "ZETTIXAB0C111", "100000"));
+        index.add(deposit(2L, "ZETTIXABOC111", "100000"));
+
+        assertEquals(2, index.findByMatchKeyPrefix("AB0C", deposit -> true, 10).size());
+        assertEquals(2, index.findByMatchKeyPrefixOf("AB0C111FT123").size());
+
+        index.remove("ZETTIXAB0C111");
+
+        List<PendingDepositIndex.PendingDeposit> left = index.findByMatchKeyPrefix("AB0C", deposit -> true, 10);
+        assertEquals(1, left.size());
+        assertEquals("ZETTIXABOC111", left.get(0).referenceId());
+        index.remove("ZETTIXABOC111");
+        assertTrue(index.findByMatchKeyPrefix("AB0C", deposit -> true, 10).isEmpty());
+    }
+
+    @Test
+    public void addsOnlyWhenTransactionCommits() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.addAfterCommit(deposit(1L, "ZETTIXAAA111", "100000"));
+            assertNull(index.get("ZETTIXAAA111"));
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                    TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertNull(index.get("ZETTIXAAA111"));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.addAfterCommit(deposit(2L, "ZETTIXBBB222", "50000"));
+            TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(2L, index.get("ZETTIXBBB222").transactionId());
+    }
+
+    private static Transaction deposit(Long id, String referenceId, String amount) {
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setTransactionType(Transaction.TransactionType.DEPOSIT);
+        transaction.setStatus(Transaction.TransactionStatus.PENDING);
+        transaction.setReferenceId(referenceId);
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setExpiresAt(LocalDateTime.now().plusMinutes(30));
+        return transaction;
+    }
+}
@@ -0,0 +1,124 @@
+package com.zettix.service;
+
+import com.zettix.entity.Account;
+import com.zettix.entity.Product;
+import com.zettix.repository.AccountRepository;
+import com.zettix.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+public class ProductStockCountersTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private ProductStockCounters productStockCounters;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void concurrentSalesAreAllCounted() throws Exception {
+        Product product = fixtures.product("stock", Product.ProductType.LICENSE_KEY, new BigDecimal("1000.00"), 1000, 0);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> sales = new ArrayList<>();
+            for (int i = 0; i < 800; i++) {
+                sales.add(executor.submit(() -> transactionTemplate.executeWithoutResult(status ->
+                        productStockCounters.recordSale(product.getId(), 1))));
+                if (i % 100 == 0) {
+                    // Flushes interleaved with sales must not lose or repeat any of them
+                    sales.add(executor.submit(productStockCounters::flush));
+                }
+            }
+            for (Future<?> sale : sales) {
+                sale.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        productStockCounters.flush();
+
+        Product stored = productRepository.findById(product.getId()).orElseThrow();
+        assertEquals(200, stored.getAvailableQuantity());
+        assertEquals(800, stored.getSoldQuantity());
+    }
+
+    @Test
+    public void rolledBackSalesAreNotCounted() {
+        Product product = fixtures.product("stock", Product.ProductType.LICENSE_KEY, new BigDecimal("1000.00"), 10, 0);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            productStockCounters.recordSale(product.getId(), 3);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(10, productStockCounters.view(productRepository.findById(product.getId()).orElseThrow())
+                .getAvailableQuantity());
+    }
+
+    @Test
+    public void catalogViewIncludesUnflushedSales() {
+        Product product = fixtures.product("stock", Product.ProductType.LICENSE_KEY, new BigDecimal("1000.00"), 2, 0);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                productStockCounters.recordSale(product.getId(), 2));
+
+        Product stored = productRepository.findById(product.getId()).orElseThrow();
+        Product view = productStockCounters.view(stored);
+        assertEquals(0, view.getAvailableQuantity());
+        assertEquals(2, view.getSoldQuantity());
+        assertEquals(2, stored.getAvailableQuantity(), "the loaded entity must stay untouched");
+        assertTrue(productStockCounters.viewInStock(List.of(stored)).isEmpty());
+
+        productStockCounters.flush();
+        assertEquals(0, productRepository.findById(product.getId()).orElseThrow().getAvailableQuantity());
+    }
+
+    @Test
+    public void driftIsCorrectedFromAccounts() {
+        Product product = fixtures.product("stock", Product.ProductType.LICENSE_KEY, new BigDecimal("1000.00"), 5, 5);
+        // Counters lost 2 sales, e.g. pending when the process died
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<Account> accounts = accountRepository.findByProductAndStatus(product, Account.AccountStatus.AVAILABLE);
+            accounts.subList(0, 2).forEach(account -> account.setStatus(Account.AccountStatus.SOLD));
+        });
+
+        productStockCounters.reconcile();
+        Product afterFirstRun = productRepository.findById(product.getId()).orElseThrow();
+        assertEquals(5, afterFirstRun.getAvailableQuantity(), "one run alone must not correct");
+
+        productStockCounters.reconcile();
+        Product corrected = productRepository.findById(product.getId()).orElseThrow();
+        assertEquals(3, corrected.getAvailableQuantity());
+        assertEquals(2, corrected.getSoldQuantity());
+
+        productStockCounters.reconcile();
+        assertEquals(3, productRepository.findById(product.getId()).orElseThrow().getAvailableQuantity());
+    }
+}
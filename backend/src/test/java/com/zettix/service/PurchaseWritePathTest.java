@@ -0,0 +1,114 @@
+package com.zettix.service;
+
+import com.zettix.dto.request.BatchPurchaseRequest;
+import com.zettix.entity.Account;
+import com.zettix.entity.Product;
+import com.zettix.entity.Transaction;
+import com.zettix.entity.User;
+import com.zettix.entity.UserPurchase;
+import com.zettix.repository.AccountRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Counts the JDBC statements a purchase sends, using Hibernate statistics. A batch counts once.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+public class PurchaseWritePathTest {
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private BatchPurchaseService batchPurchaseService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void enableStatistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @AfterEach
+    public void disableStatistics() {
+        statistics.setStatisticsEnabled(false);
+    }
+
+    @Test
+    public void purchaseWritesEveryRowInOneFlush() {
+        User user = fixtures.user("writes", new BigDecimal("100000.00"));
+        Product product = fixtures.product("writes", Product.ProductType.LICENSE_KEY, new BigDecimal("5000.00"), 5);
+        // Warm the balance cache
+        transactionService.createPurchaseTransaction(user, product.getId());
+
+        // A purchase may also fetch the next id block of a sequence. Each of the three sequences
+        // does that at most once in four purchases, so at least one of them shows the plain count
+        long fewest = Long.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            statistics.clear();
+            transactionService.createPurchaseTransaction(user, product.getId());
+            fewest = Math.min(fewest, statistics.getPrepareStatementCount());
+
+            assertEquals(3, statistics.getEntityInsertCount());
+            assertEquals(0, statistics.getEntityStatistics(Transaction.class.getName()).getUpdateCount());
+            assertEquals(0, statistics.getEntityStatistics(UserPurchase.class.getName()).getUpdateCount());
+        }
+        // Product lookup, account claim (candidate ids, then the locking read, as H2 needs), the
+        // conditional wallet debit and its balance read, three inserts and the account update; product
+        // counters are written later by ProductStockCounters
+        assertTrue(fewest <= 9, "statements per purchase: " + fewest);
+    }
+
+    @Test
+    public void batchStatementsDoNotGrowWithUnits() {
+        User user = fixtures.user("writes", new BigDecimal("1000000.00"));
+        Product product = fixtures.product("writes", Product.ProductType.LICENSE_KEY, new BigDecimal("1000.00"), 50);
+        batchPurchaseService.purchase(user, List.of(item(product, 1)));
+
+        statistics.clear();
+        batchPurchaseService.purchase(user, List.of(item(product, 4)));
+        long fewUnits = statistics.getPrepareStatementCount();
+
+        statistics.clear();
+        batchPurchaseService.purchase(user, List.of(item(product, 40)));
+        long manyUnits = statistics.getPrepareStatementCount();
+
+        // Rows of one table go out as a single batch whatever the quantity; 40 units may cross
+        // into the next id block of each sequence once
+        assertTrue(manyUnits <= fewUnits + 3, "statements for 4 units: " + fewUnits + ", for 40: " + manyUnits);
+        assertEquals(81, statistics.getEntityInsertCount());
+        assertEquals(45, accountRepository.findByProductAndStatus(product, Account.AccountStatus.SOLD).size());
+    }
+
+    private static BatchPurchaseRequest.Item item(Product product, int quantity) {
+        BatchPurchaseRequest.Item item = new BatchPurchaseRequest.Item();
+        item.setProductId(product.getId());
+        item.setQuantity(quantity);
+        return item;
+    }
+}
@@ -0,0 +1,64 @@
+package com.zettix.service;
+
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link QrImageEncoder} with ZXing's {@link MatrixToImageWriter} on a 300x300 deposit code.
+ * Not run by surefire; start it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.zettix.service.QrImageEncoderBenchmark}
+ * or run {@link #main(String[])} from the IDE. Add {@code -prof gc} to compare allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QrImageEncoderBenchmark {
+
+    private BitMatrix matrix;
+
+    @Setup
+    public void encodeMatrix() throws Exception {
+        String payload = new VietQRPayloadBuilder("970436", "9889559357")
+                .build(new BigDecimal("150000"), "ZETTIX1760000000000A1B2C3");
+        matrix = QrImageEncoderTest.encode(payload, 300, 300);
+    }
+
+    @Benchmark
+    public byte[] matrixToImageWriter() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MatrixToImageWriter.writeToStream(matrix, "PNG", out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] oneBitPng() {
+        return QrImageEncoder.png(matrix);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(QrImageEncoderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
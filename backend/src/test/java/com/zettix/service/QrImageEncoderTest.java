@@ -0,0 +1,82 @@
+package com.zettix.service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QrImageEncoderTest {
+
+    private final VietQRPayloadBuilder payloadBuilder = new VietQRPayloadBuilder("970436", "9889559357");
+
+    @Test
+    public void testPngMatchesMatrixToImageWriterPixelForPixel() throws Exception {
+        int[][] sizes = {{200, 200}, {300, 300}, {0, 0}, {257, 257}};
+        String[] references = {"ZETTIX1", "ZETTIX1700000000000ABC123", "ZETTIX" + "9".repeat(60)};
+        for (int[] size : sizes) {
+            for (String reference : references) {
+                BitMatrix matrix = encode(payloadBuilder.build(new BigDecimal("150000"), reference), size[0], size[1]);
+
+                BufferedImage expected = MatrixToImageWriter.toBufferedImage(matrix);
+                BufferedImage actual = ImageIO.read(new ByteArrayInputStream(QrImageEncoder.png(matrix)));
+
+                assertEquals(expected.getWidth(), actual.getWidth());
+                assertEquals(expected.getHeight(), actual.getHeight());
+                for (int y = 0; y < expected.getHeight(); y++) {
+                    for (int x = 0; x < expected.getWidth(); x++) {
+                        assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "pixel " + x + "," + y);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPngDecodesAndIsSmallerThanImageIo() throws Exception {
+        String payload = payloadBuilder.build(new BigDecimal("100000"), "ZETTIX1700000000000ABC123");
+        BitMatrix matrix = encode(payload, 300, 300);
+
+        byte[] png = QrImageEncoder.png(matrix);
+        String decoded = VietQRServiceTest.decode(ImageIO.read(new ByteArrayInputStream(png)));
+        assertEquals(payload, decoded);
+        QRAnalyzer.analyzeQRCode(decoded);
+
+        ByteArrayOutputStream imageIo = new ByteArrayOutputStream();
+        MatrixToImageWriter.writeToStream(matrix, "PNG", imageIo);
+        assertTrue(png.length < imageIo.size(), png.length + " bytes against " + imageIo.size());
+    }
+
+    @Test
+    public void testSvgHasOneRunPerDarkSegment() throws Exception {
+        BitMatrix matrix = new BitMatrix(4, 2);
+        matrix.set(0, 0);
+        matrix.set(1, 0);
+        matrix.set(3, 0);
+        matrix.set(2, 1);
+
+        String svg = QrImageEncoder.svg(matrix);
+
+        assertTrue(svg.contains("viewBox=\"0 0 4 2\""));
+        assertTrue(svg.contains("d=\"M0 0h2v1h-2zM3 0h1v1h-1zM2 1h1v1h-1z\""), svg);
+    }
+
+    static BitMatrix encode(String payload, int width, int height) throws Exception {
+        return new QRCodeWriter().encode(payload, BarcodeFormat.QR_CODE, width, height, Map.of(
+                EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M,
+                EncodeHintType.CHARACTER_SET, StandardCharsets.UTF_8.name(),
+                EncodeHintType.MARGIN, 1));
+    }
+}
@@ -0,0 +1,108 @@
+package com.zettix.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReferenceIdGeneratorTest {
+
+    private static final String ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+
+    @Test
+    public void issuesUniqueOrderedIds() {
+        ReferenceIdGenerator generator = new ReferenceIdGenerator();
+        Set<String> seen = new HashSet<>();
+        String previous = "";
+        for (int i = 0; i < 100_000; i++) {
+            String id = generator.next();
+            assertEquals(ReferenceIdGenerator.LENGTH, id.length());
+            assertTrue(id.compareTo(previous) > 0, id + " after " + previous);
+            assertTrue(seen.add(id));
+            previous = id;
+        }
+    }
+
+    @Test
+    public void decodesNodeAndIssueTime() {
+        ReferenceIdGenerator generator = new ReferenceIdGenerator();
+        ReflectionTestUtils.setField(generator, "nodeId", 17);
+        generator.checkNodeId();
+
+        long key = ReferenceIdGenerator.decode(generator.next());
+
+        assertEquals(17, ReferenceIdGenerator.node(key));
+        assertTrue(Duration.between(ReferenceIdGenerator.issuedAt(key), Instant.now()).abs().toSeconds() < 5);
+        assertEquals(ReferenceIdGenerator.encode(key), ReferenceIdGenerator.encode(ReferenceIdGenerator.decode(
+                ReferenceIdGenerator.encode(key).toLowerCase())));
+    }
+
+    @Test
+    public void rejectsOutOfRangeNode() {
+        ReferenceIdGenerator generator = new ReferenceIdGenerator();
+        ReflectionTestUtils.setField(generator, "nodeId", 32);
+
+        assertThrows(IllegalStateException.class, generator::checkNodeId);
+    }
+
+    @Test
+    public void readsLookAlikeLettersAsDigits() {
+        String id = ReferenceIdGenerator.encode(0L);
+
+        assertEquals("00000000000", id);
+        assertEquals(0L, ReferenceIdGenerator.decode("OoOOO0000oO"));
+        long key = 1L << 45;
+        String withOne = ReferenceIdGenerator.encode(key);
+        assertEquals(key, ReferenceIdGenerator.decode(withOne.replace('1', 'l')));
+        assertEquals(key, ReferenceIdGenerator.decode(withOne.replace('1', 'I')));
+    }
+
+    @Test
+    public void detectsEverySingleCharacterError() {
+        ReferenceIdGenerator generator = new ReferenceIdGenerator();
+        for (int n = 0; n < 200; n++) {
+            String id = generator.next();
+            assertNotEquals(ReferenceIdGenerator.INVALID, ReferenceIdGenerator.decode(id));
+            for (int i = 0; i < id.length(); i++) {
+                for (char c : ALPHABET.toCharArray()) {
+                    if (c == id.charAt(i)) {
+                        continue;
+                    }
+                    String garbled = id.substring(0, i) + c + id.substring(i + 1);
+                    assertEquals(ReferenceIdGenerator.INVALID, ReferenceIdGenerator.decode(garbled), garbled);
+                }
+            }
+        }
+        assertEquals(ReferenceIdGenerator.INVALID, ReferenceIdGenerator.decode("0000000000U"));
+        assertEquals(ReferenceIdGenerator.INVALID, ReferenceIdGenerator.decode("0000000000"));
+    }
+
+    @Test
+    public void detectsNearlyEveryAdjacentSwap() {
+        int swaps = 0;
+        int detected = 0;
+        for (char a : ALPHABET.toCharArray()) {
+            for (char b : ALPHABET.toCharArray()) {
+                if (a == b) {
+                    continue;
+                }
+                for (int i = 0; i < ReferenceIdGenerator.LENGTH - 2; i++) {
+                    long key = (long) ALPHABET.indexOf(a) << (5 * (9 - i)) | (long) ALPHABET.indexOf(b) << (5 * (8 - i));
+                    String id = ReferenceIdGenerator.encode(key);
+                    String swapped = id.substring(0, i) + b + a + id.substring(i + 2);
+                    swaps++;
+                    if (ReferenceIdGenerator.decode(swapped) == ReferenceIdGenerator.INVALID) {
+                        detected++;
+                    }
+                }
+            }
+        }
+
+        assertTrue(detected >= swaps * 0.99, detected + " of " + swaps + " swaps detected");
+    }
+}
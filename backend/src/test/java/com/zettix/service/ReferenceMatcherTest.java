@@ -0,0 +1,160 @@
+package com.zettix.service;
+
+import com.zettix.entity.Transaction;
+import com.zettix.repository.TransactionRepository;
+import com.zettix.service.ReferenceMatcher.Match;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ReferenceMatcherTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 9, 15, 14, 30);
+    private static final String REF = "ZETTIX1757946600123A1B2C3";
+
+    private PendingDepositIndex index;
+    private ReferenceMatcher matcher;
+
+    @BeforeEach
+    public void setUp() {
+        TransactionRepository transactionRepository = mock(TransactionRepository.class);
+        when(transactionRepository.findByTransactionTypeAndStatus(any(), any())).thenReturn(List.of());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        index = new PendingDepositIndex(transactionRepository, meterRegistry);
+        index.warmUp();
+        matcher = new ReferenceMatcher(index, meterRegistry);
+        ReflectionTestUtils.setField(matcher, "minReferenceLength", 8);
+        ReflectionTestUtils.setField(matcher, "maxCandidates", 64);
+        ReflectionTestUtils.setField(matcher, "windowGraceMinutes", 10L);
+
+        index.add(deposit(1L, REF, "100000", NOW.minusMinutes(5)));
+        index.add(deposit(2L, "ZETTIX1757946600999F0F0F0", "200000", NOW.minusMinutes(5)));
+    }
+
+    @Test
+    public void matchesExactReferenceWithFullConfidence() {
+        Match match = matcher.match(REF, new BigDecimal("100000"), NOW).orElseThrow();
+
+        assertEquals(REF, match.deposit().referenceId());
+        assertEquals(1.0, match.confidence(), 1e-9);
+    }
+
+    @Test
+    public void matchesTruncatedLowercaseMemo() {
+        Match match = matcher.match("zettix 17579466001 23a1b", new BigDecimal("100000"), NOW).orElseThrow();
+
+        assertEquals(REF, match.deposit().referenceId());
+        assertEquals(16.0 / 19.0, match.confidence(), 1e-9);
+    }
+
+    @Test
+    public void matchesMemoWithBankSuffixAndLookAlikes() {
+        Match match = matcher.match("ZETTIXZETTIX17579466OO123A1B2C3FT25258", new BigDecimal("100000"), NOW)
+                .orElseThrow();
+
+        assertEquals(REF, match.deposit().referenceId());
+        assertEquals(0.95, match.confidence(), 1e-9);
+    }
+
+    @Test
+    public void requiresMatchingAmount() {
+        assertTrue(matcher.match(REF, new BigDecimal("100001"), NOW).isEmpty());
+    }
+
+    @Test
+    public void splitsConfidenceBetweenEqualCandidates() {
+        index.add(deposit(3L, "ZETTIX1757946600555D4D4D4", "200000", NOW.minusMinutes(5)));
+
+        Match match = matcher.match("ZETTIX1757946600", new BigDecimal("200000"), NOW).orElseThrow();
+
+        assertEquals(10.0 / 19.0 / 2, match.confidence(), 1e-9);
+    }
+
+    @Test
+    public void limitsCandidatesAfterFilteringByAmount() {
+        ReflectionTestUtils.setField(matcher, "maxCandidates", 1);
+        // Sorts before REF and shares its truncated prefix, but has another amount
+        index.add(deposit(3L, "ZETTIX1757946600000A0A0A0", "999000", NOW.minusMinutes(5)));
+
+        Match match = matcher.match("ZETTIX1757946600", new BigDecimal("100000"), NOW).orElseThrow();
+
+        assertEquals(REF, match.deposit().referenceId());
+    }
+
+    @Test
+    public void lowersConfidenceOutsideValidityWindow() {
+        Match match = matcher.match(REF, new BigDecimal("100000"), NOW.plusMinutes(30)).orElseThrow();
+
+        assertTrue(match.confidence() < 1.0);
+    }
+
+    @Test
+    public void ignoresShortMemos() {
+        assertEquals(Optional.empty(), matcher.match("ZETTIX1757", new BigDecimal("100000"), NOW));
+    }
+
+    @Test
+    public void looksUpCompactReferenceDirectly() {
+        String reference = new ReferenceIdGenerator().next();
+        index.add(deposit(4L, reference, "50000", NOW.minusMinutes(5)));
+
+        Match exact = matcher.match(reference.toLowerCase(), new BigDecimal("50000"), NOW).orElseThrow();
+        Match decorated = matcher.match(reference + "FT25258", new BigDecimal("50000"), NOW).orElseThrow();
+
+        assertEquals(reference, exact.deposit().referenceId());
+        assertEquals(1.0, exact.confidence(), 1e-9);
+        assertEquals(reference, decorated.deposit().referenceId());
+        assertEquals(0.95, decorated.confidence(), 1e-9);
+    }
+
+    @Test
+    public void rejectsCompactReferenceFailingItsCheck() {
+        String reference = new ReferenceIdGenerator().next();
+        index.add(deposit(4L, reference, "50000", NOW.minusMinutes(5)));
+        char last = reference.charAt(reference.length() - 1);
+        String garbled = reference.substring(0, reference.length() - 1) + (last == 'Z' ? 'Y' : 'Z');
+
+        assertTrue(matcher.match(garbled, new BigDecimal("50000"), NOW).isEmpty());
+    }
+
+    @Test
+    public void staysFastWithManyPendingDeposits() {
+        for (int i = 0; i < 50_000; i++) {
+            index.add(deposit(10L + i, "ZETTIX" + (1757946600000L + i * 37L) + String.format("%06X", i),
+                    String.valueOf(10_000 + (i % 50) * 10_000), NOW.minusMinutes(i % 30)));
+        }
+        // Truncated to ten digits, so every deposit created in the same second is a candidate
+        String memo = ("ZETTIX" + (1757946600000L + 4321 * 37L)).substring(0, 16);
+
+        for (int i = 0; i < 2_000; i++) {
+            matcher.match(memo, new BigDecimal("20000"), NOW);
+        }
+        long start = System.nanoTime();
+        int lookups = 10_000;
+        for (int i = 0; i < lookups; i++) {
+            matcher.match(memo, new BigDecimal("20000"), NOW);
+        }
+        long averageNanos = (System.nanoTime() - start) / lookups;
+
+        assertTrue(averageNanos < 1_000_000, "Average lookup took " + averageNanos + " ns");
+    }
+
+    private static Transaction deposit(Long id, String referenceId, String amount, LocalDateTime createdAt) {
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setReferenceId(referenceId);
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setCreatedAt(createdAt);
+        transaction.setExpiresAt(createdAt.plusMinutes(30));
+        return transaction;
+    }
+}
@@ -0,0 +1,105 @@
+package com.zettix.service;
+
+import com.zettix.entity.Product;
+import com.zettix.entity.Transaction;
+import com.zettix.entity.User;
+import com.zettix.repository.ProductRepository;
+import com.zettix.repository.TransactionRepository;
+import com.zettix.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestComponent;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Users, products and deposits for the Spring tests. Names carry a random suffix, so tests sharing
+ * the cached context and database never collide. Import it with {@code @Import(TestFixtures.class)}.
+ */
+@TestComponent
+public class TestFixtures {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private WalletLedgerService walletLedgerService;
+
+    @Autowired
+    private PendingDepositIndex pendingDepositIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public User user(String prefix) {
+        User user = new User();
+        String name = prefix + "-" + UUID.randomUUID();
+        user.setUsername(name);
+        user.setEmail(name + "@zettix.test");
+        user.setPassword("x");
+        return userRepository.save(user);
+    }
+
+    /** A user whose wallet was credited with {@code balance} through the ledger. */
+    public User user(String prefix, BigDecimal balance) {
+        User user = user(prefix);
+        walletLedgerService.credit(user.getId(), balance, Transaction.TransactionType.ADMIN_ADJUSTMENT, null);
+        return user;
+    }
+
+    /** A product with {@code stock} available units, each backed by an AVAILABLE account. */
+    public Product product(String prefix, Product.ProductType type, BigDecimal price, int stock) {
+        return product(prefix, type, price, stock, stock);
+    }
+
+    /** A product whose available counter and number of AVAILABLE accounts may differ. */
+    public Product product(String prefix, Product.ProductType type, BigDecimal price, int available, int accounts) {
+        Product product = new Product();
+        product.setName(prefix + "-" + UUID.randomUUID());
+        product.setProductType(type);
+        product.setPrice(price);
+        product.setTotalQuantity(available);
+        product.setAvailableQuantity(available);
+        Product saved = productRepository.save(product);
+        addAccounts(saved, accounts);
+        return saved;
+    }
+
+    /** Inserts AVAILABLE accounts in JDBC batches, so products with large stock are quick to set up. */
+    public void addAccounts(Product product, int count) {
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[]{product.getId(), "user" + i, "secret" + i, createdAt, createdAt});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO accounts (product_id, username, password, status, created_at, updated_at) " +
+                "VALUES (?, ?, ?, 'AVAILABLE', ?, ?)", rows);
+    }
+
+    /** A PENDING deposit that is already in the pending deposit index. */
+    public Transaction pendingDeposit(User user, BigDecimal amount) {
+        Transaction transaction = new Transaction();
+        transaction.setUser(user);
+        transaction.setTransactionType(Transaction.TransactionType.DEPOSIT);
+        transaction.setAmount(amount);
+        transaction.setBalanceBefore(BigDecimal.ZERO);
+        transaction.setBalanceAfter(BigDecimal.ZERO);
+        transaction.setStatus(Transaction.TransactionStatus.PENDING);
+        transaction.setReferenceId("ZETTIX" + UUID.randomUUID().toString().replace("-", "").substring(0, 12).toUpperCase());
+        transaction.setExpiresAt(LocalDateTime.now().plusMinutes(30));
+        Transaction saved = transactionRepository.save(transaction);
+        pendingDepositIndex.add(saved);
+        return saved;
+    }
+}
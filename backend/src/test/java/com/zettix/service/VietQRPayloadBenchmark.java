@@ -0,0 +1,56 @@
+package com.zettix.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link VietQRPayloadBuilder} with the old payload code in {@link LegacyVietQRPayload}.
+ * Not run by surefire; start it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.zettix.service.VietQRPayloadBenchmark}
+ * or run {@link #main(String[])} from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VietQRPayloadBenchmark {
+
+    private static final String BANK_CODE = "970436";
+    private static final String ACCOUNT_NUMBER = "9889559357";
+
+    private final BigDecimal amount = new BigDecimal("150000");
+    private final String referenceId = "ZETTIX1760000000000A1B2C3";
+    private final LegacyVietQRPayload legacy = new LegacyVietQRPayload();
+    private final VietQRPayloadBuilder builder = new VietQRPayloadBuilder(BANK_CODE, ACCOUNT_NUMBER);
+
+    @Benchmark
+    public String legacyPayload() {
+        return legacy.build(BANK_CODE, ACCOUNT_NUMBER, amount, referenceId);
+    }
+
+    @Benchmark
+    public String prefixedPayload() {
+        return builder.build(amount, referenceId);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(VietQRPayloadBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
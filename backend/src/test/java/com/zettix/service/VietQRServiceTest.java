@@ -1,31 +1,128 @@
 package com.zettix.service;
 
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.DigestUtils;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
 
-@SpringBootTest
-@TestPropertySource(properties = {
-    "vietqr.bank-code=970436",
-    "vietqr.account-number=9889559357", 
-    "vietqr.account-name=NGUYEN VAN HOANG",
-    "vietqr.merchant-city=HO CHI MINH",
-    "vietqr.qr-width=300",
-    "vietqr.qr-height=300",
-    "business.qr-expiration-minutes=15"
-})
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Builds the service by hand: payloads and images only need the vietqr settings, not a database. */
 public class VietQRServiceTest {
 
-    @Autowired
+    private static final String BANK_CODE = "970436";
+    private static final String ACCOUNT_NUMBER = "9889559357";
+
     private VietQRService vietQRService;
 
+    @BeforeEach
+    public void setUp() {
+        vietQRService = new VietQRService();
+        ReflectionTestUtils.setField(vietQRService, "bankCode", BANK_CODE);
+        ReflectionTestUtils.setField(vietQRService, "accountNumber", ACCOUNT_NUMBER);
+        ReflectionTestUtils.setField(vietQRService, "accountName", "NGUYEN VAN HOANG");
+        ReflectionTestUtils.setField(vietQRService, "merchantCity", "HO CHI MINH");
+        ReflectionTestUtils.setField(vietQRService, "qrWidth", 300);
+        ReflectionTestUtils.setField(vietQRService, "qrHeight", 300);
+        ReflectionTestUtils.setField(vietQRService, "qrExpirationMinutes", 15);
+    }
+
+    @Test
+    public void testExpectedPayloads() {
+        assertEquals("00020101021238540010A00000072701240006970436011098895593570208QRIBFTTA"
+                        + "530370454061000005802VN62450841NAP TIEN ZETTIX ZETTIX1700000000000ABC12363044384",
+                vietQRService.generateQRCode(new BigDecimal("100000"), "ZETTIX1700000000000ABC123").getQrData());
+        // Separators are dropped and letters upper-cased in the memo
+        assertEquals("00020101021238540010A00000072701240006970436011098895593570208QRIBFTTA"
+                        + "53037045405500005802VN62430839NAP TIEN ZETTIX ZETTIX17000000000A1B2C363049EC7",
+                vietQRService.generateQRCode(new BigDecimal("50000.00"), "zettix-17000000000-a1b2c3").getQrData());
+        assertEquals("00020101021238540010A00000072701240006970436011098895593570208QRIBFTTA"
+                        + "5303704540710000.55802VN62270823NAP TIEN ZETTIX ZETTIX16304A611",
+                vietQRService.generateQRCode(new BigDecimal("10000.5"), "ZETTIX1").getQrData());
+    }
+
+    @Test
+    public void testPayloadMatchesLegacyBuilderUpToTheCrc() {
+        LegacyVietQRPayload legacy = new LegacyVietQRPayload();
+        VietQRPayloadBuilder builder = new VietQRPayloadBuilder(BANK_CODE, ACCOUNT_NUMBER);
+        Random random = new Random(42);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_ .#";
+        for (int i = 0; i < 2000; i++) {
+            BigDecimal amount = BigDecimal.valueOf(1 + random.nextInt(100_000_000), random.nextInt(3));
+            StringBuilder reference = new StringBuilder("ZETTIX");
+            for (int j = random.nextInt(40); j > 0; j--) {
+                reference.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String expected = legacy.build(BANK_CODE, ACCOUNT_NUMBER, amount, reference.toString());
+            String payload = builder.build(amount, reference.toString());
+            // The legacy builder closed payloads with an X-25 CRC, which banking apps reject
+            assertEquals(expected.substring(0, expected.length() - 4), payload.substring(0, payload.length() - 4),
+                    "amount " + amount + ", reference " + reference);
+            assertNull(EmvTlvCodec.validate(payload), payload);
+        }
+    }
+
+    @Test
+    public void testTableCrcMatchesBitwiseCrc() {
+        // Check value of CRC-16/CCITT-FALSE from the CRC catalogue
+        assertEquals("29B1", EmvCrc16.checksum("123456789"));
+        assertEquals("FFFF", EmvCrc16.checksum(""));
+        String prefix = new VietQRPayloadBuilder(BANK_CODE, ACCOUNT_NUMBER).prefix();
+        assertEquals(bitwiseCrc(prefix), EmvCrc16.checksum(prefix));
+    }
+
+    @Test
+    public void testImagesDecodeToPayload() throws Exception {
+        String payload = vietQRService.generateQRCode(new BigDecimal("100000"), "ZETTIX1700000000000ABC123").getQrData();
+
+        BufferedImage png = ImageIO.read(new ByteArrayInputStream(vietQRService.renderPng(payload)));
+        assertEquals(300, png.getWidth());
+        assertEquals(payload, decode(png));
+
+        String svg = vietQRService.renderSvg(payload);
+        assertTrue(svg.startsWith("<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 "));
+        assertTrue(svg.contains("<path fill=\"#000\" d=\"M"));
+
+        assertEquals(vietQRService.imageTag(payload, "png"), vietQRService.imageTag(payload, "png"));
+        assertNotEquals(vietQRService.imageTag(payload, "png"), vietQRService.imageTag(payload, "svg"));
+        // Tags from before the encoder was versioned must not match, or browsers keep the old image
+        String unversioned = "png:300x300:" + payload;
+        assertNotEquals('"' + DigestUtils.md5DigestAsHex(unversioned.getBytes(StandardCharsets.UTF_8)) + '"',
+                vietQRService.imageTag(payload, "png"));
+    }
+
+    private static String bitwiseCrc(String data) {
+        int crc = 0xFFFF;
+        for (int i = 0; i < data.length(); i++) {
+            crc ^= (data.charAt(i) & 0xFF) << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? ((crc << 1) ^ 0x1021) & 0xFFFF : (crc << 1) & 0xFFFF;
+            }
+        }
+        return String.format("%04X", crc);
+    }
+
+    @Test
+    public void testTooLongReferenceIsRejected() {
+        assertThrows(RuntimeException.class,
+                () -> vietQRService.generateQRCode(new BigDecimal("10000"), "ZETTIX" + "A".repeat(80)));
+    }
+
     @Test
     public void testGenerateQRCode() {
         try {
-            String referenceId = vietQRService.generateReferenceId();
+            String referenceId = new ReferenceIdGenerator().next();
             BigDecimal amount = new BigDecimal("100000");
             
             VietQRService.VietQRResponse response = vietQRService.generateQRCode(amount, referenceId);
@@ -38,7 +135,7 @@ public class VietQRServiceTest {
             System.out.println("Account Name: " + response.getAccountName());
             System.out.println("Bank Code: " + response.getBankCode());
             System.out.println("Expires At: " + response.getExpiresAt());
-            System.out.println("QR Code Base64 Length: " + response.getQrCodeBase64().length());
+            System.out.println("QR Code PNG Length: " + vietQRService.renderPng(response.getQrData()).length);
             
             // Analyze QR data structure
             String qrData = response.getQrData();
@@ -90,6 +187,11 @@ public class VietQRServiceTest {
         }
     }
     
+    static String decode(BufferedImage image) throws Exception {
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image)));
+        return new QRCodeReader().decode(bitmap).getText();
+    }
+
     private void analyzeEMVCoField(String qrData, String fieldId, String fieldName) {
         String value = extractEMVCoFieldValue(qrData, fieldId);
         if (value != null) {
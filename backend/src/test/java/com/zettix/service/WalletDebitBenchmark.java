@@ -0,0 +1,93 @@
+package com.zettix.service;
+
+import com.zettix.ZettixBackendApplication;
+import com.zettix.entity.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link WalletLedgerService#debit} when every thread spends its own wallet, on the
+ * H2 database of the test profile. Wallets are independent rows, so the 8-thread score should
+ * grow with the cores available instead of staying at the 1-thread score. Not run by surefire;
+ * start it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.zettix.service.WalletDebitBenchmark}
+ * or run {@link #main(String[])} from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalletDebitBenchmark {
+
+    private static final BigDecimal PRICE = new BigDecimal("1000.00");
+    // Enough for every debit a run can make, so no thread ever sees an insufficient balance
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("1000000000000.00");
+
+    private ConfigurableApplicationContext context;
+    private WalletLedgerService walletLedgerService;
+    private TransactionTemplate transactionTemplate;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(ZettixBackendApplication.class, TestFixtures.class)
+                .profiles("test")
+                .web(WebApplicationType.NONE)
+                .run();
+        walletLedgerService = context.getBean(WalletLedgerService.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Wallet {
+
+        private Long userId;
+
+        @Setup(Level.Trial)
+        public void open(WalletDebitBenchmark benchmark) {
+            userId = benchmark.context.getBean(TestFixtures.class).user("benchmark", OPENING_BALANCE).getId();
+        }
+    }
+
+    @Benchmark
+    public BigDecimal debit(Wallet wallet) {
+        return transactionTemplate.execute(status ->
+                walletLedgerService.debit(wallet.userId, PRICE, Transaction.TransactionType.PURCHASE, null));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 8}) {
+            new Runner(new OptionsBuilder()
+                    .include(WalletDebitBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.zettix.service;
+
+import com.zettix.entity.Transaction;
+import com.zettix.entity.User;
+import com.zettix.entity.WalletLedgerEntry;
+import com.zettix.repository.UserRepository;
+import com.zettix.repository.WalletBalanceRepository;
+import com.zettix.repository.WalletBalanceSnapshotRepository;
+import com.zettix.repository.WalletLedgerEntryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Hammers {@link WalletLedgerService#debit} from many threads against an in-memory database.
+ * Runs on the in-memory H2 database of the test profile.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+public class WalletDebitStressTest {
+
+    private static final BigDecimal PRICE = new BigDecimal("1000.00");
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private WalletBalanceRepository walletBalanceRepository;
+
+    @Autowired
+    private WalletBalanceSnapshotRepository walletBalanceSnapshotRepository;
+
+    @Autowired
+    private WalletLedgerEntryRepository walletLedgerEntryRepository;
+
+    @Autowired
+    private WalletLedgerService walletLedgerService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void concurrentDebitsOfOneWalletNeverOverdraw() throws Exception {
+        User user = fixtures.user("stress", new BigDecimal("500000.00"));
+        AtomicInteger succeeded = new AtomicInteger();
+
+        // 800 attempts against a balance that covers 500
+        runConcurrently(16, 50, thread -> {
+            if (debit(user.getId())) {
+                succeeded.incrementAndGet();
+            }
+        });
+
+        assertEquals(500, succeeded.get());
+        assertEquals(0, BigDecimal.ZERO.compareTo(walletLedgerService.getBalance(user.getId())));
+        assertEquals(0, walletLedgerService.verify().mismatchCount());
+    }
+
+    @Test
+    public void debitsThroughTwoInstancesNeverOverdraw() throws Exception {
+        User user = fixtures.user("stress", new BigDecimal("100000.00"));
+        // A second application instance: same database, its own balance cache, which it never trusts
+        WalletLedgerService otherInstance = new WalletLedgerService(walletLedgerEntryRepository,
+                walletBalanceRepository, walletBalanceSnapshotRepository, userRepository, transactionManager,
+                new SimpleMeterRegistry());
+        otherInstance.init();
+        // Both caches hold the full balance before the race starts
+        walletLedgerService.getBalance(user.getId());
+        otherInstance.getBalance(user.getId());
+        AtomicInteger succeeded = new AtomicInteger();
+
+        // 160 attempts against a balance that covers 100, half of them through each instance
+        runConcurrently(8, 20, thread -> {
+            if (debit(thread % 2 == 0 ? walletLedgerService : otherInstance, user.getId())) {
+                succeeded.incrementAndGet();
+            }
+        });
+
+        assertEquals(100, succeeded.get());
+        assertEquals(0, BigDecimal.ZERO.compareTo(otherInstance.getBalance(user.getId())));
+        assertEquals(0, walletLedgerService.verify().mismatchCount());
+    }
+
+    @Test
+    public void concurrentCreditsReturnTheBalanceEachLedTo() throws Exception {
+        User user = fixtures.user("stress");
+        Set<BigDecimal> balancesAfter = ConcurrentHashMap.newKeySet();
+
+        runConcurrently(4, 25, thread -> balancesAfter.add(new TransactionTemplate(transactionManager).execute(
+                status -> walletLedgerService.credit(user.getId(), PRICE, Transaction.TransactionType.REFUND, null))));
+
+        // Every credit saw the credits committed before it, so no two report the same balance
+        assertEquals(100, balancesAfter.size());
+        assertEquals(0, PRICE.multiply(BigDecimal.valueOf(100)).compareTo(
+                balancesAfter.stream().max(BigDecimal::compareTo).orElseThrow()));
+        assertEquals(0, walletLedgerService.verify().mismatchCount());
+    }
+
+    @Test
+    public void debitsOfDifferentWalletsLoseNoUpdates() throws Exception {
+        // Throughput is measured by WalletDebitBenchmark; this only checks the balances under contention
+        debitsOfOwnWallets(8);
+        assertEquals(0, walletLedgerService.verify().mismatchCount());
+    }
+
+    @Test
+    public void rolledBackDebitLeavesBalanceUntouched() {
+        User user = fixtures.user("stress", new BigDecimal("5000.00"));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            walletLedgerService.debit(user.getId(), PRICE, Transaction.TransactionType.PURCHASE, null);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, new BigDecimal("5000.00").compareTo(walletLedgerService.getBalance(user.getId())));
+    }
+
+    @Test
+    public void snapshotsFoldSettledEntriesAndMatchTheLedger() {
+        User user = fixtures.user("stress", new BigDecimal("5000.00"));
+        assertTrue(debit(user.getId()));
+
+        walletLedgerService.takeSnapshots();
+        assertEquals(0, new BigDecimal("4000.00").compareTo(
+                walletBalanceSnapshotRepository.findById(user.getId()).orElseThrow().getBalance()));
+        assertEquals(0, new BigDecimal("4000.00").compareTo(
+                userRepository.findById(user.getId()).orElseThrow().getWalletBalance()));
+
+        walletLedgerService.credit(user.getId(), new BigDecimal("250.00"), Transaction.TransactionType.REFUND, null);
+        assertEquals(0, new BigDecimal("4250.00").compareTo(walletLedgerService.getBalance(user.getId())));
+        assertEquals(0, walletLedgerService.verify().mismatchCount());
+    }
+
+    @Test
+    public void snapshotsCountEntriesThatCommitAfterAHigherId() throws Exception {
+        User late = fixtures.user("stress", new BigDecimal("5000.00"));
+        User early = fixtures.user("stress", new BigDecimal("5000.00"));
+        CountDownLatch appended = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // Draws its entry id first but commits last, as a second instance with its own id block would
+            Future<?> slow = executor.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                walletLedgerService.debit(late.getId(), PRICE, Transaction.TransactionType.PURCHASE, null);
+                appended.countDown();
+                await(release);
+            }));
+            assertTrue(appended.await(10, TimeUnit.SECONDS));
+            assertTrue(debit(early.getId()));
+            assertTrue(debit(early.getId()));
+            walletLedgerService.takeSnapshots();
+            walletLedgerService.takeSnapshots();
+
+            release.countDown();
+            slow.get(10, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        List<WalletLedgerEntry> debits = walletLedgerEntryRepository.findAll().stream()
+                .filter(entry -> entry.getAmount().signum() < 0)
+                .filter(entry -> entry.getUserId().equals(late.getId()) || entry.getUserId().equals(early.getId()))
+                .sorted(Comparator.comparing(WalletLedgerEntry::getId))
+                .toList();
+        assertEquals(late.getId(), debits.get(0).getUserId());
+        walletLedgerService.takeSnapshots();
+
+        assertEquals(0, new BigDecimal("4000.00").compareTo(
+                walletBalanceSnapshotRepository.findById(late.getId()).orElseThrow().getBalance()));
+        assertEquals(0, new BigDecimal("4000.00").compareTo(
+                userRepository.findById(late.getId()).orElseThrow().getWalletBalance()));
+        assertEquals(0, new BigDecimal("3000.00").compareTo(
+                userRepository.findById(early.getId()).orElseThrow().getWalletBalance()));
+        assertEquals(0, walletLedgerService.verify().mismatchCount());
+    }
+
+    /** Runs 200 debits per thread, each thread on its own wallet, and checks every balance afterwards. */
+    private void debitsOfOwnWallets(int threads) throws Exception {
+        int debitsPerUser = 200;
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            users.add(fixtures.user("stress", new BigDecimal("1000000.00")));
+        }
+
+        runConcurrently(threads, debitsPerUser, thread -> assertTrue(debit(users.get(thread).getId())));
+
+        BigDecimal expected = new BigDecimal("1000000.00").subtract(PRICE.multiply(BigDecimal.valueOf(debitsPerUser)));
+        for (User user : users) {
+            assertEquals(0, expected.compareTo(walletLedgerService.getBalance(user.getId())));
+        }
+    }
+
+    private boolean debit(Long userId) {
+        return debit(walletLedgerService, userId);
+    }
+
+    private boolean debit(WalletLedgerService service, Long userId) {
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                    service.debit(userId, PRICE, Transaction.TransactionType.PURCHASE, null));
+            return true;
+        } catch (RuntimeException e) {
+            if (!"Insufficient wallet balance".equals(e.getMessage())) {
+                throw e;
+            }
+            return false;
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+
+    private static void runConcurrently(int threads, int iterations, ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                Callable<Void> worker = () -> {
+                    for (int i = 0; i < iterations; i++) {
+                        task.run(thread);
+                    }
+                    return null;
+                };
+                futures.add(executor.submit(worker));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}